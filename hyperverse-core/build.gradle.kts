@@ -80,9 +80,13 @@ bukkit {
             "gamerule.set" to "Allows players to world set gamerules",
             "delete" to "Allows players to delete worlds",
             "debugpaste" to "Allows players to create debug pastes",
+            "jobs" to "Allows players to list queued main thread jobs",
             "who" to "Allows players to list players",
             "plugin.import" to "Allows players to import configurations from external plugins",
-            "regenerate" to "Allows players to regenerate worlds"
+            "regenerate" to "Allows players to regenerate worlds",
+            "pregen" to "Allows players to pre-generate the chunks of worlds",
+            "convertdatabase" to "Allows players to copy stored locations to another database type",
+            "convertprofiles" to "Allows players to copy stored player profiles to another storage type"
         ).forEach { (permission, description) ->
             register("hyperverse.$permission") {
                 this.description = description
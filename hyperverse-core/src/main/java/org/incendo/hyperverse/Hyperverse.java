@@ -45,22 +45,30 @@ import org.incendo.hyperverse.exception.HyperWorldValidationException;
 import org.incendo.hyperverse.features.PluginFeatureManager;
 import org.incendo.hyperverse.features.external.EssentialsFeature;
 import org.incendo.hyperverse.features.external.PlaceholderAPIFeature;
+import org.incendo.hyperverse.flags.implementation.OnDemandFlag;
 import org.incendo.hyperverse.flags.implementation.SaveWorldFlag;
 import org.incendo.hyperverse.listeners.EventListener;
+import org.incendo.hyperverse.listeners.HibernationListener;
+import org.incendo.hyperverse.listeners.PortalListener;
+import org.incendo.hyperverse.listeners.SpawnListener;
 import org.incendo.hyperverse.listeners.WorldListener;
 import org.incendo.hyperverse.modules.HyperWorldFactory;
 import org.incendo.hyperverse.modules.HyperverseModule;
 import org.incendo.hyperverse.modules.TaskFactoryModule;
 import org.incendo.hyperverse.platform.PlatformProvider;
 import org.incendo.hyperverse.platform.ReflectionPlatformProvider;
+import org.incendo.hyperverse.profiles.ProfileStore;
 import org.incendo.hyperverse.service.internal.SafeTeleportService;
 import org.incendo.hyperverse.util.MessageUtil;
 import org.incendo.hyperverse.util.versioning.Version;
 import org.incendo.hyperverse.util.versioning.VersionUtil;
+import org.incendo.hyperverse.world.ChunkPregenerator;
 import org.incendo.hyperverse.world.HyperWorld;
 import org.incendo.hyperverse.world.HyperWorldCreator;
 import org.incendo.hyperverse.world.WorldConfiguration;
 import org.incendo.hyperverse.world.WorldManager;
+import org.incendo.hyperverse.world.WorldReaper;
+import org.incendo.hyperverse.world.WorldTrash;
 import org.spongepowered.configurate.CommentedConfigurationNode;
 import org.spongepowered.configurate.ConfigurationNode;
 import org.spongepowered.configurate.hocon.HoconConfigurationLoader;
@@ -210,12 +218,36 @@ public final class Hyperverse extends JavaPlugin implements HyperverseAPI, Liste
             }
         }
 
+        // Finish deleting the world directories that were still being deleted when the server stopped
+        try {
+            this.injector.getInstance(WorldTrash.class).emptyTrash();
+        } catch (final Exception e) {
+            e.printStackTrace();
+        }
+
+        // Continue pre-generating the worlds that were being pre-generated when the server stopped
+        try {
+            this.injector.getInstance(ChunkPregenerator.class).resume();
+        } catch (final Exception e) {
+            e.printStackTrace();
+        }
+
         // Register events
         try {
             this.getServer().getPluginManager()
                     .registerEvents(this.injector.getInstance(WorldListener.class), this);
             this.getServer().getPluginManager()
                     .registerEvents(this.injector.getInstance(EventListener.class), this);
+            this.getServer().getPluginManager()
+                    .registerEvents(this.injector.getInstance(PortalListener.class), this);
+            this.getServer().getPluginManager()
+                    .registerEvents(this.injector.getInstance(SpawnListener.class), this);
+            this.getServer().getPluginManager()
+                    .registerEvents(this.injector.getInstance(WorldReaper.class), this);
+            this.getServer().getPluginManager()
+                    .registerEvents(this.injector.getInstance(HibernationListener.class), this);
+            this.getServer().getPluginManager()
+                    .registerEvents(this.injector.getInstance(ChunkPregenerator.class), this);
         } catch (final Exception e) {
             e.printStackTrace();
         }
@@ -244,6 +276,11 @@ public final class Hyperverse extends JavaPlugin implements HyperverseAPI, Liste
 
     @Override
     public void onDisable() {
+        // Restore the game rules of hibernating worlds, so that they aren't saved to level.dat
+        this.worldManager.getWorlds().forEach(HyperWorld::wake);
+        // Save the progress of running pre-generation tasks, so that they continue after the restart
+        this.injector.getInstance(ChunkPregenerator.class).close();
+
         // Unload the worlds with save-world=false without saving before the server does it.
         // Also kick everyone from there showing the shutdown message.
         // This will only make sense if this isn't a /reload or an unloadplugin/disableplugin. If it is, I feel really, really sorry for the server.
@@ -253,11 +290,18 @@ public final class Hyperverse extends JavaPlugin implements HyperverseAPI, Liste
                 hyperWorld.unloadWorld(false);
 
                 // setLoaded(true) because it was loaded before, so it loads again on startup.
-                hyperWorld.getConfiguration().setLoaded(true);
-                hyperWorld.saveConfiguration();
+                // On-demand worlds are loaded once they are needed instead
+                if (!hyperWorld.getFlag(OnDemandFlag.class)) {
+                    hyperWorld.getConfiguration().setLoaded(true);
+                    hyperWorld.saveConfiguration();
+                }
             }
         });
 
+        // Anything that hasn't been deleted yet is deleted on the next startup
+        this.injector.getInstance(WorldTrash.class).close();
+        // Flush grouped player profiles that are still waiting to be written
+        this.injector.getInstance(ProfileStore.class).close();
         this.hyperDatabase.attemptClose();
     }
 
@@ -462,13 +506,11 @@ public final class Hyperverse extends JavaPlugin implements HyperverseAPI, Liste
     public @NonNull HyperWorld createWorld(final @NonNull WorldConfiguration configuration)
             throws HyperWorldCreationException {
         // Verify that no such world exists
-        for (final HyperWorld hyperWorld : this.worldManager.getWorlds()) {
-            if (hyperWorld.getConfiguration().getName().equalsIgnoreCase(configuration.getName())) {
-                throw new HyperWorldCreationException(
-                        HyperWorldCreator.ValidationResult.NAME_TAKEN,
-                        configuration
-                );
-            }
+        if (this.worldManager.getWorldIgnoreCase(configuration.getName()) != null) {
+            throw new HyperWorldCreationException(
+                    HyperWorldCreator.ValidationResult.NAME_TAKEN,
+                    configuration
+            );
         }
         if (Bukkit.getWorld(configuration.getName()) != null) {
             throw new HyperWorldCreationException(
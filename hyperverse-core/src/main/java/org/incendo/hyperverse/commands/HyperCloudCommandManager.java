@@ -71,6 +71,7 @@ import org.incendo.hyperverse.flags.GlobalWorldFlagContainer;
 import org.incendo.hyperverse.flags.WorldFlag;
 import org.incendo.hyperverse.flags.implementation.EndFlag;
 import org.incendo.hyperverse.flags.implementation.NetherFlag;
+import org.incendo.hyperverse.flags.implementation.OnDemandFlag;
 import org.incendo.hyperverse.flags.implementation.ProfileGroupFlag;
 import org.incendo.hyperverse.modules.HyperWorldFactory;
 import org.incendo.hyperverse.modules.WorldConfigurationFactory;
@@ -350,7 +351,7 @@ public final class HyperCloudCommandManager extends BaseCommand {
                     boolean ret = true;
                     switch (stateSel) {
                         case "loaded":
-                            ret = hyperWorld.isLoaded();
+                            ret = hyperWorld.isLoaded() || hyperWorld.getFlag(OnDemandFlag.class);
                             break;
                         case "not_loaded":
                             ret = !hyperWorld.isLoaded();
@@ -438,11 +439,9 @@ public final class HyperCloudCommandManager extends BaseCommand {
         final CommandSender sender = context.getSender();
 
         // Check if the name already exists
-        for (final HyperWorld hyperWorld : this.worldManager.getWorlds()) {
-            if (hyperWorld.getConfiguration().getName().equalsIgnoreCase(world)) {
-                MessageUtil.sendMessage(sender, Messages.messageWorldExists);
-                return;
-            }
+        if (this.worldManager.getWorldIgnoreCase(world) != null) {
+            MessageUtil.sendMessage(sender, Messages.messageWorldExists);
+            return;
         }
         // Double check that Bukkit doesn't have the world stored
         if (this.server.getWorld(world) != null) {
@@ -698,7 +697,7 @@ public final class HyperCloudCommandManager extends BaseCommand {
             MessageUtil.sendMessage(player, Messages.messageNoSuchWorld);
             return;
         }
-        if (!world.isLoaded()) {
+        if (!world.ensureLoaded()) {
             MessageUtil.sendMessage(player, Messages.messageWorldNotLoaded);
             return;
         }
@@ -717,7 +716,7 @@ public final class HyperCloudCommandManager extends BaseCommand {
             MessageUtil.sendMessage(player, Messages.messageNoSuchWorld);
             return;
         }
-        if (!world.isLoaded()) {
+        if (!world.ensureLoaded()) {
             MessageUtil.sendMessage(player, Messages.messageWorldNotLoaded);
             return;
         }
@@ -739,7 +738,7 @@ public final class HyperCloudCommandManager extends BaseCommand {
             MessageUtil.sendMessage(player, Messages.messageNoSuchWorld);
             return;
         }
-        if (!world.isLoaded()) {
+        if (!world.ensureLoaded()) {
             MessageUtil.sendMessage(player, Messages.messageWorldNotLoaded);
             return;
         }
@@ -768,7 +767,7 @@ public final class HyperCloudCommandManager extends BaseCommand {
             MessageUtil.sendMessage(sender, Messages.messageNoSuchWorld);
             return;
         }
-        if (!world.isLoaded()) {
+        if (!world.ensureLoaded()) {
             MessageUtil.sendMessage(sender, Messages.messageWorldNotLoaded);
             return;
         }
@@ -783,6 +782,7 @@ public final class HyperCloudCommandManager extends BaseCommand {
                 playerList.add(player);
             }
         }
+        final List<Player> teleporting = new ArrayList<>(playerList.size());
         for (final Player player : playerList) {
             if (world.getBukkitWorld() == player.getWorld()) {
                 MessageUtil.sendMessage(sender, Messages.messagePlayerAlreadyInWorld, "%player%",
@@ -791,12 +791,27 @@ public final class HyperCloudCommandManager extends BaseCommand {
                 continue;
             }
             MessageUtil.sendMessage(player, Messages.messageTeleporting, "%world%", world.getDisplayName());
+            teleporting.add(player);
+        }
+        if (teleporting.size() == 1) {
+            final Player player = teleporting.get(0);
             if (player != sender) {
                 MessageUtil.sendMessage(sender, Messages.messageTeleportingPlayer, "%player%",
                         player.getName(), "%world%", world.getDisplayName()
                 );
             }
             world.teleportPlayer(player);
+        } else if (!teleporting.isEmpty()) {
+            // Send everyone in a staggered batch, instead of teleporting them all in the same tick
+            MessageUtil.sendMessage(sender, Messages.messageTeleportingPlayers, "%amount%",
+                    Integer.toString(teleporting.size()), "%world%", world.getDisplayName()
+            );
+            world.getTeleportationManager().teleportPlayers(teleporting,
+                    (processed, total) -> MessageUtil.sendMessage(sender, Messages.messageTeleportProgress,
+                            "%processed%", Integer.toString(processed), "%total%", Integer.toString(total),
+                            "%world%", world.getDisplayName()
+                    )
+            );
         }
     }
 
@@ -1100,7 +1115,14 @@ public final class HyperCloudCommandManager extends BaseCommand {
             MessageUtil.sendMessage(sender, Messages.messageNoSuchWorld);
             return;
         }
-        hyperWorld.deleteWorld(worldUnloadResult -> {
+        hyperWorld.deleteWorld(deleteDirectory).whenComplete((worldUnloadResult, throwable) -> {
+            if (throwable != null) {
+                MessageUtil.sendMessage(sender, Messages.messageWorldNotRemoved, "%reason%",
+                        throwable.getMessage()
+                );
+                throwable.printStackTrace();
+                return;
+            }
             if (worldUnloadResult != HyperWorld.WorldUnloadResult.SUCCESS) {
                 MessageUtil.sendMessage(sender, Messages.messageWorldNotRemoved, "%reason%",
                         worldUnloadResult.getDescription()
@@ -1108,26 +1130,8 @@ public final class HyperCloudCommandManager extends BaseCommand {
                 return;
             }
 
-            if (deleteDirectory) {
-                final Path path = this.server.getWorldContainer().toPath()
-                        .resolve(hyperWorld.getConfiguration().getName());
-                try {
-                    try (Stream<Path> walk = Files.walk(path)) {
-                        walk.sorted(Comparator.reverseOrder())
-                                .map(Path::toFile)
-                                .peek(System.out::println)
-                                .forEach(File::delete);
-                    }
-                } catch (final Exception e) {
-                    MessageUtil.sendMessage(sender, Messages.messageWorldNotRemoved, "%reason%",
-                            e.getMessage()
-                    );
-                    e.printStackTrace();
-                    return;
-                }
-            }
-
-            MessageUtil.sendMessage(sender, Messages.messageWorldRemoved);
+            MessageUtil.sendMessage(sender, deleteDirectory ? Messages.messageWorldRemovedInBackground
+                    : Messages.messageWorldRemoved);
         });
     }
 
@@ -1298,28 +1302,19 @@ public final class HyperCloudCommandManager extends BaseCommand {
             configuration.setSeed(SeedUtil.randomSeed());
         }
 
-        world.deleteWorld(worldUnloadResult -> {
-            if (worldUnloadResult != HyperWorld.WorldUnloadResult.SUCCESS) {
+        // The new world is only created once the old directory is gone, and never if it was kept
+        world.deleteWorld(true).whenComplete((worldUnloadResult, throwable) -> {
+            if (throwable != null) {
                 MessageUtil.sendMessage(sender, Messages.messageWorldNotRemoved, "%reason%",
-                        worldUnloadResult.getDescription()
+                        throwable.getMessage()
                 );
+                throwable.printStackTrace();
                 return;
             }
-
-            final Path path = this.server.getWorldContainer().toPath()
-                    .resolve(world.getConfiguration().getName());
-            try {
-                try (Stream<Path> walk = Files.walk(path)) {
-                    walk.sorted(Comparator.reverseOrder())
-                            .map(Path::toFile)
-                            .peek(System.out::println)
-                            .forEach(File::delete);
-                }
-            } catch (final Exception e) {
+            if (worldUnloadResult != HyperWorld.WorldUnloadResult.SUCCESS) {
                 MessageUtil.sendMessage(sender, Messages.messageWorldNotRemoved, "%reason%",
-                        e.getMessage()
+                        worldUnloadResult.getDescription()
                 );
-                e.printStackTrace();
                 return;
             }
             MessageUtil.sendMessage(sender, Messages.messageWorldRemoved);
@@ -53,26 +53,43 @@ import org.incendo.hyperverse.Hyperverse;
 import org.incendo.hyperverse.configuration.FileHyperConfiguration;
 import org.incendo.hyperverse.configuration.Message;
 import org.incendo.hyperverse.configuration.Messages;
+import org.incendo.hyperverse.database.DatabaseType;
+import org.incendo.hyperverse.database.HyperDatabase;
+import org.incendo.hyperverse.database.LocationCache;
+import org.incendo.hyperverse.database.PersistentLocation;
+import org.incendo.hyperverse.database.SQLiteDatabase;
 import org.incendo.hyperverse.exception.HyperWorldValidationException;
 import org.incendo.hyperverse.flags.FlagParseException;
 import org.incendo.hyperverse.flags.GlobalWorldFlagContainer;
 import org.incendo.hyperverse.flags.WorldFlag;
 import org.incendo.hyperverse.flags.implementation.EndFlag;
 import org.incendo.hyperverse.flags.implementation.NetherFlag;
+import org.incendo.hyperverse.flags.implementation.OnDemandFlag;
 import org.incendo.hyperverse.flags.implementation.ProfileGroupFlag;
 import org.incendo.hyperverse.modules.HyperWorldFactory;
 import org.incendo.hyperverse.modules.WorldConfigurationFactory;
 import org.incendo.hyperverse.modules.WorldImporterFactory;
+import org.incendo.hyperverse.profiles.ProfileStorage;
+import org.incendo.hyperverse.profiles.ProfileStorageType;
+import org.incendo.hyperverse.profiles.ProfileStore;
+import org.incendo.hyperverse.scheduling.MainThreadScheduler;
+import org.incendo.hyperverse.teleportation.ChunkPrewarmer;
+import org.incendo.hyperverse.teleportation.PortalIndex;
+import org.incendo.hyperverse.teleportation.PortalTransferQueue;
+import org.incendo.hyperverse.teleportation.TeleportStatistics;
 import org.incendo.hyperverse.util.IncendoPaster;
 import org.incendo.hyperverse.util.MessageUtil;
 import org.incendo.hyperverse.util.SeedUtil;
 import org.incendo.hyperverse.util.WorldUtil;
+import org.incendo.hyperverse.world.ChunkPregenerator;
 import org.incendo.hyperverse.world.HyperWorld;
 import org.incendo.hyperverse.world.WorldConfiguration;
 import org.incendo.hyperverse.world.WorldConfigurationBuilder;
 import org.incendo.hyperverse.world.WorldFeatures;
 import org.incendo.hyperverse.world.WorldManager;
+import org.incendo.hyperverse.world.WorldReaper;
 import org.incendo.hyperverse.world.WorldStructureSetting;
+import org.incendo.hyperverse.world.WorldTrash;
 import org.incendo.hyperverse.world.WorldType;
 
 import java.io.File;
@@ -82,6 +99,7 @@ import java.lang.management.RuntimeMXBean;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.text.DecimalFormat;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -101,6 +119,7 @@ import java.util.stream.Stream;
 public final class HyperCommandManager extends BaseCommand {
 
     private static final int WORLDS_PER_PAGE = 10;
+    private static final int CONVERSION_BATCH_SIZE = 1000;
 
     private final BukkitCommandManager bukkitCommandManager;
     private final WorldManager worldManager;
@@ -110,6 +129,16 @@ public final class HyperCommandManager extends BaseCommand {
     private final WorldConfigurationFactory worldConfigurationFactory;
     private final GlobalWorldFlagContainer globalFlagContainer;
     private final TaskChainFactory taskChainFactory;
+    private final HyperDatabase hyperDatabase;
+    private final ProfileStore profileStore;
+    private final PortalIndex portalIndex;
+    private final PortalTransferQueue portalTransferQueue;
+    private final ChunkPrewarmer chunkPrewarmer;
+    private final TeleportStatistics teleportStatistics;
+    private final WorldReaper worldReaper;
+    private final MainThreadScheduler mainThreadScheduler;
+    private final WorldTrash worldTrash;
+    private final ChunkPregenerator chunkPregenerator;
 
     @Inject
     @SuppressWarnings("deprecation")
@@ -121,7 +150,17 @@ public final class HyperCommandManager extends BaseCommand {
             final WorldConfigurationFactory worldConfigurationFactory,
             final GlobalWorldFlagContainer globalFlagContainer,
             final TaskChainFactory taskFactory,
-            final FileHyperConfiguration hyperConfiguration
+            final FileHyperConfiguration hyperConfiguration,
+            final HyperDatabase hyperDatabase,
+            final ProfileStore profileStore,
+            final PortalIndex portalIndex,
+            final PortalTransferQueue portalTransferQueue,
+            final ChunkPrewarmer chunkPrewarmer,
+            final TeleportStatistics teleportStatistics,
+            final WorldReaper worldReaper,
+            final MainThreadScheduler mainThreadScheduler,
+            final WorldTrash worldTrash,
+            final ChunkPregenerator chunkPregenerator
     ) {
         this.worldManager = Objects.requireNonNull(worldManager);
         this.hyperWorldFactory = Objects.requireNonNull(hyperWorldFactory);
@@ -130,6 +169,16 @@ public final class HyperCommandManager extends BaseCommand {
         this.globalFlagContainer = Objects.requireNonNull(globalFlagContainer);
         this.taskChainFactory = Objects.requireNonNull(taskFactory);
         this.fileHyperConfiguration = Objects.requireNonNull(hyperConfiguration);
+        this.hyperDatabase = Objects.requireNonNull(hyperDatabase);
+        this.profileStore = Objects.requireNonNull(profileStore);
+        this.portalIndex = Objects.requireNonNull(portalIndex);
+        this.portalTransferQueue = Objects.requireNonNull(portalTransferQueue);
+        this.chunkPrewarmer = Objects.requireNonNull(chunkPrewarmer);
+        this.teleportStatistics = Objects.requireNonNull(teleportStatistics);
+        this.worldReaper = Objects.requireNonNull(worldReaper);
+        this.mainThreadScheduler = Objects.requireNonNull(mainThreadScheduler);
+        this.worldTrash = Objects.requireNonNull(worldTrash);
+        this.chunkPregenerator = Objects.requireNonNull(chunkPregenerator);
 
         // Create the command manager
         this.bukkitCommandManager = new PaperCommandManager(hyperverse);
@@ -186,7 +235,7 @@ public final class HyperCommandManager extends BaseCommand {
                     boolean ret = true;
                     switch (stateSel) {
                         case "loaded":
-                            ret = hyperWorld.isLoaded();
+                            ret = hyperWorld.isLoaded() || hyperWorld.getFlag(OnDemandFlag.class);
                             break;
                         case "not_loaded":
                             ret = !hyperWorld.isLoaded();
@@ -244,6 +293,10 @@ public final class HyperCommandManager extends BaseCommand {
             return Arrays.stream(WorldType.values()).map(WorldType::name).map(String::toLowerCase)
                     .collect(Collectors.toList());
         });
+        this.bukkitCommandManager.getCommandCompletions().registerAsyncCompletion("databasetypes", context ->
+                Arrays.stream(DatabaseType.values()).map(DatabaseType::getName).collect(Collectors.toList()));
+        this.bukkitCommandManager.getCommandCompletions().registerAsyncCompletion("profilestoragetypes", context ->
+                Arrays.stream(ProfileStorageType.values()).map(ProfileStorageType::getName).collect(Collectors.toList()));
         this.bukkitCommandManager.getCommandCompletions().registerAsyncCompletion("worldfeatures", context -> {
             if (context.getInput().contains(" ")) {
                 return Collections.emptyList();
@@ -450,11 +503,9 @@ public final class HyperCommandManager extends BaseCommand {
     ) {
         final long seed = specifiedSeed == null ? SeedUtil.randomSeed() : specifiedSeed;
         // Check if the name already exists
-        for (final HyperWorld hyperWorld : this.worldManager.getWorlds()) {
-            if (hyperWorld.getConfiguration().getName().equalsIgnoreCase(world)) {
-                MessageUtil.sendMessage(sender, Messages.messageWorldExists);
-                return;
-            }
+        if (this.worldManager.getWorldIgnoreCase(world) != null) {
+            MessageUtil.sendMessage(sender, Messages.messageWorldExists);
+            return;
         }
         // Double check that Bukkit doesn't have the world stored
         if (Bukkit.getWorld(world) != null) {
@@ -496,6 +547,7 @@ public final class HyperCommandManager extends BaseCommand {
             // Register the world
             this.worldManager.addWorld(hyperWorld);
             MessageUtil.sendMessage(sender, Messages.messageWorldCreationFinished);
+            this.chunkPregenerator.startAutomatically(hyperWorld, sender);
             if (sender instanceof Player) {
                 // Attempt to teleport them to the world
                 hyperWorld.teleportPlayer((Player) sender);
@@ -641,7 +693,7 @@ public final class HyperCommandManager extends BaseCommand {
             MessageUtil.sendMessage(player, Messages.messageNoSuchWorld);
             return;
         }
-        if (!world.isLoaded()) {
+        if (!world.ensureLoaded()) {
             MessageUtil.sendMessage(player, Messages.messageWorldNotLoaded);
             return;
         }
@@ -670,7 +722,7 @@ public final class HyperCommandManager extends BaseCommand {
             MessageUtil.sendMessage(sender, Messages.messageNoSuchWorld);
             return;
         }
-        if (!world.isLoaded()) {
+        if (!world.ensureLoaded()) {
             MessageUtil.sendMessage(sender, Messages.messageWorldNotLoaded);
             return;
         }
@@ -685,6 +737,7 @@ public final class HyperCommandManager extends BaseCommand {
                 playerList.add(player);
             }
         }
+        final List<Player> teleporting = new ArrayList<>(playerList.size());
         for (final Player player : playerList) {
             if (world.getBukkitWorld() == player.getWorld()) {
                 MessageUtil.sendMessage(sender, Messages.messagePlayerAlreadyInWorld, "%player%",
@@ -693,12 +746,27 @@ public final class HyperCommandManager extends BaseCommand {
                 continue;
             }
             MessageUtil.sendMessage(player, Messages.messageTeleporting, "%world%", world.getDisplayName());
+            teleporting.add(player);
+        }
+        if (teleporting.size() == 1) {
+            final Player player = teleporting.get(0);
             if (player != sender) {
                 MessageUtil.sendMessage(sender, Messages.messageTeleportingPlayer, "%player%",
                         player.getName(), "%world%", world.getDisplayName()
                 );
             }
             world.teleportPlayer(player);
+        } else if (!teleporting.isEmpty()) {
+            // Send everyone in a staggered batch, instead of teleporting them all in the same tick
+            MessageUtil.sendMessage(sender, Messages.messageTeleportingPlayers, "%amount%",
+                    Integer.toString(teleporting.size()), "%world%", world.getDisplayName()
+            );
+            world.getTeleportationManager().teleportPlayers(teleporting,
+                    (processed, total) -> MessageUtil.sendMessage(sender, Messages.messageTeleportProgress,
+                            "%processed%", Integer.toString(processed), "%total%", Integer.toString(total),
+                            "%world%", world.getDisplayName()
+                    )
+            );
         }
     }
 
@@ -1002,7 +1070,14 @@ public final class HyperCommandManager extends BaseCommand {
             MessageUtil.sendMessage(sender, Messages.messageNoSuchWorld);
             return;
         }
-        hyperWorld.deleteWorld(worldUnloadResult -> {
+        hyperWorld.deleteWorld(deleteDirectory).whenComplete((worldUnloadResult, throwable) -> {
+            if (throwable != null) {
+                MessageUtil.sendMessage(sender, Messages.messageWorldNotRemoved, "%reason%",
+                        throwable.getMessage()
+                );
+                throwable.printStackTrace();
+                return;
+            }
             if (worldUnloadResult != HyperWorld.WorldUnloadResult.SUCCESS) {
                 MessageUtil.sendMessage(sender, Messages.messageWorldNotRemoved, "%reason%",
                         worldUnloadResult.getDescription()
@@ -1010,26 +1085,8 @@ public final class HyperCommandManager extends BaseCommand {
                 return;
             }
 
-            if (deleteDirectory) {
-                final Path path = Bukkit.getWorldContainer().toPath()
-                        .resolve(hyperWorld.getConfiguration().getName());
-                try {
-                    try (Stream<Path> walk = Files.walk(path)) {
-                        walk.sorted(Comparator.reverseOrder())
-                                .map(Path::toFile)
-                                .peek(System.out::println)
-                                .forEach(File::delete);
-                    }
-                } catch (final Exception e) {
-                    MessageUtil.sendMessage(sender, Messages.messageWorldNotRemoved, "%reason%",
-                            e.getMessage()
-                    );
-                    e.printStackTrace();
-                    return;
-                }
-            }
-
-            MessageUtil.sendMessage(sender, Messages.messageWorldRemoved);
+            MessageUtil.sendMessage(sender, deleteDirectory ? Messages.messageWorldRemovedInBackground
+                    : Messages.messageWorldRemoved);
         });
     }
 
@@ -1043,6 +1100,23 @@ public final class HyperCommandManager extends BaseCommand {
         }
     }
 
+    @Subcommand("jobs")
+    @CommandPermission("hyperverse.jobs")
+    @Description("{@@command.jobs}")
+    public void doJobs(final CommandSender sender) {
+        final List<MainThreadScheduler.Job> jobs = this.mainThreadScheduler.getJobs();
+        MessageUtil.sendMessage(sender, Messages.messageJobsHeader, "%amount%", Integer.toString(jobs.size()),
+                "%mspt%", String.format("%.1f", Bukkit.getAverageTickTime()),
+                "%budget%", String.format("%.1f", this.mainThreadScheduler.getLastBudget().toNanos() / 1_000_000.0D)
+        );
+        for (final MainThreadScheduler.Job job : jobs) {
+            MessageUtil.sendMessage(sender, Messages.messageJobsEntry, "%name%", job.getName(),
+                    "%priority%", job.getPriority().name().toLowerCase(Locale.ENGLISH),
+                    "%time%", Long.toString(job.getTime().toMillis()), "%steps%", Integer.toString(job.getSteps())
+            );
+        }
+    }
+
     @Subcommand("debugpaste")
     @CommandPermission("hyperverse.debugpaste")
     @Description("{@@command.debugpaste}")
@@ -1090,6 +1164,61 @@ public final class HyperCommandManager extends BaseCommand {
                 b.append("Operating System: '").append(System.getProperty("os.name")).append("'\n");
                 b.append("OS Version: ").append(System.getProperty("os.version")).append('\n');
                 b.append("OS Arch: ").append(System.getProperty("os.arch")).append('\n');
+                b.append("\n# Storage\n");
+                final LocationCache locationCache = this.hyperDatabase.getLocationCache();
+                final int cachedPlayers = locationCache.getPlayerCount();
+                final long cacheFootprint = locationCache.getMemoryFootprint();
+                b.append("Cached Players: ").append(cachedPlayers).append('\n');
+                b.append("Location Cache Size: ").append(cacheFootprint / 1024 + " KB").append('\n');
+                b.append("Location Cache Size Per Player: ")
+                        .append((cachedPlayers == 0 ? 0 : cacheFootprint / cachedPlayers) + " B").append('\n');
+                if (this.hyperDatabase instanceof SQLiteDatabase) {
+                    final SQLiteDatabase database = (SQLiteDatabase) this.hyperDatabase;
+                    b.append("Queued Location Writes: ").append(database.getWriteQueue().getQueueDepth()).append('\n');
+                    b.append("Average Flush Latency: ")
+                            .append(database.getWriteQueue().getAverageFlushLatency().toMillis() + " ms").append('\n');
+                    b.append("Purged Locations: ").append(database.getPurgedLocations()).append('\n');
+                    b.append("Reclaimed Database Pages: ").append(database.getReclaimedPages()).append('\n');
+                }
+                b.append("Cached Profiles: ").append(this.profileStore.getCachedProfiles()).append('\n');
+                b.append("Pending Profile Writes: ").append(this.profileStore.getPendingWrites()).append('\n');
+                b.append("Profile Memory Hits: ").append(this.profileStore.getMemoryHits()).append('\n');
+                b.append("Profile Disk Reads: ").append(this.profileStore.getDiskReads()).append('\n');
+                b.append("Merged Profile Writes: ").append(this.profileStore.getMergedWrites()).append('\n');
+                b.append("Profile Prefetch Hits: ").append(this.profileStore.getPrefetchHits()).append('\n');
+                b.append("Profile Prefetch Misses: ").append(this.profileStore.getPrefetchMisses()).append('\n');
+                b.append("Cached Portal Destinations: ").append(this.portalIndex.getDestinationCount()).append('\n');
+                b.append("Portal Index Hits: ").append(this.portalIndex.getHits()).append('\n');
+                b.append("Portal Index Misses: ").append(this.portalIndex.getMisses()).append('\n');
+                b.append("Queued Portal Transfers: ").append(this.portalTransferQueue.getQueueLength()).append('\n');
+                b.append("Deferred Portal Transfers: ").append(this.portalTransferQueue.getDeferredTransfers()).append('\n');
+                b.append("Merged Portal Transfers: ").append(this.portalTransferQueue.getMergedTransfers()).append('\n');
+                b.append("Dropped Portal Transfers: ").append(this.portalTransferQueue.getDroppedTransfers()).append('\n');
+                b.append("Teleports: ").append(this.teleportStatistics.getTeleports()).append('\n');
+                b.append("Average Teleport Latency: ")
+                        .append(this.teleportStatistics.getAverageTeleportLatency().toMillis() + " ms").append('\n');
+                b.append("Pre-warmed Destinations: ").append(this.teleportStatistics.getPrewarms()).append('\n');
+                b.append("Average Pre-warm Latency: ")
+                        .append(this.teleportStatistics.getAveragePrewarmLatency().toMillis() + " ms").append('\n');
+                b.append("Held Chunks: ").append(this.chunkPrewarmer.getHeldChunks()).append('\n');
+                b.append("On-demand World Loads: ").append(this.worldReaper.getOnDemandLoads()).append('\n');
+                b.append("Unloaded Idle Worlds: ").append(this.worldReaper.getReapedWorlds()).append('\n');
+                b.append("Queued Jobs: ").append(this.mainThreadScheduler.getQueueDepth()).append('\n');
+                b.append("Completed Jobs: ").append(this.mainThreadScheduler.getCompletedJobs()).append('\n');
+                b.append("Pending World Deletions: ").append(this.worldTrash.getPendingDeletions()).append('\n');
+                b.append("Deleted World Files: ").append(this.worldTrash.getDeletedFiles()).append('\n');
+                b.append("Pre-generating Worlds: ").append(this.chunkPregenerator.getRunningTasks()).append('\n');
+                b.append("Pre-generated Chunks: ").append(this.chunkPregenerator.getGeneratedChunks()).append('\n');
+                int hibernatingWorlds = 0;
+                Duration hibernationTime = Duration.ZERO;
+                for (final HyperWorld hyperWorld : this.worldManager.getWorlds()) {
+                    if (hyperWorld.isHibernating()) {
+                        hibernatingWorlds++;
+                    }
+                    hibernationTime = hibernationTime.plus(hyperWorld.getHibernationTime());
+                }
+                b.append("Hibernating Worlds: ").append(hibernatingWorlds).append('\n');
+                b.append("Time Spent Hibernating: ").append(hibernationTime.getSeconds() + " s").append('\n');
                 b.append("# Okay :D Great. You are now ready to create your bug report!");
                 b.append(
                         "\n# You can do so at https://github.com/Sauilitired/Hyperverse/issues");
@@ -1200,28 +1329,19 @@ public final class HyperCommandManager extends BaseCommand {
             configuration.setSeed(SeedUtil.randomSeed());
         }
 
-        world.deleteWorld(worldUnloadResult -> {
-            if (worldUnloadResult != HyperWorld.WorldUnloadResult.SUCCESS) {
+        // The new world is only created once the old directory is gone, and never if it was kept
+        world.deleteWorld(true).whenComplete((worldUnloadResult, throwable) -> {
+            if (throwable != null) {
                 MessageUtil.sendMessage(sender, Messages.messageWorldNotRemoved, "%reason%",
-                        worldUnloadResult.getDescription()
+                        throwable.getMessage()
                 );
+                throwable.printStackTrace();
                 return;
             }
-
-            final Path path = Bukkit.getWorldContainer().toPath()
-                    .resolve(world.getConfiguration().getName());
-            try {
-                try (Stream<Path> walk = Files.walk(path)) {
-                    walk.sorted(Comparator.reverseOrder())
-                            .map(Path::toFile)
-                            .peek(System.out::println)
-                            .forEach(File::delete);
-                }
-            } catch (final Exception e) {
+            if (worldUnloadResult != HyperWorld.WorldUnloadResult.SUCCESS) {
                 MessageUtil.sendMessage(sender, Messages.messageWorldNotRemoved, "%reason%",
-                        e.getMessage()
+                        worldUnloadResult.getDescription()
                 );
-                e.printStackTrace();
                 return;
             }
             MessageUtil.sendMessage(sender, Messages.messageWorldRemoved);
@@ -1237,6 +1357,7 @@ public final class HyperCommandManager extends BaseCommand {
                 // Register the world
                 this.worldManager.addWorld(hyperWorld);
                 MessageUtil.sendMessage(sender, Messages.messageWorldCreationFinished);
+                this.chunkPregenerator.startAutomatically(hyperWorld, sender);
                 if (sender instanceof Player) {
                     // Attempt to teleport them to the world
                     hyperWorld.teleportPlayer((Player) sender);
@@ -1263,4 +1384,156 @@ public final class HyperCommandManager extends BaseCommand {
         });
     }
 
+    @Subcommand("pregen")
+    @Description("{@@command.pregen}")
+    @CommandPermission("hyperverse.pregen")
+    @CommandCompletion("@hyperworlds")
+    public void doPregen(final CommandSender sender, final HyperWorld hyperWorld, final int radius) {
+        if (hyperWorld == null) {
+            MessageUtil.sendMessage(sender, Messages.messageNoSuchWorld);
+            return;
+        }
+        if (radius < 1) {
+            MessageUtil.sendMessage(sender, Messages.messagePregenInvalidRadius);
+            return;
+        }
+        if (!hyperWorld.ensureLoaded()) {
+            MessageUtil.sendMessage(sender, Messages.messageWorldNotLoaded);
+            return;
+        }
+        if (!this.chunkPregenerator.start(hyperWorld, radius, sender)) {
+            MessageUtil.sendMessage(sender, Messages.messagePregenAlreadyRunning, "%world%",
+                    hyperWorld.getConfiguration().getName()
+            );
+        }
+    }
+
+    @Subcommand("pregen cancel")
+    @Description("{@@command.pregen.cancel}")
+    @CommandPermission("hyperverse.pregen")
+    @CommandCompletion("@hyperworlds")
+    public void doPregenCancel(final CommandSender sender, final HyperWorld hyperWorld) {
+        if (hyperWorld == null) {
+            MessageUtil.sendMessage(sender, Messages.messageNoSuchWorld);
+            return;
+        }
+        if (this.chunkPregenerator.cancel(hyperWorld)) {
+            MessageUtil.sendMessage(sender, Messages.messagePregenCancelled, "%world%",
+                    hyperWorld.getConfiguration().getName()
+            );
+        } else {
+            MessageUtil.sendMessage(sender, Messages.messagePregenNotRunning, "%world%",
+                    hyperWorld.getConfiguration().getName()
+            );
+        }
+    }
+
+    @Subcommand("convertdatabase")
+    @Description("{@@command.convertdatabase}")
+    @CommandPermission("hyperverse.convertdatabase")
+    @CommandCompletion("@databasetypes")
+    public void doConvertDatabase(final CommandSender sender, final String type) {
+        final DatabaseType databaseType = DatabaseType.fromString(type).orElse(null);
+        if (databaseType == null) {
+            MessageUtil.sendMessage(sender, Messages.messageDatabaseTypeUnknown, "%type%", type, "%types%",
+                    Arrays.stream(DatabaseType.values()).map(DatabaseType::getName).collect(Collectors.joining(", "))
+            );
+            return;
+        }
+        if (databaseType.getImplementation().isInstance(this.hyperDatabase)) {
+            MessageUtil.sendMessage(sender, Messages.messageDatabaseTypeInUse, "%type%", databaseType.getName());
+            return;
+        }
+        MessageUtil.sendMessage(sender, Messages.messageDatabaseConversionStarted, "%type%", databaseType.getName());
+        this.taskChainFactory.newChain().async(() -> {
+            final HyperDatabase target = Hyperverse.getPlugin(Hyperverse.class).getInjector()
+                    .getInstance(databaseType.getImplementation());
+            if (!target.attemptConnect()) {
+                MessageUtil.sendMessage(sender, Messages.messageDatabaseConversionFailed, "%reason%",
+                        "Could not connect to the " + databaseType.getName() + " database");
+                return;
+            }
+            try {
+                // Locations are streamed in batches, so that the whole database never has to be kept in memory.
+                // The current database is not locked while the batches are imported
+                final List<PersistentLocation> batch = new ArrayList<>(CONVERSION_BATCH_SIZE);
+                final long[] count = new long[1];
+                this.hyperDatabase.exportLocations(location -> {
+                    batch.add(location);
+                    if (batch.size() >= CONVERSION_BATCH_SIZE) {
+                        count[0] += this.importBatch(target, batch);
+                    }
+                });
+                count[0] += this.importBatch(target, batch);
+                MessageUtil.sendMessage(sender, Messages.messageDatabaseConversionFinished, "%count%",
+                        Long.toString(count[0]), "%type%", databaseType.getName()
+                );
+            } catch (final Exception e) {
+                MessageUtil.sendMessage(sender, Messages.messageDatabaseConversionFailed, "%reason%", e.getMessage());
+                e.printStackTrace();
+            } finally {
+                target.attemptClose();
+            }
+        }).execute();
+    }
+
+    @Subcommand("convertprofiles")
+    @Description("{@@command.convertprofiles}")
+    @CommandPermission("hyperverse.convertprofiles")
+    @CommandCompletion("@profilestoragetypes")
+    public void doConvertProfiles(final CommandSender sender, final String type) {
+        final ProfileStorageType storageType = ProfileStorageType.fromString(type).orElse(null);
+        if (storageType == null) {
+            MessageUtil.sendMessage(sender, Messages.messageProfileStorageTypeUnknown, "%type%", type, "%types%",
+                    Arrays.stream(ProfileStorageType.values()).map(ProfileStorageType::getName)
+                            .collect(Collectors.joining(", "))
+            );
+            return;
+        }
+        if (storageType.getImplementation().isInstance(this.profileStore.getStorage())) {
+            MessageUtil.sendMessage(sender, Messages.messageProfileStorageTypeInUse, "%type%", storageType.getName());
+            return;
+        }
+        MessageUtil.sendMessage(sender, Messages.messageProfileConversionStarted, "%type%", storageType.getName());
+        this.taskChainFactory.newChain().async(() -> {
+            // Make sure that recently saved profiles are included
+            this.profileStore.flush();
+            final ProfileStorage target = Hyperverse.getPlugin(Hyperverse.class).getInjector()
+                    .getInstance(storageType.getImplementation());
+            try {
+                final long[] count = new long[1];
+                this.profileStore.getStorage().exportProfiles((uuid, group, data) -> {
+                    target.write(uuid, group, data);
+                    count[0]++;
+                });
+                MessageUtil.sendMessage(sender, Messages.messageProfileConversionFinished, "%count%",
+                        Long.toString(count[0]), "%type%", storageType.getName()
+                );
+            } catch (final Exception e) {
+                MessageUtil.sendMessage(sender, Messages.messageProfileConversionFailed, "%reason%", e.getMessage());
+                e.printStackTrace();
+            } finally {
+                try {
+                    target.close();
+                } catch (final IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }).execute();
+    }
+
+    private int importBatch(final @NonNull HyperDatabase target, final @NonNull List<PersistentLocation> batch) {
+        final int size = batch.size();
+        if (size == 0) {
+            return 0;
+        }
+        try {
+            target.importLocations(batch);
+        } catch (final Exception e) {
+            throw new IllegalStateException(e);
+        }
+        batch.clear();
+        return size;
+    }
+
 }
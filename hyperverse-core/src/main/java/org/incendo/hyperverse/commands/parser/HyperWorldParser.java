@@ -24,6 +24,7 @@ import cloud.commandframework.exceptions.parsing.NoInputProvidedException;
 import org.bukkit.entity.Entity;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.incendo.hyperverse.configuration.Messages;
+import org.incendo.hyperverse.flags.implementation.OnDemandFlag;
 import org.incendo.hyperverse.world.HyperWorld;
 import org.incendo.hyperverse.world.WorldManager;
 
@@ -60,6 +61,13 @@ public final class HyperWorldParser<C> implements ArgumentParser<C, HyperWorld>
         this.filterSameWorld = filterSameWorld;
     }
 
+    /**
+     * On-demand worlds count as loaded, as they are loaded once they are used
+     */
+    private static boolean isAvailable(final @NonNull HyperWorld hyperWorld) {
+        return hyperWorld.isLoaded() || hyperWorld.getFlag(OnDemandFlag.class);
+    }
+
     @Override
     public @NonNull ArgumentParseResult<@NonNull HyperWorld> parse(
             @NonNull final CommandContext<@NonNull C> commandContext,
@@ -76,7 +84,7 @@ public final class HyperWorldParser<C> implements ArgumentParser<C, HyperWorld>
         if (!this.filterSameWorld && this.allowedWorldState == WorldState.ANY) {
             return ArgumentParseResult.success(hyperWorld);
         }
-        if (this.allowedWorldState == WorldState.LOADED && !hyperWorld.isLoaded()) {
+        if (this.allowedWorldState == WorldState.LOADED && !isAvailable(hyperWorld)) {
             return ArgumentParseResult.failure(new IllegalArgumentException(Messages.messageWorldNotLoaded.withoutColorCodes()));
         } else if (this.allowedWorldState == WorldState.UNLOADED && hyperWorld.isLoaded()) {
             return ArgumentParseResult.failure(new IllegalArgumentException(Messages.messageWorldAlreadyLoaded.withoutColorCodes()));
@@ -99,7 +107,7 @@ public final class HyperWorldParser<C> implements ArgumentParser<C, HyperWorld>
     ) {
         Stream<HyperWorld> stream = this.worldManager.getWorlds().stream();
         if (this.allowedWorldState == WorldState.LOADED) {
-            stream = stream.filter(HyperWorld::isLoaded);
+            stream = stream.filter(HyperWorldParser::isAvailable);
         } else if (this.allowedWorldState == WorldState.UNLOADED) {
             stream = stream.filter(Predicate.not(HyperWorld::isLoaded));
         }
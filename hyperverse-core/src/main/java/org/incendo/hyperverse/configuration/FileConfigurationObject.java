@@ -54,6 +54,69 @@ public final class FileConfigurationObject {
     @Setting(value = "debug")
     @Comment(value = "Whether or not Hyperverse should print verbose debugging messages")
     private boolean debug = false;
+    @Setting(value = "database-batch-size")
+    @Comment(value = "Number of queued location writes that causes them to be written to the database immediately")
+    private int databaseBatchSize = 256;
+    @Setting(value = "database-flush-interval")
+    @Comment(value = "Maximum time (in milliseconds) that location writes are queued before they are written to the database")
+    private long databaseFlushInterval = 5000L;
+    @Setting(value = "login-preload-timeout")
+    @Comment(value = "Maximum time (in milliseconds) that a login waits for persistent locations to load. Locations that take longer are loaded in the background")
+    private long loginPreloadTimeout = 5000L;
+    @Setting(value = "database-type")
+    @Comment(value = "The storage backend used to persist locations. Available backends: sqlite, journal")
+    private String databaseType = "sqlite";
+    @Setting(value = "player-location-expiry")
+    @Comment(value = "Number of days after which the stored location of a player that hasn't been seen in a world is removed. Use 0 to keep locations forever")
+    private long playerLocationExpiry = 0L;
+    @Setting(value = "bed-spawn-expiry")
+    @Comment(value = "Number of days after which the stored bed spawn of a player that hasn't been seen is removed. Use 0 to keep bed spawns forever")
+    private long bedSpawnExpiry = 0L;
+    @Setting(value = "profile-cache-size")
+    @Comment(value = "Maximum number of grouped player profiles that are kept in memory")
+    private int profileCacheSize = 256;
+    @Setting(value = "profile-write-delay")
+    @Comment(value = "Time (in milliseconds) to wait before writing a grouped player profile to disk. Writes of the same profile within this window are merged")
+    private long profileWriteDelay = 2000L;
+    @Setting(value = "profile-storage")
+    @Comment(value = "The storage backend used to store grouped player profiles. Available backends: file, packed")
+    private String profileStorage = "file";
+    @Setting(value = "profile-prefetch-ttl")
+    @Comment(value = "Time (in milliseconds) that a grouped player profile that is loaded ahead of a likely group switch is kept in memory. Use 0 to disable prefetching")
+    private long profilePrefetchTtl = 5000L;
+    @Setting(value = "portal-transfer-budget")
+    @Comment(value = "Maximum number of non-player entities that are sent through linked portals from one world to another every tick")
+    private int portalTransferBudget = 20;
+    @Setting(value = "portal-transfer-queue-size")
+    @Comment(value = "Maximum number of non-player entities that wait to be sent through linked portals from one world to another. Entities beyond this stay in the portal and try again later")
+    private int portalTransferQueueSize = 200;
+    @Setting(value = "safe-teleport-radius")
+    @Comment(value = "Horizontal radius (in blocks) around the target that is searched for a safe location when safe-teleport is enabled")
+    private int safeTeleportRadius = 16;
+    @Setting(value = "batch-teleport-rate")
+    @Comment(value = "Maximum number of players that a mass teleport sends to the destination each tick")
+    private int batchTeleportRate = 5;
+    @Setting(value = "teleport-prewarm-radius")
+    @Comment(value = "Radius (in chunks) around a teleport destination that is loaded before the player is sent. This is limited by the view distance of the destination world. Set to 0 to disable")
+    private int teleportPrewarmRadius = 2;
+    @Setting(value = "teleport-prewarm-grace")
+    @Comment(value = "Time (in ticks) that pre-warmed chunks are kept loaded after the player has arrived")
+    private long teleportPrewarmGrace = 100L;
+    @Setting(value = "on-demand-idle-time")
+    @Comment(value = "Time (in seconds) that an on-demand world has to be empty before it is unloaded. Set to 0 to keep on-demand worlds loaded once they have been loaded")
+    private long onDemandIdleTime = 300L;
+    @Setting(value = "tick-budget")
+    @Comment(value = "Maximum time (in milliseconds) per tick that is spent on queued main thread work, such as unloading chunks and mass teleports. Less is used when the server is short on time")
+    private int tickBudget = 10;
+    @Setting(value = "world-deletion-rate")
+    @Comment(value = "Maximum number of files per second that are removed when a world directory is deleted. Deleted directories are moved out of the way immediately, and their files are removed in the background. Set to 0 to remove them as fast as possible")
+    private int worldDeletionRate = 1000;
+    @Setting(value = "pregen-max-chunks-in-flight")
+    @Comment(value = "Maximum number of chunks that are being generated at once by /hv pregen. Fewer are used when the server is short on time")
+    private int pregenMaxChunksInFlight = 16;
+    @Setting(value = "pregen-radius-on-create")
+    @Comment(value = "Radius (in blocks) around the spawn that is pre-generated after a world has been created or regenerated. Set to 0 to disable")
+    private int pregenRadiusOnCreate = 0;
 
     boolean isImportAutomatically() {
         return this.importAutomatically;
@@ -87,4 +150,88 @@ public final class FileConfigurationObject {
         return this.debug;
     }
 
+    int getDatabaseBatchSize() {
+        return this.databaseBatchSize;
+    }
+
+    long getDatabaseFlushInterval() {
+        return this.databaseFlushInterval;
+    }
+
+    long getLoginPreloadTimeout() {
+        return this.loginPreloadTimeout;
+    }
+
+    @NonNull String getDatabaseType() {
+        return this.databaseType;
+    }
+
+    long getPlayerLocationExpiry() {
+        return this.playerLocationExpiry;
+    }
+
+    long getBedSpawnExpiry() {
+        return this.bedSpawnExpiry;
+    }
+
+    int getProfileCacheSize() {
+        return this.profileCacheSize;
+    }
+
+    long getProfileWriteDelay() {
+        return this.profileWriteDelay;
+    }
+
+    @NonNull String getProfileStorage() {
+        return this.profileStorage;
+    }
+
+    long getProfilePrefetchTtl() {
+        return this.profilePrefetchTtl;
+    }
+
+    int getPortalTransferBudget() {
+        return this.portalTransferBudget;
+    }
+
+    int getPortalTransferQueueSize() {
+        return this.portalTransferQueueSize;
+    }
+
+    int getSafeTeleportRadius() {
+        return this.safeTeleportRadius;
+    }
+
+    int getBatchTeleportRate() {
+        return this.batchTeleportRate;
+    }
+
+    int getTeleportPrewarmRadius() {
+        return this.teleportPrewarmRadius;
+    }
+
+    long getTeleportPrewarmGrace() {
+        return this.teleportPrewarmGrace;
+    }
+
+    long getOnDemandIdleTime() {
+        return this.onDemandIdleTime;
+    }
+
+    int getTickBudget() {
+        return this.tickBudget;
+    }
+
+    int getWorldDeletionRate() {
+        return this.worldDeletionRate;
+    }
+
+    int getPregenMaxChunksInFlight() {
+        return this.pregenMaxChunksInFlight;
+    }
+
+    int getPregenRadiusOnCreate() {
+        return this.pregenRadiusOnCreate;
+    }
+
 }
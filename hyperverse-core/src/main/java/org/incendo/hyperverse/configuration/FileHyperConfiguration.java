@@ -130,4 +130,109 @@ public final class FileHyperConfiguration implements HyperConfiguration {
         return this.fileConfigurationObject.shouldPrintDebug();
     }
 
+    @Override
+    public int getDatabaseBatchSize() {
+        return this.fileConfigurationObject.getDatabaseBatchSize();
+    }
+
+    @Override
+    public long getDatabaseFlushInterval() {
+        return this.fileConfigurationObject.getDatabaseFlushInterval();
+    }
+
+    @Override
+    public long getLoginPreloadTimeout() {
+        return this.fileConfigurationObject.getLoginPreloadTimeout();
+    }
+
+    @Override
+    public @NonNull String getDatabaseType() {
+        return this.fileConfigurationObject.getDatabaseType();
+    }
+
+    @Override
+    public long getPlayerLocationExpiry() {
+        return this.fileConfigurationObject.getPlayerLocationExpiry();
+    }
+
+    @Override
+    public long getBedSpawnExpiry() {
+        return this.fileConfigurationObject.getBedSpawnExpiry();
+    }
+
+    @Override
+    public int getProfileCacheSize() {
+        return this.fileConfigurationObject.getProfileCacheSize();
+    }
+
+    @Override
+    public long getProfileWriteDelay() {
+        return this.fileConfigurationObject.getProfileWriteDelay();
+    }
+
+    @Override
+    public @NonNull String getProfileStorage() {
+        return this.fileConfigurationObject.getProfileStorage();
+    }
+
+    @Override
+    public long getProfilePrefetchTtl() {
+        return this.fileConfigurationObject.getProfilePrefetchTtl();
+    }
+
+    @Override
+    public int getPortalTransferBudget() {
+        return this.fileConfigurationObject.getPortalTransferBudget();
+    }
+
+    @Override
+    public int getPortalTransferQueueSize() {
+        return this.fileConfigurationObject.getPortalTransferQueueSize();
+    }
+
+    @Override
+    public int getSafeTeleportRadius() {
+        return this.fileConfigurationObject.getSafeTeleportRadius();
+    }
+
+    @Override
+    public int getBatchTeleportRate() {
+        return this.fileConfigurationObject.getBatchTeleportRate();
+    }
+
+    @Override
+    public int getTeleportPrewarmRadius() {
+        return this.fileConfigurationObject.getTeleportPrewarmRadius();
+    }
+
+    @Override
+    public long getTeleportPrewarmGrace() {
+        return this.fileConfigurationObject.getTeleportPrewarmGrace();
+    }
+
+    @Override
+    public long getOnDemandIdleTime() {
+        return this.fileConfigurationObject.getOnDemandIdleTime();
+    }
+
+    @Override
+    public int getTickBudget() {
+        return this.fileConfigurationObject.getTickBudget();
+    }
+
+    @Override
+    public int getWorldDeletionRate() {
+        return this.fileConfigurationObject.getWorldDeletionRate();
+    }
+
+    @Override
+    public int getPregenMaxChunksInFlight() {
+        return this.fileConfigurationObject.getPregenMaxChunksInFlight();
+    }
+
+    @Override
+    public int getPregenRadiusOnCreate() {
+        return this.fileConfigurationObject.getPregenRadiusOnCreate();
+    }
+
 }
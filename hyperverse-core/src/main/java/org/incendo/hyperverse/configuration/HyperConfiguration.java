@@ -93,4 +93,169 @@ public interface HyperConfiguration {
      */
     boolean shouldPrintDebug();
 
+    /**
+     * Get the number of queued location writes that
+     * causes the queue to be flushed immediately
+     *
+     * @return Location write batch size
+     */
+    int getDatabaseBatchSize();
+
+    /**
+     * Get the maximum time (in milliseconds) that location
+     * writes are queued before they are flushed
+     *
+     * @return Location write flush interval
+     */
+    long getDatabaseFlushInterval();
+
+    /**
+     * Get the maximum time (in milliseconds) that a login
+     * waits for persistent locations to be loaded
+     *
+     * @return Login preload timeout
+     */
+    long getLoginPreloadTimeout();
+
+    /**
+     * Get the name of the storage backend
+     * used to persist locations
+     *
+     * @return Database type name
+     */
+    @NonNull String getDatabaseType();
+
+    /**
+     * Get the number of days after which unused
+     * persistent player locations are removed
+     *
+     * @return Player location expiry, or 0 if locations never expire
+     */
+    long getPlayerLocationExpiry();
+
+    /**
+     * Get the number of days after which unused
+     * bed spawn locations are removed
+     *
+     * @return Bed spawn expiry, or 0 if bed spawns never expire
+     */
+    long getBedSpawnExpiry();
+
+    /**
+     * Get the maximum number of grouped player profiles
+     * that are kept in memory
+     *
+     * @return Profile cache size
+     */
+    int getProfileCacheSize();
+
+    /**
+     * Get the time (in milliseconds) that a grouped player
+     * profile write is delayed, so that it can be merged
+     * with later writes of the same profile
+     *
+     * @return Profile write delay
+     */
+    long getProfileWriteDelay();
+
+    /**
+     * Get the name of the storage backend
+     * used to store grouped player profiles
+     *
+     * @return Profile storage type name
+     */
+    @NonNull String getProfileStorage();
+
+    /**
+     * Get the time (in milliseconds) that a prefetched
+     * grouped player profile is kept in memory
+     *
+     * @return Profile prefetch TTL, or 0 if prefetching is disabled
+     */
+    long getProfilePrefetchTtl();
+
+    /**
+     * Get the maximum number of non-player entities that
+     * are sent through linked portals from one world to another every tick
+     *
+     * @return Portal transfer budget
+     */
+    int getPortalTransferBudget();
+
+    /**
+     * Get the maximum number of non-player entities that wait to
+     * be sent through linked portals from one world to another
+     *
+     * @return Portal transfer queue size
+     */
+    int getPortalTransferQueueSize();
+
+    /**
+     * Get the horizontal radius (in blocks) around a teleport target
+     * that is searched for a safe location
+     *
+     * @return Search radius
+     */
+    int getSafeTeleportRadius();
+
+    /**
+     * Get the maximum number of players that a mass teleport
+     * sends to the destination each tick
+     *
+     * @return Players per tick
+     */
+    int getBatchTeleportRate();
+
+    /**
+     * Get the radius (in chunks) around a teleport destination
+     * that is loaded before the player is teleported
+     *
+     * @return Pre-warm radius
+     */
+    int getTeleportPrewarmRadius();
+
+    /**
+     * Get the time (in ticks) that pre-warmed chunks are kept
+     * loaded after the teleport has completed
+     *
+     * @return Grace period
+     */
+    long getTeleportPrewarmGrace();
+
+    /**
+     * Get the time (in seconds) that a world with the on-demand
+     * flag has to be empty before it is unloaded
+     *
+     * @return Idle time
+     */
+    long getOnDemandIdleTime();
+
+    /**
+     * Get the maximum time per tick that is spent on queued main thread work
+     *
+     * @return Tick budget, in milliseconds
+     */
+    int getTickBudget();
+
+    /**
+     * Get the maximum number of files per second that are removed when a world directory is deleted
+     *
+     * @return Files per second, or 0 if unlimited
+     */
+    int getWorldDeletionRate();
+
+    /**
+     * Get the maximum number of chunks that are being pre-generated at once
+     *
+     * @return Maximum number of chunks in flight
+     */
+    int getPregenMaxChunksInFlight();
+
+    /**
+     * Get the radius around the spawn that is pre-generated after a world has been created or regenerated
+     *
+     * @return Radius, in blocks, or 0 if disabled
+     */
+    int getPregenRadiusOnCreate();
+
 }
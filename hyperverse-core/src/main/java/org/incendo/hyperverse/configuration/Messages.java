@@ -151,6 +151,14 @@ public final class Messages {
             "teleport.teleporting-other",
             "<gray>%player% is being teleported to %world%</gray>"
     );
+    public static final @NonNull Message messageTeleportingPlayers = createMessage(
+            "teleport.teleporting-players",
+            "<gray>Teleporting %amount% players to %world%</gray>"
+    );
+    public static final @NonNull Message messageTeleportProgress = createMessage(
+            "teleport.progress",
+            "<gray>Teleported %processed%/%total% players to %world%</gray>"
+    );
     public static final @NonNull Message messageInfoHeader = createMessage(
             "info.header",
             "&7World Information"
@@ -227,6 +235,10 @@ public final class Messages {
             "world.removed",
             "&7The world was removed successfully"
     );
+    public static final @NonNull Message messageWorldRemovedInBackground = createMessage(
+            "world.removed_background",
+            "&7The world was removed successfully. Its files are being deleted in the background"
+    );
     public static final @NonNull Message messageNotPermittedEntry = createMessage(
             "world.not_permitted",
             "&cYou are not allowed to enter that world"
@@ -315,6 +327,90 @@ public final class Messages {
             "feature.loaded",
             "&7Enabled plugin feature '&6%feature%&7' for plugin '&6%plugin%&7'"
     );
+    // Database messages
+    public static final @NonNull Message messageDatabaseTypeUnknown = createMessage(
+            "database.unknown_type",
+            "&cUnknown database type: %type%. Available types: %types%"
+    );
+    public static final @NonNull Message messageDatabaseTypeInUse = createMessage(
+            "database.type_in_use",
+            "&cHyperverse is already using the %type% database"
+    );
+    public static final @NonNull Message messageDatabaseConversionStarted = createMessage(
+            "database.conversion_started",
+            "&7Copying stored locations to the %type% database..."
+    );
+    public static final @NonNull Message messageDatabaseConversionFinished = createMessage(
+            "database.conversion_finished",
+            "&7Copied %count% stored locations to the %type% database. Set &6database-type&7 to &6%type%&7 in plugin.conf and restart the server to start using it."
+    );
+    public static final @NonNull Message messageDatabaseConversionFailed = createMessage(
+            "database.conversion_failed",
+            "&cFailed to copy stored locations: %reason%"
+    );
+    // Profile storage messages
+    public static final @NonNull Message messageProfileStorageTypeUnknown = createMessage(
+            "profiles.unknown_type",
+            "&cUnknown profile storage type: %type%. Available types: %types%"
+    );
+    public static final @NonNull Message messageProfileStorageTypeInUse = createMessage(
+            "profiles.type_in_use",
+            "&cHyperverse is already using the %type% profile storage"
+    );
+    public static final @NonNull Message messageProfileConversionStarted = createMessage(
+            "profiles.conversion_started",
+            "&7Copying grouped player profiles to the %type% profile storage..."
+    );
+    public static final @NonNull Message messageProfileConversionFinished = createMessage(
+            "profiles.conversion_finished",
+            "&7Copied %count% grouped player profiles to the %type% profile storage. Set &6profile-storage&7 to &6%type%&7 in plugin.conf and restart the server to start using it."
+    );
+    public static final @NonNull Message messageProfileConversionFailed = createMessage(
+            "profiles.conversion_failed",
+            "&cFailed to copy grouped player profiles: %reason%"
+    );
+    // Main thread scheduler messages
+    public static final @NonNull Message messageJobsHeader = createMessage(
+            "jobs.header",
+            "&7Queued jobs: &6%amount% &8(&7%mspt% ms/tick, budget %budget% ms&8)"
+    );
+    public static final @NonNull Message messageJobsEntry = createMessage(
+            "jobs.entry",
+            "&8- &7%name% &8(&7%priority%&8) &7%time% ms in %steps% steps"
+    );
+    // Chunk pre-generation messages
+    public static final @NonNull Message messagePregenStarted = createMessage(
+            "pregen.started",
+            "&7Pre-generating %chunks% chunks around the spawn of %world%"
+    );
+    public static final @NonNull Message messagePregenResumed = createMessage(
+            "pregen.resumed",
+            "&7Resumed pre-generating %world% (%generated%/%chunks% chunks)"
+    );
+    public static final @NonNull Message messagePregenProgress = createMessage(
+            "pregen.progress",
+            "&7Pre-generated %generated%/%chunks% chunks in %world% (%percent%%, %rate% chunks/s)"
+    );
+    public static final @NonNull Message messagePregenFinished = createMessage(
+            "pregen.finished",
+            "&7Finished pre-generating %world%"
+    );
+    public static final @NonNull Message messagePregenCancelled = createMessage(
+            "pregen.cancelled",
+            "&7Stopped pre-generating %world%"
+    );
+    public static final @NonNull Message messagePregenAlreadyRunning = createMessage(
+            "pregen.already_running",
+            "&c%world% is already being pre-generated"
+    );
+    public static final @NonNull Message messagePregenNotRunning = createMessage(
+            "pregen.not_running",
+            "&c%world% is not being pre-generated"
+    );
+    public static final @NonNull Message messagePregenInvalidRadius = createMessage(
+            "pregen.invalid_radius",
+            "&cThe radius must be at least 1 block"
+    );
     // Flag descriptions
     public static final @NonNull Message flagDescriptionGamemode = createMessage(
             "flags.gamemode",
@@ -365,6 +461,14 @@ public final class Messages {
             "flags.mob-spawn",
             "Whether or not mobs are allowed to spawn in the world"
     );
+    public static final @NonNull Message flagDescriptionAmbientSpawn = createMessage(
+            "flags.ambient-spawn",
+            "Whether or not ambient creatures, such as bats, are allowed to spawn in the world"
+    );
+    public static final @NonNull Message flagDescriptionWaterSpawn = createMessage(
+            "flags.water-spawn",
+            "Whether or not water creatures, such as fish, squids and axolotls, are allowed to spawn in the world"
+    );
     public static final @NonNull Message flagDescriptionAdvancements = createMessage(
             "flags.advancements",
             "Whether or not advancements can be obtained in the world"
@@ -385,6 +489,14 @@ public final class Messages {
             "flags.unload-spawn",
             "Force the world spawn to be unloaded"
     );
+    public static final @NonNull Message flagDescriptionHibernate = createMessage(
+            "flags.hibernate",
+            "Whether or not the world should hibernate while it is empty. Random ticks, the daylight and weather cycles, mob spawning and the spawn chunks are paused until a player enters the world"
+    );
+    public static final @NonNull Message flagDescriptionOnDemand = createMessage(
+            "flags.on-demand",
+            "Whether or not the world should only be loaded when something needs it, and be unloaded again once it has been empty for a while"
+    );
     // Command Descriptions
     public static final @NonNull Message commandDescriptionCreate = createMessage(
             "command.create",
@@ -460,6 +572,26 @@ public final class Messages {
             "command.regenerate",
             "Regenerate a world"
     );
+    public static final @NonNull Message commandDescriptionConvertDatabase = createMessage(
+            "command.convertdatabase",
+            "Copy all stored locations to another database type"
+    );
+    public static final @NonNull Message commandDescriptionConvertProfiles = createMessage(
+            "command.convertprofiles",
+            "Copy all grouped player profiles to another profile storage type"
+    );
+    public static final @NonNull Message commandDescriptionJobs = createMessage(
+            "command.jobs",
+            "List the queued main thread jobs"
+    );
+    public static final @NonNull Message commandDescriptionPregen = createMessage(
+            "command.pregen",
+            "Pre-generate the chunks around the spawn of a world"
+    );
+    public static final @NonNull Message commandDescriptionPregenCancel = createMessage(
+            "command.pregen.cancel",
+            "Stop pre-generating a world"
+    );
 
     public static @NonNull Map<@NonNull String, @NonNull String> getConfiguredMessages() {
         return configuredMessages;
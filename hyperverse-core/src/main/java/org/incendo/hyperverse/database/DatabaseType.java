@@ -0,0 +1,74 @@
+//
+//  Hyperverse - A minecraft world management plugin
+//
+//  This program is free software: you can redistribute it and/or modify
+//  it under the terms of the GNU General Public License as published by
+//  the Free Software Foundation, either version 3 of the License, or
+//  (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful,
+//  but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  GNU General Public License for more details.
+//
+//  You should have received a copy of the GNU General Public License
+//  along with this program. If not, see <http://www.gnu.org/licenses/>.
+//
+
+package org.incendo.hyperverse.database;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Storage backends that can be used to persist locations
+ */
+public enum DatabaseType {
+    SQLITE("sqlite", SQLiteDatabase.class),
+    JOURNAL("journal", JournalDatabase.class);
+
+    private final String name;
+    private final Class<? extends HyperDatabase> implementation;
+
+    DatabaseType(final @NonNull String name, final @NonNull Class<? extends HyperDatabase> implementation) {
+        this.name = name;
+        this.implementation = implementation;
+    }
+
+    /**
+     * Attempt to map a string to a database type
+     *
+     * @param string String to match
+     * @return Optional containing the type, if found
+     */
+    public static @NonNull Optional<@NonNull DatabaseType> fromString(final @NonNull String string) {
+        final String normalized = Objects.requireNonNull(string.toLowerCase());
+        for (final DatabaseType databaseType : values()) {
+            if (databaseType.getName().equals(normalized)) {
+                return Optional.of(databaseType);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Get the name used to refer to the backend in the configuration
+     *
+     * @return Backend name
+     */
+    public @NonNull String getName() {
+        return this.name;
+    }
+
+    /**
+     * Get the class implementing the backend
+     *
+     * @return Implementation class
+     */
+    public @NonNull Class<? extends HyperDatabase> getImplementation() {
+        return this.implementation;
+    }
+
+}
@@ -18,18 +18,18 @@
 package org.incendo.hyperverse.database;
 
 import co.aikar.taskchain.TaskChainFactory;
-import com.google.common.collect.HashBasedTable;
-import com.google.common.collect.Table;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.incendo.hyperverse.Hyperverse;
 
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 /**
  * Class containing the database connection that
@@ -37,9 +37,25 @@ import java.util.concurrent.CompletableFuture;
  */
 public abstract class HyperDatabase {
 
+    /**
+     * Maximum number of players that are preloaded in a single query
+     */
+    protected static final int PRELOAD_BATCH_SIZE = 500;
+    /**
+     * Maximum number of locations that are read while holding
+     * the database lock when locations are exported
+     */
+    protected static final int EXPORT_PAGE_SIZE = 1_000;
+
     private final TaskChainFactory taskChainFactory;
     private final Hyperverse hyperverse;
-    private final EnumMap<LocationType, Table<UUID, String, PersistentLocation>> locations;
+    private final LocationCache locationCache = new LocationCache();
+    /**
+     * Players that were evicted from the cache while their locations were being loaded.
+     * Guarded by itself, so that a load can't add locations after they were evicted
+     */
+    private final Set<UUID> evictedWhileLoading = new HashSet<>();
+    private final LocationPreloader preloader;
 
     protected HyperDatabase(
             final @NonNull TaskChainFactory taskChainFactory,
@@ -47,10 +63,7 @@ public abstract class HyperDatabase {
     ) {
         this.taskChainFactory = taskChainFactory;
         this.hyperverse = hyperverse;
-        this.locations = new EnumMap<>(LocationType.class);
-        for (final LocationType type : LocationType.values()) {
-            this.locations.put(type, HashBasedTable.create());
-        }
+        this.preloader = new LocationPreloader(this::loadLocations, hyperverse.getLogger(), PRELOAD_BATCH_SIZE);
     }
 
     /**
@@ -84,12 +97,12 @@ public abstract class HyperDatabase {
      * @param uuid Player UUID
      */
     public void clearLocations(final @NonNull UUID uuid) {
-        for (final Map.Entry<LocationType, Table<UUID, String, PersistentLocation>> entry : this.locations.entrySet()) {
-            final Table<UUID, String, PersistentLocation> table = entry.getValue();
-            final Collection<String> keys = new ArrayList<>(table.columnKeySet());
-            for (final String key : keys) {
-                table.remove(uuid, key);
+        synchronized (this.evictedWhileLoading) {
+            if (this.preloader.getPending(uuid) != null) {
+                // The player quit before the load finished, so whatever it loads must not be cached
+                this.evictedWhileLoading.add(uuid);
             }
+            this.locationCache.evict(uuid);
         }
     }
 
@@ -101,6 +114,37 @@ public abstract class HyperDatabase {
      */
     public abstract @NonNull CompletableFuture<Collection<PersistentLocation>> getLocations(final @NonNull UUID uuid);
 
+    /**
+     * Request the locations of a player to be loaded. Concurrent requests
+     * are gathered and loaded together
+     *
+     * @param uuid Player UUID
+     * @return Future that will complete with the locations
+     */
+    public @NonNull CompletableFuture<Collection<PersistentLocation>> preloadLocations(final @NonNull UUID uuid) {
+        synchronized (this.evictedWhileLoading) {
+            // A load that is still running from the previous session can be used for this one
+            this.evictedWhileLoading.remove(uuid);
+        }
+        return this.preloader.preload(uuid);
+    }
+
+    /**
+     * Get a future that completes once the locations of a player are available. The
+     * future completes immediately if the player isn't being loaded, and it never
+     * completes exceptionally
+     *
+     * @param uuid Player UUID
+     * @return Future that completes once the locations have been loaded
+     */
+    public @NonNull CompletableFuture<Void> awaitLocations(final @NonNull UUID uuid) {
+        final CompletableFuture<Collection<PersistentLocation>> pending = this.preloader.getPending(uuid);
+        if (pending == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return pending.handle((locations, throwable) -> null);
+    }
+
     /**
      * Get a stored persistent location for a given UUID
      * and world
@@ -115,7 +159,7 @@ public abstract class HyperDatabase {
             final @NonNull UUID uuid,
             final @NonNull String world, final @NonNull LocationType locationType
     ) {
-        return Optional.ofNullable(this.locations.get(locationType).get(uuid, world));
+        return Optional.ofNullable(this.locationCache.get(uuid, world, locationType));
     }
 
     /**
@@ -125,6 +169,68 @@ public abstract class HyperDatabase {
      */
     public abstract void clearWorld(final @NonNull String worldName);
 
+    /**
+     * Pass every stored location to a consumer. Queued writes are written
+     * before the locations are read. The locations are read in pages, and the
+     * consumer is called without holding any lock on the database, so it may
+     * write to another database. This may block, and should not be called
+     * from the main thread
+     *
+     * @param consumer Location consumer
+     * @throws Exception If the locations could not be read
+     */
+    public abstract void exportLocations(final @NonNull Consumer<@NonNull PersistentLocation> consumer) throws Exception;
+
+    /**
+     * Write locations straight to storage, bypassing the write queue. This
+     * may block, and should not be called from the main thread
+     *
+     * @param locations Locations to write
+     * @throws Exception If the locations could not be written
+     */
+    public abstract void importLocations(final @NonNull Collection<@NonNull PersistentLocation> locations) throws Exception;
+
+    /**
+     * Load the locations of several players at once. This is called from
+     * the preloader thread, and may block. The default implementation
+     * performs one {@link #getLocations(UUID)} lookup per player
+     *
+     * @param uuids Player UUIDs
+     * @return Locations mapped by player UUID
+     * @throws Exception If the locations could not be loaded
+     */
+    protected @NonNull Map<@NonNull UUID, @NonNull Collection<@NonNull PersistentLocation>> loadLocations(
+            final @NonNull Collection<@NonNull UUID> uuids
+    ) throws Exception {
+        final Map<UUID, Collection<PersistentLocation>> result = new HashMap<>();
+        for (final UUID uuid : uuids) {
+            result.put(uuid, this.getLocations(uuid).get());
+        }
+        return result;
+    }
+
+    /**
+     * Add loaded locations to the location cache. Locations that are already
+     * present are kept, as they are newer than anything that was loaded. Nothing
+     * is added if the player was evicted while the locations were being loaded
+     *
+     * @param uuid      Player UUID
+     * @param locations Loaded locations
+     */
+    protected void cacheLocations(
+            final @NonNull UUID uuid,
+            final @NonNull Collection<@NonNull PersistentLocation> locations
+    ) {
+        synchronized (this.evictedWhileLoading) {
+            if (this.evictedWhileLoading.remove(uuid)) {
+                return;
+            }
+            for (final PersistentLocation persistentLocation : locations) {
+                this.locationCache.putIfAbsent(uuid, persistentLocation);
+            }
+        }
+    }
+
     protected final @NonNull TaskChainFactory getTaskChainFactory() {
         return this.taskChainFactory;
     }
@@ -133,8 +239,17 @@ public abstract class HyperDatabase {
         return this.hyperverse;
     }
 
-    protected final @NonNull EnumMap<@NonNull LocationType, @NonNull Table<UUID, String, PersistentLocation>> getLocations() {
-        return this.locations;
+    /**
+     * Get the cache that holds the locations of online players
+     *
+     * @return Location cache
+     */
+    public final @NonNull LocationCache getLocationCache() {
+        return this.locationCache;
+    }
+
+    protected final @NonNull LocationPreloader getPreloader() {
+        return this.preloader;
     }
 
 }
@@ -0,0 +1,602 @@
+//
+//  Hyperverse - A minecraft world management plugin
+//
+//  This program is free software: you can redistribute it and/or modify
+//  it under the terms of the GNU General Public License as published by
+//  the Free Software Foundation, either version 3 of the License, or
+//  (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful,
+//  but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  GNU General Public License for more details.
+//
+//  You should have received a copy of the GNU General Public License
+//  along with this program. If not, see <http://www.gnu.org/licenses/>.
+//
+
+package org.incendo.hyperverse.database;
+
+import co.aikar.taskchain.TaskChainFactory;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.incendo.hyperverse.Hyperverse;
+import org.incendo.hyperverse.configuration.HyperConfiguration;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal backed by a memory-mapped file.
+ * <p>
+ * Every location write and world deletion is appended to the journal as a
+ * checksummed record, and an in-memory index maps each (player, world, type)
+ * to the offset of its most recent record. Records that have been superseded
+ * are removed by a background compaction, which rewrites the live records into
+ * a new file that atomically replaces the journal.
+ * <p>
+ * On startup the journal is replayed up to the first incomplete or corrupt record,
+ * which is how writes that were interrupted by a crash are discarded. The journal is
+ * limited to 2 GiB, as that is the largest region that can be mapped at once.
+ */
+@Singleton
+public final class JournalDatabase extends HyperDatabase {
+
+    private static final int MAGIC = 0x48564A4C; // HVJL
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final byte OPERATION_END = 0;
+    private static final byte OPERATION_STORE = 1;
+    private static final byte OPERATION_CLEAR_WORLD = 2;
+    // Operation, UUID, location type and coordinates, followed by the world name
+    private static final int STORE_FIXED_SIZE = 1 + 16 + 1 + 3 * Double.BYTES + Short.BYTES;
+    private static final int CLEAR_WORLD_FIXED_SIZE = 1 + Short.BYTES;
+    private static final int CHECKSUM_SIZE = Integer.BYTES;
+    private static final int INITIAL_SIZE = 1 << 20;
+    private static final long COMPACTION_INTERVAL = 5L;
+    private static final int COMPACTION_MIN_DEAD_RECORDS = 10_000;
+
+    private final Object journalLock = new Object();
+    private final Object compactionLock = new Object();
+    private final Map<UUID, Map<String, Integer>> index = new HashMap<>();
+    private final HyperConfiguration configuration;
+    private Path journalFile;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int position;
+    private int liveRecords;
+    private int deadRecords;
+    private LocationWriteQueue writeQueue;
+    private ScheduledExecutorService compactor;
+
+    @Inject
+    public JournalDatabase(
+            final TaskChainFactory taskChainFactory,
+            final Hyperverse hyperverse,
+            final HyperConfiguration configuration
+    ) {
+        super(taskChainFactory, hyperverse);
+        this.configuration = configuration;
+    }
+
+    private static @NonNull String indexKey(final @NonNull String world, final @NonNull LocationType locationType) {
+        return locationType.getId() + ":" + world;
+    }
+
+    @Override
+    public boolean attemptConnect() {
+        try {
+            this.journalFile = this.getHyperverse().getDataFolder().toPath().resolve("locations.journal");
+            // A compaction that didn't finish. The journal is still intact, as it is only replaced once
+            // the compacted file is complete
+            Files.deleteIfExists(this.getCompactionFile());
+            this.getHyperverse().getLogger().info(String.format("Opening location journal: %s", this.journalFile));
+            this.openJournal();
+            this.recover();
+            this.writeQueue = new LocationWriteQueue(
+                    this::writeLocations,
+                    this.getHyperverse().getLogger(),
+                    this.configuration.getDatabaseBatchSize(),
+                    this.configuration.getDatabaseFlushInterval()
+            );
+            this.compactor = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactoryBuilder().setNameFormat("Hyperverse Journal Compactor").setDaemon(true).build()
+            );
+            this.compactor.scheduleWithFixedDelay(this::compactIfNeeded, COMPACTION_INTERVAL, COMPACTION_INTERVAL,
+                    TimeUnit.MINUTES
+            );
+            this.getHyperverse().getLogger().info(String.format("The location journal has been loaded (%d locations).",
+                    this.liveRecords
+            ));
+        } catch (final Exception e) {
+            e.printStackTrace();
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void attemptClose() {
+        try {
+            this.getPreloader().close();
+            if (this.compactor != null) {
+                // Let a running compaction finish, rather than interrupting it, as that would close the journal
+                this.compactor.shutdown();
+                try {
+                    if (!this.compactor.awaitTermination(1L, TimeUnit.MINUTES)) {
+                        this.getHyperverse().getLogger().warning("Timed out waiting for the journal compactor to finish");
+                    }
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (this.writeQueue != null) {
+                // Make sure that everything that is still queued ends up in the journal
+                this.writeQueue.close();
+            }
+            synchronized (this.journalLock) {
+                this.buffer.force();
+                this.channel.close();
+            }
+        } catch (final Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public void storeLocation(
+            final @NonNull PersistentLocation persistentLocation, final boolean updateTable,
+            final boolean clear
+    ) {
+        if (updateTable) {
+            this.getLocationCache().put(UUID.fromString(persistentLocation.getUuid()), persistentLocation);
+        }
+
+        this.writeQueue.enqueue(persistentLocation);
+        if (clear) {
+            // Queued locations are merged into lookups, so the cache
+            // can be cleared before the location has been written
+            this.clearLocations(UUID.fromString(persistentLocation.getUuid()));
+        }
+    }
+
+    @Override
+    public @NonNull CompletableFuture<Collection<PersistentLocation>> getLocations(final @NonNull UUID uuid) {
+        try {
+            return CompletableFuture.completedFuture(this.loadLocations(Collections.singletonList(uuid)).get(uuid));
+        } catch (final Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @Override
+    protected @NonNull Map<@NonNull UUID, @NonNull Collection<@NonNull PersistentLocation>> loadLocations(
+            final @NonNull Collection<@NonNull UUID> uuids
+    ) {
+        final Map<UUID, Collection<PersistentLocation>> result = new HashMap<>();
+        synchronized (this.journalLock) {
+            for (final UUID uuid : uuids) {
+                final List<PersistentLocation> storedLocations = new ArrayList<>();
+                for (final int offset : this.index.getOrDefault(uuid, Collections.emptyMap()).values()) {
+                    storedLocations.add(this.readLocation(offset));
+                }
+                result.put(uuid, this.writeQueue.merge(uuid.toString(), storedLocations));
+            }
+        }
+        for (final Map.Entry<UUID, Collection<PersistentLocation>> entry : result.entrySet()) {
+            this.cacheLocations(entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+
+    @Override
+    public void clearWorld(final @NonNull String worldName) {
+        this.getTaskChainFactory().newChain().async(() -> {
+            this.writeQueue.discardWorld(worldName);
+            synchronized (this.journalLock) {
+                try {
+                    final byte[] name = worldName.getBytes(StandardCharsets.UTF_8);
+                    final int offset = this.reserve(CLEAR_WORLD_FIXED_SIZE + name.length + CHECKSUM_SIZE);
+                    this.buffer.put(offset, OPERATION_CLEAR_WORLD);
+                    this.buffer.putShort(offset + 1, (short) name.length);
+                    this.buffer.put(offset + CLEAR_WORLD_FIXED_SIZE, name);
+                    this.writeChecksum(offset, CLEAR_WORLD_FIXED_SIZE + name.length);
+                    this.buffer.force();
+                    this.applyClearWorld(worldName);
+                } catch (final IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }).execute();
+    }
+
+    @Override
+    public void exportLocations(final @NonNull Consumer<@NonNull PersistentLocation> consumer) {
+        this.writeQueue.flush();
+        final List<UUID> uuids;
+        synchronized (this.journalLock) {
+            uuids = new ArrayList<>(this.index.keySet());
+        }
+        // The locations are read in pages, so that the journal isn't locked while the consumer runs
+        for (int from = 0; from < uuids.size(); from += EXPORT_PAGE_SIZE) {
+            final List<PersistentLocation> page = new ArrayList<>();
+            synchronized (this.journalLock) {
+                for (final UUID uuid : uuids.subList(from, Math.min(from + EXPORT_PAGE_SIZE, uuids.size()))) {
+                    for (final int offset : this.index.getOrDefault(uuid, Collections.emptyMap()).values()) {
+                        page.add(this.readLocation(offset));
+                    }
+                }
+            }
+            page.forEach(consumer);
+        }
+    }
+
+    @Override
+    public void importLocations(final @NonNull Collection<@NonNull PersistentLocation> locations) throws IOException {
+        this.writeLocations(locations);
+    }
+
+    /**
+     * Get the queue that location writes pass through
+     *
+     * @return Location write queue
+     */
+    public @NonNull LocationWriteQueue getWriteQueue() {
+        return this.writeQueue;
+    }
+
+    /**
+     * Get the number of journal records that hold the most
+     * recent location for their player, world and type
+     *
+     * @return Number of live records
+     */
+    public int getLiveRecords() {
+        synchronized (this.journalLock) {
+            return this.liveRecords;
+        }
+    }
+
+    /**
+     * Get the number of journal records that will be
+     * removed by the next compaction
+     *
+     * @return Number of dead records
+     */
+    public int getDeadRecords() {
+        synchronized (this.journalLock) {
+            return this.deadRecords;
+        }
+    }
+
+    /**
+     * Rewrite the journal so that it only contains live records. This is done
+     * automatically once there are more dead records than live ones
+     * <p>
+     * The live records are copied without holding the journal lock, as records are never
+     * modified once they have been written. Records that were appended in the meantime are
+     * carried over when the compacted journal is swapped in
+     *
+     * @throws IOException If the journal could not be rewritten
+     */
+    public void compact() throws IOException {
+        synchronized (this.compactionLock) {
+            final long start = System.currentTimeMillis();
+            final Map<UUID, Map<String, Integer>> snapshot = new HashMap<>();
+            final ByteBuffer source;
+            final int snapshotPosition;
+            final int snapshotDeadRecords;
+            synchronized (this.journalLock) {
+                for (final Map.Entry<UUID, Map<String, Integer>> entry : this.index.entrySet()) {
+                    snapshot.put(entry.getKey(), new HashMap<>(entry.getValue()));
+                }
+                source = this.buffer.duplicate();
+                snapshotPosition = this.position;
+                snapshotDeadRecords = this.deadRecords;
+            }
+            final Path compactionFile = this.getCompactionFile();
+            final Map<Integer, Integer> relocated = new HashMap<>();
+            int outputPosition = HEADER_SIZE;
+            try (final FileChannel output = FileChannel.open(compactionFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE
+            )) {
+                final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION);
+                header.flip();
+                output.write(header);
+                for (final Map<String, Integer> locations : snapshot.values()) {
+                    for (final int offset : locations.values()) {
+                        final int length = getRecordLength(source, offset);
+                        final ByteBuffer record = source.slice(offset, length);
+                        while (record.hasRemaining()) {
+                            output.write(record);
+                        }
+                        relocated.put(offset, outputPosition);
+                        outputPosition += length;
+                    }
+                }
+                synchronized (this.journalLock) {
+                    // Everything that was appended since the snapshot is copied as is, which
+                    // includes world deletions that removed some of the copied records
+                    final int tailLength = this.position - snapshotPosition;
+                    final ByteBuffer tail = this.buffer.slice(snapshotPosition, tailLength);
+                    while (tail.hasRemaining()) {
+                        output.write(tail);
+                    }
+                    output.force(true);
+                    final Map<UUID, Map<String, Integer>> compactedIndex = new HashMap<>();
+                    for (final Map.Entry<UUID, Map<String, Integer>> entry : this.index.entrySet()) {
+                        final Map<String, Integer> locations = new HashMap<>();
+                        for (final Map.Entry<String, Integer> location : entry.getValue().entrySet()) {
+                            final int offset = location.getValue();
+                            locations.put(location.getKey(), offset >= snapshotPosition
+                                    ? outputPosition + offset - snapshotPosition
+                                    : relocated.get(offset));
+                        }
+                        compactedIndex.put(entry.getKey(), locations);
+                    }
+                    this.buffer.force();
+                    this.channel.close();
+                    try {
+                        Files.move(compactionFile, this.journalFile, StandardCopyOption.REPLACE_EXISTING,
+                                StandardCopyOption.ATOMIC_MOVE
+                        );
+                    } finally {
+                        // Either the compacted journal, or the original one if it could not be replaced
+                        this.openJournal();
+                    }
+                    this.index.clear();
+                    this.index.putAll(compactedIndex);
+                    this.position = outputPosition + tailLength;
+                    // Records that were superseded after the snapshot are still part of the compacted journal
+                    this.deadRecords -= snapshotDeadRecords;
+                }
+            } finally {
+                Files.deleteIfExists(compactionFile);
+            }
+            if (this.configuration.shouldPrintDebug()) {
+                this.getHyperverse().getLogger().info(String.format(
+                        "(Debug) Compacted the location journal in %dms (%d locations)",
+                        System.currentTimeMillis() - start, this.getLiveRecords()
+                ));
+            }
+        }
+    }
+
+    private void compactIfNeeded() {
+        synchronized (this.journalLock) {
+            if (this.deadRecords < COMPACTION_MIN_DEAD_RECORDS || this.deadRecords < this.liveRecords) {
+                return;
+            }
+        }
+        try {
+            this.compact();
+        } catch (final IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void writeLocations(final @NonNull Collection<@NonNull PersistentLocation> locations) throws IOException {
+        synchronized (this.journalLock) {
+            for (final PersistentLocation persistentLocation : locations) {
+                final UUID uuid = UUID.fromString(persistentLocation.getUuid());
+                final byte[] name = persistentLocation.getWorld().getBytes(StandardCharsets.UTF_8);
+                final int offset = this.reserve(STORE_FIXED_SIZE + name.length + CHECKSUM_SIZE);
+                this.buffer.put(offset, OPERATION_STORE);
+                this.buffer.putLong(offset + 1, uuid.getMostSignificantBits());
+                this.buffer.putLong(offset + 9, uuid.getLeastSignificantBits());
+                this.buffer.put(offset + 17, (byte) persistentLocation.getLocationType().getId());
+                this.buffer.putDouble(offset + 18, persistentLocation.getX());
+                this.buffer.putDouble(offset + 26, persistentLocation.getY());
+                this.buffer.putDouble(offset + 34, persistentLocation.getZ());
+                this.buffer.putShort(offset + 42, (short) name.length);
+                this.buffer.put(offset + STORE_FIXED_SIZE, name);
+                this.writeChecksum(offset, STORE_FIXED_SIZE + name.length);
+                this.applyStore(uuid, persistentLocation.getWorld(), persistentLocation.getLocationType(), offset);
+            }
+            // The whole batch is made durable at once
+            this.buffer.force();
+        }
+    }
+
+    /**
+     * Replay the journal, and discard everything after the
+     * first record that is incomplete or corrupt
+     */
+    private void recover() throws IOException {
+        if (this.buffer.getInt(0) == 0) {
+            this.buffer.putInt(0, MAGIC);
+            this.buffer.putInt(4, VERSION);
+        } else if (this.buffer.getInt(0) != MAGIC) {
+            throw new IOException("The location journal is not a valid journal file");
+        } else if (this.buffer.getInt(4) != VERSION) {
+            throw new IOException(String.format("Unsupported location journal version: %d", this.buffer.getInt(4)));
+        }
+        this.position = HEADER_SIZE;
+        while (this.position < this.buffer.capacity()) {
+            final int length = getRecordLength(this.buffer, this.position);
+            if (length <= 0 || !this.verifyChecksum(this.position, length)) {
+                break;
+            }
+            if (this.buffer.get(this.position) == OPERATION_STORE) {
+                final UUID uuid = new UUID(this.buffer.getLong(this.position + 1), this.buffer.getLong(this.position + 9));
+                final LocationType locationType = LocationType.fromId(this.buffer.get(this.position + 17));
+                this.applyStore(uuid, this.readString(this.position + 42), locationType, this.position);
+            } else {
+                this.applyClearWorld(this.readString(this.position + 1));
+                this.deadRecords++;
+            }
+            this.position += length;
+        }
+        // Anything after the last valid record was never completely written. It is cleared so
+        // that it can't be mistaken for valid records once new records have been appended
+        int discarded = 0;
+        for (int i = this.position; i < this.buffer.capacity(); i++) {
+            if (this.buffer.get(i) != 0) {
+                discarded = i + 1 - this.position;
+                this.buffer.put(i, (byte) 0);
+            }
+        }
+        if (discarded > 0) {
+            this.getHyperverse().getLogger().warning(String.format(
+                    "The location journal was not closed properly. Discarded %d bytes of incomplete data.", discarded));
+        }
+        this.buffer.force();
+    }
+
+    /**
+     * Get the length of the record at the given offset, or -1 if there is
+     * no complete record at the offset
+     */
+    private static int getRecordLength(final @NonNull ByteBuffer buffer, final int offset) {
+        final int capacity = buffer.capacity();
+        final int fixedSize;
+        final int nameLengthOffset;
+        switch (buffer.get(offset)) {
+            case OPERATION_STORE:
+                fixedSize = STORE_FIXED_SIZE;
+                nameLengthOffset = offset + 42;
+                break;
+            case OPERATION_CLEAR_WORLD:
+                fixedSize = CLEAR_WORLD_FIXED_SIZE;
+                nameLengthOffset = offset + 1;
+                break;
+            default:
+                return -1;
+        }
+        if ((long) offset + fixedSize > capacity) {
+            return -1;
+        }
+        final long length = (long) fixedSize + (buffer.getShort(nameLengthOffset) & 0xFFFF) + CHECKSUM_SIZE;
+        if (offset + length > capacity) {
+            return -1;
+        }
+        return (int) length;
+    }
+
+    private @NonNull PersistentLocation readLocation(final int offset) {
+        final UUID uuid = new UUID(this.buffer.getLong(offset + 1), this.buffer.getLong(offset + 9));
+        return new PersistentLocation(
+                uuid.toString(),
+                this.readString(offset + 42),
+                this.buffer.getDouble(offset + 18),
+                this.buffer.getDouble(offset + 26),
+                this.buffer.getDouble(offset + 34),
+                LocationType.fromId(this.buffer.get(offset + 17))
+        );
+    }
+
+    /**
+     * Read a string that is prefixed by its length
+     */
+    private @NonNull String readString(final int offset) {
+        final byte[] bytes = new byte[this.buffer.getShort(offset) & 0xFFFF];
+        this.buffer.get(offset + Short.BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void writeChecksum(final int offset, final int length) {
+        this.buffer.putInt(offset + length, this.checksum(offset, length));
+    }
+
+    private boolean verifyChecksum(final int offset, final int recordLength) {
+        final int length = recordLength - CHECKSUM_SIZE;
+        return this.buffer.getInt(offset + length) == this.checksum(offset, length);
+    }
+
+    private int checksum(final int offset, final int length) {
+        final CRC32 crc = new CRC32();
+        crc.update(this.buffer.slice(offset, length));
+        return (int) crc.getValue();
+    }
+
+    private void applyStore(
+            final @NonNull UUID uuid,
+            final @NonNull String world,
+            final @NonNull LocationType locationType,
+            final int offset
+    ) {
+        final Integer previous = this.index.computeIfAbsent(uuid, key -> new HashMap<>(4))
+                .put(indexKey(world, locationType), offset);
+        if (previous == null) {
+            this.liveRecords++;
+        } else {
+            this.deadRecords++;
+        }
+    }
+
+    private void applyClearWorld(final @NonNull String world) {
+        final Iterator<Map<String, Integer>> iterator = this.index.values().iterator();
+        while (iterator.hasNext()) {
+            final Map<String, Integer> locations = iterator.next();
+            for (final LocationType locationType : LocationType.values()) {
+                if (locations.remove(indexKey(world, locationType)) != null) {
+                    this.liveRecords--;
+                    this.deadRecords++;
+                }
+            }
+            if (locations.isEmpty()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Reserve space for a record at the end of the journal, growing
+     * the mapped region if needed
+     *
+     * @return Offset of the reserved space
+     */
+    private int reserve(final int length) throws IOException {
+        if ((long) this.position + length > this.buffer.capacity()) {
+            final long required = (long) this.position + length;
+            final long size = Math.min(Math.max(required, (long) this.buffer.capacity() * 2), Integer.MAX_VALUE);
+            if (required > size) {
+                throw new IOException("The location journal is full");
+            }
+            this.buffer.force();
+            this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+        final int offset = this.position;
+        this.position += length;
+        return offset;
+    }
+
+    private void openJournal() throws IOException {
+        this.channel = FileChannel.open(this.journalFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE
+        );
+        final long size = Math.max(INITIAL_SIZE, this.channel.size());
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("The location journal is too large to be mapped");
+        }
+        this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    private @NonNull Path getCompactionFile() {
+        return this.journalFile.resolveSibling("locations.journal.compact");
+    }
+
+}
@@ -0,0 +1,261 @@
+//
+//  Hyperverse - A minecraft world management plugin
+//
+//  This program is free software: you can redistribute it and/or modify
+//  it under the terms of the GNU General Public License as published by
+//  the Free Software Foundation, either version 3 of the License, or
+//  (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful,
+//  but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  GNU General Public License for more details.
+//
+//  You should have received a copy of the GNU General Public License
+//  along with this program. If not, see <http://www.gnu.org/licenses/>.
+//
+
+package org.incendo.hyperverse.database;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory store for the persistent locations of online players.
+ * <p>
+ * Each cached player is represented by a single record that keeps its locations in
+ * flat primitive arrays, indexed by an open-addressed table keyed on (world ID, location type).
+ * World names are interned into integer IDs that are shared by all players.
+ * Lookups by (player, world, type) and eviction of a player are both constant time.
+ */
+public final class LocationCache {
+
+    private static final int TYPE_COUNT = LocationType.values().length;
+
+    // Estimated object sizes, assuming compressed references
+    private static final long OBJECT_HEADER = 12L;
+    private static final long ARRAY_HEADER = 16L;
+    private static final long REFERENCE = 4L;
+    // Map entry, key UUID and the record itself
+    private static final long ENTRY_OVERHEAD = 32L + 32L + OBJECT_HEADER + 3 * REFERENCE + 2 * Integer.BYTES;
+
+    private final Map<UUID, PlayerLocations> players = new ConcurrentHashMap<>();
+    private final Map<String, Integer> worldIds = new ConcurrentHashMap<>();
+    private final List<String> worldNames = new ArrayList<>();
+
+    /**
+     * Get a cached location
+     *
+     * @param uuid         Player UUID
+     * @param world        World name
+     * @param locationType Location type
+     * @return The location, or {@code null} if it isn't cached
+     */
+    public @Nullable PersistentLocation get(
+            final @NonNull UUID uuid,
+            final @NonNull String world,
+            final @NonNull LocationType locationType
+    ) {
+        final PlayerLocations playerLocations = this.players.get(uuid);
+        final Integer worldId = this.worldIds.get(world);
+        if (playerLocations == null || worldId == null) {
+            return null;
+        }
+        return playerLocations.get(uuid, worldId, locationType, world);
+    }
+
+    /**
+     * Cache a location, replacing any location that is cached for
+     * the same player, world and location type
+     *
+     * @param uuid     Player UUID
+     * @param location Location to cache
+     */
+    public void put(final @NonNull UUID uuid, final @NonNull PersistentLocation location) {
+        this.players.computeIfAbsent(uuid, key -> new PlayerLocations())
+                .put(this.getWorldId(location.getWorld()), location, true);
+    }
+
+    /**
+     * Cache a location, unless a location is already cached for
+     * the same player, world and location type
+     *
+     * @param uuid     Player UUID
+     * @param location Location to cache
+     */
+    public void putIfAbsent(final @NonNull UUID uuid, final @NonNull PersistentLocation location) {
+        this.players.computeIfAbsent(uuid, key -> new PlayerLocations())
+                .put(this.getWorldId(location.getWorld()), location, false);
+    }
+
+    /**
+     * Remove all cached locations for a player
+     *
+     * @param uuid Player UUID
+     */
+    public void evict(final @NonNull UUID uuid) {
+        this.players.remove(uuid);
+    }
+
+    /**
+     * Get the number of cached players
+     *
+     * @return Number of cached players
+     */
+    public int getPlayerCount() {
+        return this.players.size();
+    }
+
+    /**
+     * Get the estimated number of bytes used to cache a player
+     *
+     * @param uuid Player UUID
+     * @return Estimated memory footprint in bytes, or {@code 0} if the player isn't cached
+     */
+    public long getMemoryFootprint(final @NonNull UUID uuid) {
+        final PlayerLocations playerLocations = this.players.get(uuid);
+        if (playerLocations == null) {
+            return 0L;
+        }
+        return playerLocations.getMemoryFootprint();
+    }
+
+    /**
+     * Get the estimated number of bytes used to cache all players
+     *
+     * @return Estimated memory footprint in bytes
+     */
+    public long getMemoryFootprint() {
+        long footprint = 0L;
+        for (final PlayerLocations playerLocations : this.players.values()) {
+            footprint += playerLocations.getMemoryFootprint();
+        }
+        return footprint;
+    }
+
+    private int getWorldId(final @NonNull String world) {
+        final Integer worldId = this.worldIds.get(world);
+        if (worldId != null) {
+            return worldId;
+        }
+        synchronized (this.worldNames) {
+            return this.worldIds.computeIfAbsent(world, key -> {
+                this.worldNames.add(key);
+                return this.worldNames.size() - 1;
+            });
+        }
+    }
+
+    /**
+     * Locations belonging to a single player. Slot {@code i} is in use when
+     * {@code keys[i]} is non-negative, and its coordinates are stored at
+     * {@code coordinates[3i]} through {@code coordinates[3i + 2]}
+     */
+    private static final class PlayerLocations {
+
+        private static final int INITIAL_CAPACITY = 4;
+
+        private int[] keys = newKeys(INITIAL_CAPACITY);
+        private double[] coordinates = new double[INITIAL_CAPACITY * 3];
+        private int size;
+
+        private static int[] newKeys(final int capacity) {
+            final int[] keys = new int[capacity];
+            Arrays.fill(keys, -1);
+            return keys;
+        }
+
+        private static int key(final int worldId, final @NonNull LocationType locationType) {
+            return worldId * TYPE_COUNT + locationType.ordinal();
+        }
+
+        private static int slot(final int key, final int capacity) {
+            // Capacity is always a power of two
+            return (key * 0x9E3779B9) >>> 1 & (capacity - 1);
+        }
+
+        private synchronized @Nullable PersistentLocation get(
+                final @NonNull UUID uuid,
+                final int worldId,
+                final @NonNull LocationType locationType,
+                final @NonNull String world
+        ) {
+            final int index = this.find(key(worldId, locationType));
+            if (index < 0) {
+                return null;
+            }
+            final int offset = index * 3;
+            return new PersistentLocation(uuid.toString(), world, this.coordinates[offset],
+                    this.coordinates[offset + 1], this.coordinates[offset + 2], locationType
+            );
+        }
+
+        private synchronized void put(final int worldId, final @NonNull PersistentLocation location, final boolean replace) {
+            final int key = key(worldId, location.getLocationType());
+            int index = this.find(key);
+            if (index >= 0 && !replace) {
+                return;
+            }
+            if (index < 0) {
+                if ((this.size + 1) * 2 > this.keys.length) {
+                    this.resize(this.keys.length * 2);
+                }
+                index = slot(key, this.keys.length);
+                while (this.keys[index] >= 0) {
+                    index = (index + 1) & (this.keys.length - 1);
+                }
+                this.keys[index] = key;
+                this.size++;
+            }
+            final int offset = index * 3;
+            this.coordinates[offset] = location.getX();
+            this.coordinates[offset + 1] = location.getY();
+            this.coordinates[offset + 2] = location.getZ();
+        }
+
+        private int find(final int key) {
+            final int mask = this.keys.length - 1;
+            int index = slot(key, this.keys.length);
+            while (this.keys[index] >= 0) {
+                if (this.keys[index] == key) {
+                    return index;
+                }
+                index = (index + 1) & mask;
+            }
+            return -1;
+        }
+
+        private void resize(final int capacity) {
+            final int[] oldKeys = this.keys;
+            final double[] oldCoordinates = this.coordinates;
+            this.keys = newKeys(capacity);
+            this.coordinates = new double[capacity * 3];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] < 0) {
+                    continue;
+                }
+                int index = slot(oldKeys[i], capacity);
+                while (this.keys[index] >= 0) {
+                    index = (index + 1) & (capacity - 1);
+                }
+                this.keys[index] = oldKeys[i];
+                System.arraycopy(oldCoordinates, i * 3, this.coordinates, index * 3, 3);
+            }
+        }
+
+        private synchronized long getMemoryFootprint() {
+            return ENTRY_OVERHEAD
+                    + ARRAY_HEADER + (long) this.keys.length * Integer.BYTES
+                    + ARRAY_HEADER + (long) this.coordinates.length * Double.BYTES;
+        }
+
+    }
+
+}
@@ -0,0 +1,222 @@
+//
+//  Hyperverse - A minecraft world management plugin
+//
+//  This program is free software: you can redistribute it and/or modify
+//  it under the terms of the GNU General Public License as published by
+//  the Free Software Foundation, either version 3 of the License, or
+//  (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful,
+//  but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  GNU General Public License for more details.
+//
+//  You should have received a copy of the GNU General Public License
+//  along with this program. If not, see <http://www.gnu.org/licenses/>.
+//
+
+package org.incendo.hyperverse.database;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Loads persistent locations for players that are logging in.
+ * <p>
+ * Lookups are performed on a single loader thread. Requests that arrive while a
+ * query is running are gathered and loaded together in the next query, so that a
+ * large number of simultaneous logins results in a handful of batched queries
+ * rather than one query per player.
+ */
+public final class LocationPreloader {
+
+    private final Map<UUID, CompletableFuture<Collection<PersistentLocation>>> pending = new ConcurrentHashMap<>();
+    private final Queue<UUID> requests = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+    private final AtomicLong batchCount = new AtomicLong();
+    private final AtomicLong loadedPlayers = new AtomicLong();
+    private final BatchLoader loader;
+    private final Logger logger;
+    private final int batchSize;
+    private final ExecutorService executor;
+
+    /**
+     * Create a new preloader
+     *
+     * @param loader    Loader that loads the locations of several players at once
+     * @param logger    Logger used to report failed lookups
+     * @param batchSize Maximum number of players that are loaded in a single query
+     */
+    public LocationPreloader(
+            final @NonNull BatchLoader loader,
+            final @NonNull Logger logger,
+            final int batchSize
+    ) {
+        this.loader = Objects.requireNonNull(loader);
+        this.logger = Objects.requireNonNull(logger);
+        this.batchSize = Math.max(1, batchSize);
+        this.executor = Executors.newSingleThreadExecutor(
+                new ThreadFactoryBuilder().setNameFormat("Hyperverse Location Preloader").setDaemon(true).build()
+        );
+    }
+
+    /**
+     * Request the locations of a player to be loaded. If the player
+     * is already being loaded, the existing request is returned
+     *
+     * @param uuid Player UUID
+     * @return Future that completes with the loaded locations
+     */
+    public @NonNull CompletableFuture<Collection<PersistentLocation>> preload(final @NonNull UUID uuid) {
+        final CompletableFuture<Collection<PersistentLocation>> future = new CompletableFuture<>();
+        final CompletableFuture<Collection<PersistentLocation>> existing = this.pending.putIfAbsent(uuid, future);
+        if (existing != null) {
+            return existing;
+        }
+        this.requests.add(uuid);
+        this.scheduleDrain();
+        return future;
+    }
+
+    /**
+     * Get the pending request for a player, if the player
+     * is still being loaded
+     *
+     * @param uuid Player UUID
+     * @return Pending request, or {@code null}
+     */
+    public @Nullable CompletableFuture<Collection<PersistentLocation>> getPending(final @NonNull UUID uuid) {
+        return this.pending.get(uuid);
+    }
+
+    /**
+     * Get the number of players that are waiting to be loaded
+     *
+     * @return Number of pending players
+     */
+    public int getPendingCount() {
+        return this.pending.size();
+    }
+
+    /**
+     * Get the number of queries that have been performed
+     *
+     * @return Batch count
+     */
+    public long getBatchCount() {
+        return this.batchCount.get();
+    }
+
+    /**
+     * Get the number of players that have been loaded
+     *
+     * @return Loaded player count
+     */
+    public long getLoadedPlayers() {
+        return this.loadedPlayers.get();
+    }
+
+    /**
+     * Stop the loader thread. Requests that are made after
+     * this are loaded on the calling thread
+     */
+    public void close() {
+        this.executor.shutdown();
+    }
+
+    private void scheduleDrain() {
+        if (!this.draining.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            this.executor.execute(this::drain);
+        } catch (final RejectedExecutionException e) {
+            this.drain();
+        }
+    }
+
+    private void drain() {
+        try {
+            List<UUID> batch;
+            while (!(batch = this.poll()).isEmpty()) {
+                final Map<UUID, Collection<PersistentLocation>> result;
+                try {
+                    result = this.loader.load(batch);
+                } catch (final Exception e) {
+                    this.logger.log(Level.SEVERE, String.format("Failed to load locations for %d players", batch.size()), e);
+                    for (final UUID uuid : batch) {
+                        final CompletableFuture<Collection<PersistentLocation>> future = this.pending.remove(uuid);
+                        if (future != null) {
+                            future.completeExceptionally(e);
+                        }
+                    }
+                    continue;
+                }
+                this.batchCount.incrementAndGet();
+                this.loadedPlayers.addAndGet(batch.size());
+                for (final UUID uuid : batch) {
+                    final CompletableFuture<Collection<PersistentLocation>> future = this.pending.remove(uuid);
+                    if (future != null) {
+                        future.complete(result.getOrDefault(uuid, Collections.emptyList()));
+                    }
+                }
+            }
+        } finally {
+            this.draining.set(false);
+            // A request may have been added after the last poll, but before the flag was reset
+            if (!this.requests.isEmpty()) {
+                this.scheduleDrain();
+            }
+        }
+    }
+
+    private @NonNull List<@NonNull UUID> poll() {
+        final List<UUID> batch = new ArrayList<>();
+        UUID uuid;
+        while (batch.size() < this.batchSize && (uuid = this.requests.poll()) != null) {
+            batch.add(uuid);
+        }
+        return batch;
+    }
+
+    /**
+     * Loads the locations of several players at once
+     */
+    @FunctionalInterface
+    public interface BatchLoader {
+
+        /**
+         * Load the locations of all players in the batch
+         *
+         * @param uuids Player UUIDs
+         * @return Locations mapped by player UUID. Players without
+         *         any stored locations may be omitted
+         * @throws Exception If the locations could not be loaded
+         */
+        @NonNull Map<@NonNull UUID, @NonNull Collection<@NonNull PersistentLocation>> load(
+                @NonNull Collection<@NonNull UUID> uuids
+        ) throws Exception;
+
+    }
+
+}
@@ -17,7 +17,42 @@
 
 package org.incendo.hyperverse.database;
 
+import org.checkerframework.checker.nullness.qual.NonNull;
+
 public enum LocationType {
-    PLAYER_LOCATION,
-    BED_SPAWN
+    PLAYER_LOCATION(0),
+    BED_SPAWN(1);
+
+    private final int id;
+
+    LocationType(final int id) {
+        this.id = id;
+    }
+
+    /**
+     * Get the location type with the given ID
+     *
+     * @param id Location type ID
+     * @return The location type
+     * @throws IllegalArgumentException If there is no location type with the ID
+     */
+    public static @NonNull LocationType fromId(final int id) {
+        for (final LocationType locationType : values()) {
+            if (locationType.id == id) {
+                return locationType;
+            }
+        }
+        throw new IllegalArgumentException(String.format("Unknown location type: %d", id));
+    }
+
+    /**
+     * Get the stable ID of this location type, which
+     * is used when storing locations
+     *
+     * @return Location type ID
+     */
+    public int getId() {
+        return this.id;
+    }
+
 }
@@ -0,0 +1,338 @@
+//
+//  Hyperverse - A minecraft world management plugin
+//
+//  This program is free software: you can redistribute it and/or modify
+//  it under the terms of the GNU General Public License as published by
+//  the Free Software Foundation, either version 3 of the License, or
+//  (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful,
+//  but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  GNU General Public License for more details.
+//
+//  You should have received a copy of the GNU General Public License
+//  along with this program. If not, see <http://www.gnu.org/licenses/>.
+//
+
+package org.incendo.hyperverse.database;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Write-behind queue for {@link PersistentLocation persistent locations}.
+ * <p>
+ * Writes are merged by (uuid, world, location type), so that only the most recent
+ * location for each key reaches the database. The queue is flushed in a single batch
+ * once it holds {@code batchSize} entries, or once {@code flushInterval} milliseconds
+ * have passed, whichever happens first.
+ * <p>
+ * Entries stay visible through {@link #getPending(String)} until the batch that
+ * contains them has been written, so readers never observe a gap between the
+ * queue and the database.
+ */
+public final class LocationWriteQueue {
+
+    private final Map<Key, PersistentLocation> pending = new LinkedHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong flushedLocations = new AtomicLong();
+    private final AtomicLong lastFlushLatency = new AtomicLong();
+    private final AtomicLong totalFlushLatency = new AtomicLong();
+    private final BatchWriter writer;
+    private final Logger logger;
+    private final int batchSize;
+    private final ScheduledExecutorService executor;
+    private volatile boolean closed;
+
+    /**
+     * Create a new write queue and start the flush timer
+     *
+     * @param writer        Writer that persists a batch of locations in a single transaction
+     * @param logger        Logger used to report failed flushes
+     * @param batchSize     Number of queued locations that triggers an immediate flush
+     * @param flushInterval Maximum time (in milliseconds) that a location may stay queued
+     */
+    public LocationWriteQueue(
+            final @NonNull BatchWriter writer,
+            final @NonNull Logger logger,
+            final int batchSize,
+            final long flushInterval
+    ) {
+        this.writer = Objects.requireNonNull(writer);
+        this.logger = Objects.requireNonNull(logger);
+        this.batchSize = Math.max(1, batchSize);
+        final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1,
+                new ThreadFactoryBuilder().setNameFormat("Hyperverse Location Writer").setDaemon(true).build()
+        );
+        executor.setContinueExistingPeriodicTasksAfterShutdownPolicy(false);
+        this.executor = executor;
+        final long interval = Math.max(50L, flushInterval);
+        this.executor.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queue a location for writing. This replaces any queued location
+     * with the same uuid, world and location type
+     *
+     * @param location Location to write
+     */
+    public void enqueue(final @NonNull PersistentLocation location) {
+        final int depth;
+        synchronized (this.pending) {
+            this.pending.put(new Key(location), location);
+            depth = this.pending.size();
+        }
+        if (this.closed) {
+            // The executor is gone, so write straight through
+            this.flush();
+        } else if (depth >= this.batchSize && this.flushScheduled.compareAndSet(false, true)) {
+            this.executor.execute(this::flush);
+        }
+    }
+
+    /**
+     * Get all queued locations that belong to a player
+     *
+     * @param uuid Player UUID
+     * @return Snapshot of the queued locations
+     */
+    public @NonNull Collection<@NonNull PersistentLocation> getPending(final @NonNull String uuid) {
+        final List<PersistentLocation> locations = new ArrayList<>();
+        synchronized (this.pending) {
+            for (final PersistentLocation location : this.pending.values()) {
+                if (location.getUuid().equals(uuid)) {
+                    locations.add(location);
+                }
+            }
+        }
+        return locations;
+    }
+
+    /**
+     * Merge queued locations into locations that were loaded from storage. Queued
+     * locations are newer than anything in storage, and so they replace
+     * stored locations with the same world and location type
+     *
+     * @param uuid            Player UUID
+     * @param storedLocations Locations loaded from storage
+     * @return Merged locations
+     */
+    public @NonNull List<@NonNull PersistentLocation> merge(
+            final @NonNull String uuid,
+            final @NonNull List<@NonNull PersistentLocation> storedLocations
+    ) {
+        final Collection<PersistentLocation> queuedLocations = this.getPending(uuid);
+        if (queuedLocations.isEmpty()) {
+            return storedLocations;
+        }
+        final List<PersistentLocation> locations = new ArrayList<>(queuedLocations);
+        for (final PersistentLocation storedLocation : storedLocations) {
+            final Key key = new Key(storedLocation);
+            if (queuedLocations.stream().noneMatch(queuedLocation -> key.equals(new Key(queuedLocation)))) {
+                locations.add(storedLocation);
+            }
+        }
+        return locations;
+    }
+
+    /**
+     * Drop all queued locations in a world. This waits for any in-flight
+     * flush to complete, so that no write for the world can reach the database
+     * after this method returns
+     *
+     * @param world World name
+     */
+    public void discardWorld(final @NonNull String world) {
+        this.flushLock.lock();
+        try {
+            synchronized (this.pending) {
+                this.pending.values().removeIf(location -> location.getWorld().equals(world));
+            }
+        } finally {
+            this.flushLock.unlock();
+        }
+    }
+
+    /**
+     * Write all queued locations to the database, in batches of at most
+     * {@code batchSize} locations
+     */
+    public void flush() {
+        this.flushLock.lock();
+        try {
+            this.flushScheduled.set(false);
+            List<PersistentLocation> batch;
+            while (!(batch = this.snapshot()).isEmpty()) {
+                final long start = System.nanoTime();
+                try {
+                    this.writer.write(batch);
+                } catch (final Exception e) {
+                    // Keep the entries queued, they will be retried on the next flush
+                    this.logger.log(Level.SEVERE, String.format("Failed to write %d queued locations", batch.size()), e);
+                    return;
+                }
+                final long latency = System.nanoTime() - start;
+                this.lastFlushLatency.set(latency);
+                this.totalFlushLatency.addAndGet(latency);
+                this.flushCount.incrementAndGet();
+                this.flushedLocations.addAndGet(batch.size());
+                synchronized (this.pending) {
+                    // Only remove the entries that haven't been replaced while we were writing
+                    for (final PersistentLocation location : batch) {
+                        this.pending.remove(new Key(location), location);
+                    }
+                }
+            }
+        } finally {
+            this.flushLock.unlock();
+        }
+    }
+
+    /**
+     * Stop the flush timer and write everything that is still queued. Locations
+     * that are queued after this method has been called are written immediately
+     */
+    public void close() {
+        this.closed = true;
+        this.executor.shutdown();
+        try {
+            if (!this.executor.awaitTermination(10L, TimeUnit.SECONDS)) {
+                this.logger.warning("Timed out waiting for the location writer to finish");
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.flush();
+    }
+
+    /**
+     * Get the number of locations that are waiting to be written
+     *
+     * @return Queue depth
+     */
+    public int getQueueDepth() {
+        synchronized (this.pending) {
+            return this.pending.size();
+        }
+    }
+
+    /**
+     * Get the time it took to write the most recent batch
+     *
+     * @return Latency of the last flush
+     */
+    public @NonNull Duration getLastFlushLatency() {
+        return Duration.ofNanos(this.lastFlushLatency.get());
+    }
+
+    /**
+     * Get the average time it has taken to write a batch
+     *
+     * @return Average flush latency
+     */
+    public @NonNull Duration getAverageFlushLatency() {
+        final long count = this.flushCount.get();
+        if (count == 0) {
+            return Duration.ZERO;
+        }
+        return Duration.ofNanos(this.totalFlushLatency.get() / count);
+    }
+
+    /**
+     * Get the number of batches that have been written
+     *
+     * @return Flush count
+     */
+    public long getFlushCount() {
+        return this.flushCount.get();
+    }
+
+    /**
+     * Get the total number of locations that have been written
+     *
+     * @return Number of written locations
+     */
+    public long getFlushedLocations() {
+        return this.flushedLocations.get();
+    }
+
+    private @NonNull List<@NonNull PersistentLocation> snapshot() {
+        synchronized (this.pending) {
+            final List<PersistentLocation> batch = new ArrayList<>(Math.min(this.pending.size(), this.batchSize));
+            final Iterator<PersistentLocation> iterator = this.pending.values().iterator();
+            while (iterator.hasNext() && batch.size() < this.batchSize) {
+                batch.add(iterator.next());
+            }
+            return batch;
+        }
+    }
+
+    /**
+     * Writes a batch of locations to the underlying storage
+     */
+    @FunctionalInterface
+    public interface BatchWriter {
+
+        /**
+         * Write the locations. The batch should either be written
+         * completely, or not at all
+         *
+         * @param locations Locations to write
+         * @throws Exception If the locations could not be written
+         */
+        void write(@NonNull Collection<@NonNull PersistentLocation> locations) throws Exception;
+
+    }
+
+    private static final class Key {
+
+        private final String uuid;
+        private final String world;
+        private final LocationType locationType;
+
+        private Key(final @NonNull PersistentLocation location) {
+            this.uuid = location.getUuid();
+            this.world = location.getWorld();
+            this.locationType = location.getLocationType();
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || this.getClass() != o.getClass()) {
+                return false;
+            }
+            final Key that = (Key) o;
+            return this.locationType == that.locationType && this.uuid.equals(that.uuid) && this.world.equals(that.world);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.uuid, this.world, this.locationType);
+        }
+
+    }
+
+}
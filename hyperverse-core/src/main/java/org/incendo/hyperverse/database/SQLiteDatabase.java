@@ -18,12 +18,15 @@
 package org.incendo.hyperverse.database;
 
 import co.aikar.taskchain.TaskChainFactory;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.incendo.hyperverse.Hyperverse;
+import org.incendo.hyperverse.configuration.HyperConfiguration;
 
 import java.io.File;
+import java.nio.ByteBuffer;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
@@ -32,25 +35,101 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 @Singleton
 public final class SQLiteDatabase extends HyperDatabase {
 
-    private static final String TABLE_LOCATIONS = "CREATE TABLE IF NOT EXISTS locations ("
-            + "id INTEGER PRIMARY KEY AUTOINCREMENT,"
-            + "uuid VARCHAR, world VARCHAR,"
-            + "x [DOUBLE PRECISION], y [DOUBLE PRECISION],"
-            + "z [DOUBLE PRECISION], locationType VARCHAR,"
-            + "UNIQUE (uuid, world, locationType));";
+    /**
+     * Version of the database schema, stored in {@code PRAGMA user_version}
+     */
+    private static final int SCHEMA_VERSION = 3;
 
+    private static final String TABLE_WORLDS = "CREATE TABLE IF NOT EXISTS worlds ("
+            + "id INTEGER PRIMARY KEY,"
+            + "name TEXT NOT NULL UNIQUE);";
+    private static final String TABLE_PLAYER_LOCATIONS = "CREATE TABLE IF NOT EXISTS player_locations ("
+            + "uuid BLOB NOT NULL,"
+            + "world INTEGER NOT NULL,"
+            + "type INTEGER NOT NULL,"
+            + "x REAL NOT NULL, y REAL NOT NULL, z REAL NOT NULL,"
+            + "last_seen INTEGER NOT NULL DEFAULT 0,"
+            + "PRIMARY KEY (uuid, world, type)) WITHOUT ROWID;";
+    // The primary key covers per-player lookups, and as the table has no row ID,
+    // this index contains the full key, which covers per-world deletes
+    private static final String INDEX_PLAYER_LOCATIONS_WORLD =
+            "CREATE INDEX IF NOT EXISTS player_locations_world ON player_locations (world);";
+    private static final String INDEX_PLAYER_LOCATIONS_EXPIRY =
+            "CREATE INDEX IF NOT EXISTS player_locations_expiry ON player_locations (type, last_seen);";
+
+    /**
+     * Name of the table used by the first version of the schema
+     */
+    private static final String LEGACY_TABLE = "locations";
+    private static final int MIGRATION_CHUNK_SIZE = 5000;
+    private static final long MIGRATION_PAUSE = 50L;
+
+    private static final long MAINTENANCE_INTERVAL = 10L;
+    private static final long ANALYZE_INTERVAL = TimeUnit.HOURS.toMillis(6L);
+    private static final int PURGE_BATCH_SIZE = 500;
+    private static final long PURGE_PAUSE = 50L;
+    private static final int VACUUM_PAGES = 256;
+
+    private final Object databaseLock = new Object();
+    private final Map<String, Integer> worldIds = new HashMap<>();
+    private final HyperConfiguration configuration;
+    private final AtomicLong purgedLocations = new AtomicLong();
+    private final AtomicLong reclaimedPages = new AtomicLong();
     private Connection connection;
+    private LocationWriteQueue writeQueue;
+    private volatile boolean migrating;
+    private volatile boolean closed;
+    private ScheduledExecutorService maintenanceExecutor;
+    private long lastAnalyze;
+    private boolean vacuumChecked;
 
     @Inject
-    public SQLiteDatabase(final TaskChainFactory taskChainFactory, final Hyperverse hyperverse) {
+    public SQLiteDatabase(
+            final TaskChainFactory taskChainFactory,
+            final Hyperverse hyperverse,
+            final HyperConfiguration configuration
+    ) {
         super(taskChainFactory, hyperverse);
+        this.configuration = configuration;
+    }
+
+    private static byte[] toBytes(final @NonNull UUID uuid) {
+        return ByteBuffer.allocate(16)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .array();
+    }
+
+    private static @NonNull UUID fromBytes(final byte[] bytes) {
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+
+    private static boolean containsLocation(
+            final @NonNull Collection<@NonNull PersistentLocation> locations,
+            final @NonNull PersistentLocation location
+    ) {
+        for (final PersistentLocation other : locations) {
+            if (other.getLocationType() == location.getLocationType() && other.getWorld().equals(location.getWorld())) {
+                return true;
+            }
+        }
+        return false;
     }
 
     @Override
@@ -71,10 +150,37 @@ public final class SQLiteDatabase extends HyperDatabase {
             this.connection = DriverManager.getConnection(url);
 
             if (this.connection != null) {
-                this.executeUpdate(TABLE_LOCATIONS);
+                // Only takes effect for new databases. Existing databases have to be rebuilt by hand
+                this.executeUpdate("PRAGMA auto_vacuum = INCREMENTAL;");
+                this.executeUpdate(TABLE_WORLDS);
+                this.executeUpdate(TABLE_PLAYER_LOCATIONS);
+                this.upgradeSchema();
+                this.executeUpdate(INDEX_PLAYER_LOCATIONS_WORLD);
+                this.executeUpdate(INDEX_PLAYER_LOCATIONS_EXPIRY);
+                this.loadWorldIds();
+                this.writeQueue = new LocationWriteQueue(
+                        this::writeLocations,
+                        this.getHyperverse().getLogger(),
+                        this.configuration.getDatabaseBatchSize(),
+                        this.configuration.getDatabaseFlushInterval()
+                );
+                if (this.tableExists(LEGACY_TABLE)) {
+                    this.getHyperverse().getLogger().info(
+                            "Found locations stored using an old database format. They will be migrated in the background.");
+                    this.migrating = true;
+                    this.getTaskChainFactory().newChain().async(this::migrateLegacyTable).execute();
+                } else {
+                    this.executeUpdate(String.format("PRAGMA user_version = %d;", SCHEMA_VERSION));
+                }
+                this.maintenanceExecutor = Executors.newSingleThreadScheduledExecutor(
+                        new ThreadFactoryBuilder().setNameFormat("Hyperverse Database Maintenance").setDaemon(true).build()
+                );
+                this.maintenanceExecutor.scheduleWithFixedDelay(this::performMaintenance, 1L, MAINTENANCE_INTERVAL,
+                        TimeUnit.MINUTES
+                );
             } else {
                 this.getHyperverse().getLogger().severe(
-                        "No connection was established. The location table will not not be created.");
+                        "No connection was established. The location tables will not not be created.");
                 return false;
             }
 
@@ -88,8 +194,19 @@ public final class SQLiteDatabase extends HyperDatabase {
 
     @Override
     public void attemptClose() {
+        this.closed = true;
         try {
-            this.connection.close();
+            if (this.maintenanceExecutor != null) {
+                this.maintenanceExecutor.shutdownNow();
+            }
+            this.getPreloader().close();
+            if (this.writeQueue != null) {
+                // Make sure that everything that is still queued ends up in the database
+                this.writeQueue.close();
+            }
+            synchronized (this.databaseLock) {
+                this.connection.close();
+            }
         } catch (final Exception e) {
             e.printStackTrace();
         }
@@ -101,62 +218,29 @@ public final class SQLiteDatabase extends HyperDatabase {
             final boolean clear
     ) {
         if (updateTable) {
-            this.getLocations().get(persistentLocation.getLocationType())
-                    .put(UUID.fromString(persistentLocation.getUuid()), persistentLocation.getWorld(),
-                            persistentLocation
-                    );
+            this.getLocationCache().put(UUID.fromString(persistentLocation.getUuid()), persistentLocation);
         }
 
-        this.getTaskChainFactory().newChain().async(() -> {
-            try (final PreparedStatement statement = this.connection.prepareStatement(
-                    "INSERT OR REPLACE INTO `locations` (`uuid`, `world`, `x`, `y`, `z`, `locationType`) VALUES(?, ?, ?, ?, ?, ?)")) {
-                statement.setString(1, persistentLocation.getUuid());
-                statement.setString(2, persistentLocation.getWorld());
-                statement.setDouble(3, persistentLocation.getX());
-                statement.setDouble(4, persistentLocation.getY());
-                statement.setDouble(5, persistentLocation.getZ());
-                statement.setString(6, persistentLocation.getLocationType().name());
-                statement.executeUpdate();
-            } catch (final SQLException e) {
-                e.printStackTrace();
-            }
-        }).syncLast(in -> {
-            if (clear) {
-                this.clearLocations(UUID.fromString(persistentLocation.getUuid()));
-            }
-        }).execute();
+        this.writeQueue.enqueue(persistentLocation);
+        if (clear) {
+            // Queued locations are merged into lookups, so the table
+            // can be cleared before the location has been written
+            this.clearLocations(UUID.fromString(persistentLocation.getUuid()));
+        }
     }
 
     @Override
     public @NonNull CompletableFuture<Collection<PersistentLocation>> getLocations(final @NonNull UUID uuid) {
         final CompletableFuture<Collection<PersistentLocation>> future = new CompletableFuture<>();
-        final String uuidAsString = uuid.toString();
         this.getTaskChainFactory().newChain().async(() -> {
-            try (final PreparedStatement statement = this.connection.prepareStatement(
-                    "SELECT `world`, `x`, `y`, `z`, `locationType` FROM `locations` WHERE `uuid` = ?")) {
-                statement.setString(1, uuidAsString);
-                final List<PersistentLocation> locationList = new ArrayList<>();
-                try (final ResultSet resultSet = statement.executeQuery()) {
-                    while (resultSet.next()) {
-                        final PersistentLocation persistentLocation = new PersistentLocation(
-                                uuidAsString,
-                                resultSet.getString("world"),
-                                resultSet.getDouble("x"),
-                                resultSet.getDouble("y"),
-                                resultSet.getDouble("z"),
-                                LocationType.valueOf(resultSet.getString("locationType"))
-                        );
-                        locationList.add(persistentLocation);
-                        this.getLocations().get(persistentLocation.getLocationType())
-                                .put(uuid, persistentLocation.getWorld(), persistentLocation);
-                    }
-                }
+            try {
+                final Collection<PersistentLocation> locations = this.loadLocations(Collections.singletonList(uuid)).get(uuid);
                 if (this.getHyperverse().getConfiguration().shouldPrintDebug()) {
                     this.getHyperverse().getLogger().info(String.format("(Debug) Loaded %s persistent locations for player %s",
-                            locationList.size(), uuid
+                            locations.size(), uuid
                     ));
                 }
-                future.complete(locationList);
+                future.complete(locations);
             } catch (final Exception e) {
                 future.completeExceptionally(e);
             }
@@ -164,16 +248,625 @@ public final class SQLiteDatabase extends HyperDatabase {
         return future;
     }
 
+    @Override
+    protected @NonNull Map<@NonNull UUID, @NonNull Collection<@NonNull PersistentLocation>> loadLocations(
+            final @NonNull Collection<@NonNull UUID> uuids
+    ) throws SQLException {
+        final Map<UUID, Collection<PersistentLocation>> result = new HashMap<>();
+        final String parameters = String.join(", ", Collections.nCopies(uuids.size(), "?"));
+        synchronized (this.databaseLock) {
+            final Map<UUID, List<PersistentLocation>> storedLocations = new HashMap<>();
+            try (final PreparedStatement statement = this.connection.prepareStatement(
+                    "SELECT `l`.`uuid`, `w`.`name`, `l`.`x`, `l`.`y`, `l`.`z`, `l`.`type` FROM `player_locations` `l` "
+                            + "INNER JOIN `worlds` `w` ON `w`.`id` = `l`.`world` WHERE `l`.`uuid` IN (" + parameters + ")")) {
+                int index = 1;
+                for (final UUID uuid : uuids) {
+                    statement.setBytes(index++, toBytes(uuid));
+                }
+                try (final ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        final UUID uuid = fromBytes(resultSet.getBytes(1));
+                        storedLocations.computeIfAbsent(uuid, key -> new ArrayList<>()).add(new PersistentLocation(
+                                uuid.toString(),
+                                resultSet.getString(2),
+                                resultSet.getDouble(3),
+                                resultSet.getDouble(4),
+                                resultSet.getDouble(5),
+                                LocationType.fromId(resultSet.getInt(6))
+                        ));
+                    }
+                }
+            }
+            if (this.migrating) {
+                this.loadLegacyLocations(uuids, parameters, storedLocations);
+            }
+            // The players have been seen, so their locations shouldn't expire. Written
+            // locations are always stamped, so this is skipped when nothing expires
+            if (this.isExpiryEnabled()) {
+                try (final PreparedStatement statement = this.connection.prepareStatement(
+                        "UPDATE `player_locations` SET `last_seen` = ? WHERE `uuid` IN (" + parameters + ")")) {
+                    statement.setLong(1, System.currentTimeMillis());
+                    int index = 2;
+                    for (final UUID uuid : uuids) {
+                        statement.setBytes(index++, toBytes(uuid));
+                    }
+                    statement.executeUpdate();
+                }
+            }
+            for (final UUID uuid : uuids) {
+                result.put(uuid, this.writeQueue.merge(uuid.toString(),
+                        storedLocations.getOrDefault(uuid, Collections.emptyList())));
+            }
+        }
+        for (final Map.Entry<UUID, Collection<PersistentLocation>> entry : result.entrySet()) {
+            this.cacheLocations(entry.getKey(), entry.getValue());
+        }
+        if (this.configuration.shouldPrintDebug() && uuids.size() > 1) {
+            this.getHyperverse().getLogger().info(String.format("(Debug) Preloaded persistent locations for %d players",
+                    uuids.size()
+            ));
+        }
+        return result;
+    }
+
     @Override
     public void clearWorld(final @NonNull String worldName) {
         this.getTaskChainFactory().newChain().async(() -> {
-            try (final PreparedStatement statement = this.connection.prepareStatement("DELETE FROM `locations` WHERE `world` = ?")) {
-                statement.setString(1, worldName);
-                statement.executeUpdate();
+            this.writeQueue.discardWorld(worldName);
+            synchronized (this.databaseLock) {
+                try {
+                    final Integer worldId = this.worldIds.remove(worldName);
+                    if (worldId != null) {
+                        try (final PreparedStatement statement = this.connection.prepareStatement(
+                                "DELETE FROM `player_locations` WHERE `world` = ?")) {
+                            statement.setInt(1, worldId);
+                            statement.executeUpdate();
+                        }
+                        try (final PreparedStatement statement = this.connection.prepareStatement(
+                                "DELETE FROM `worlds` WHERE `id` = ?")) {
+                            statement.setInt(1, worldId);
+                            statement.executeUpdate();
+                        }
+                    }
+                    if (this.migrating) {
+                        try (final PreparedStatement statement = this.connection.prepareStatement(
+                                "DELETE FROM `locations` WHERE `world` = ?")) {
+                            statement.setString(1, worldName);
+                            statement.executeUpdate();
+                        }
+                    }
+                } catch (final SQLException e) {
+                    e.printStackTrace();
+                }
+            }
+        }).execute();
+    }
+
+    @Override
+    public void exportLocations(final @NonNull Consumer<@NonNull PersistentLocation> consumer) throws SQLException {
+        this.writeQueue.flush();
+        // The rows are read in pages, so that the database isn't locked while the consumer runs
+        final List<PersistentLocation> page = new ArrayList<>(EXPORT_PAGE_SIZE);
+        if (this.migrating) {
+            // Rows that haven't been migrated are older than the ones that have,
+            // so they are exported first, and will be replaced by the newer rows
+            long rowId = 0L;
+            do {
+                page.clear();
+                synchronized (this.databaseLock) {
+                    try (final PreparedStatement statement = this.connection.prepareStatement(
+                            "SELECT `rowid`, `uuid`, `world`, `x`, `y`, `z`, `locationType` FROM `locations` "
+                                    + "WHERE `rowid` > ? ORDER BY `rowid` LIMIT ?")) {
+                        statement.setLong(1, rowId);
+                        statement.setInt(2, EXPORT_PAGE_SIZE);
+                        try (final ResultSet resultSet = statement.executeQuery()) {
+                            while (resultSet.next()) {
+                                rowId = resultSet.getLong(1);
+                                page.add(new PersistentLocation(
+                                        resultSet.getString(2),
+                                        resultSet.getString(3),
+                                        resultSet.getDouble(4),
+                                        resultSet.getDouble(5),
+                                        resultSet.getDouble(6),
+                                        LocationType.valueOf(resultSet.getString(7))
+                                ));
+                            }
+                        }
+                    }
+                }
+                page.forEach(consumer);
+            } while (page.size() == EXPORT_PAGE_SIZE);
+        }
+        byte[] uuid = new byte[0];
+        int world = 0;
+        int type = 0;
+        do {
+            page.clear();
+            synchronized (this.databaseLock) {
+                try (final PreparedStatement statement = this.connection.prepareStatement(
+                        "SELECT `l`.`uuid`, `w`.`name`, `l`.`x`, `l`.`y`, `l`.`z`, `l`.`type`, `l`.`world` "
+                                + "FROM `player_locations` `l` INNER JOIN `worlds` `w` ON `w`.`id` = `l`.`world` "
+                                + "WHERE (`l`.`uuid`, `l`.`world`, `l`.`type`) > (?, ?, ?) "
+                                + "ORDER BY `l`.`uuid`, `l`.`world`, `l`.`type` LIMIT ?")) {
+                    statement.setBytes(1, uuid);
+                    statement.setInt(2, world);
+                    statement.setInt(3, type);
+                    statement.setInt(4, EXPORT_PAGE_SIZE);
+                    try (final ResultSet resultSet = statement.executeQuery()) {
+                        while (resultSet.next()) {
+                            uuid = resultSet.getBytes(1);
+                            world = resultSet.getInt(7);
+                            type = resultSet.getInt(6);
+                            page.add(new PersistentLocation(
+                                    fromBytes(uuid).toString(),
+                                    resultSet.getString(2),
+                                    resultSet.getDouble(3),
+                                    resultSet.getDouble(4),
+                                    resultSet.getDouble(5),
+                                    LocationType.fromId(type)
+                            ));
+                        }
+                    }
+                }
+            }
+            page.forEach(consumer);
+        } while (page.size() == EXPORT_PAGE_SIZE);
+    }
+
+    @Override
+    public void importLocations(final @NonNull Collection<@NonNull PersistentLocation> locations) throws SQLException {
+        this.writeLocations(locations);
+    }
+
+    /**
+     * Get the number of expired locations that have been removed
+     *
+     * @return Number of purged locations
+     */
+    public long getPurgedLocations() {
+        return this.purgedLocations.get();
+    }
+
+    /**
+     * Get the number of database pages that have been
+     * returned to the file system by incremental vacuuming
+     *
+     * @return Number of reclaimed pages
+     */
+    public long getReclaimedPages() {
+        return this.reclaimedPages.get();
+    }
+
+    /**
+     * Get the queue that location writes pass through
+     *
+     * @return Location write queue
+     */
+    public @NonNull LocationWriteQueue getWriteQueue() {
+        return this.writeQueue;
+    }
+
+    /**
+     * Check whether locations stored using the old database
+     * format are still being migrated
+     *
+     * @return True if the migration is still running
+     */
+    public boolean isMigrating() {
+        return this.migrating;
+    }
+
+    private void writeLocations(final @NonNull Collection<@NonNull PersistentLocation> locations) throws SQLException {
+        final long start = System.currentTimeMillis();
+        synchronized (this.databaseLock) {
+            this.connection.setAutoCommit(false);
+            try (final PreparedStatement statement = this.connection.prepareStatement(
+                    "INSERT OR REPLACE INTO `player_locations` (`uuid`, `world`, `type`, `x`, `y`, `z`, `last_seen`) "
+                            + "VALUES(?, ?, ?, ?, ?, ?, ?)")) {
+                final long now = System.currentTimeMillis();
+                for (final PersistentLocation persistentLocation : locations) {
+                    statement.setBytes(1, toBytes(UUID.fromString(persistentLocation.getUuid())));
+                    statement.setInt(2, this.getWorldId(persistentLocation.getWorld()));
+                    statement.setInt(3, persistentLocation.getLocationType().getId());
+                    statement.setDouble(4, persistentLocation.getX());
+                    statement.setDouble(5, persistentLocation.getY());
+                    statement.setDouble(6, persistentLocation.getZ());
+                    statement.setLong(7, now);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                this.connection.commit();
+            } catch (final SQLException e) {
+                this.connection.rollback();
+                // The world IDs may have been rolled back as well
+                this.loadWorldIds();
+                throw e;
+            } finally {
+                this.connection.setAutoCommit(true);
+            }
+        }
+        if (this.configuration.shouldPrintDebug()) {
+            this.getHyperverse().getLogger().info(String.format("(Debug) Wrote %d queued locations in %dms (%d still queued)",
+                    locations.size(), System.currentTimeMillis() - start, this.writeQueue.getQueueDepth()
+            ));
+        }
+    }
+
+    /**
+     * Get the ID of a world, adding it to the world table if it
+     * hasn't been stored before. Must be called while holding
+     * the database lock
+     */
+    private int getWorldId(final @NonNull String worldName) throws SQLException {
+        final Integer cachedId = this.worldIds.get(worldName);
+        if (cachedId != null) {
+            return cachedId;
+        }
+        try (final PreparedStatement statement = this.connection.prepareStatement(
+                "INSERT OR IGNORE INTO `worlds` (`name`) VALUES(?)")) {
+            statement.setString(1, worldName);
+            statement.executeUpdate();
+        }
+        try (final PreparedStatement statement = this.connection.prepareStatement(
+                "SELECT `id` FROM `worlds` WHERE `name` = ?")) {
+            statement.setString(1, worldName);
+            try (final ResultSet resultSet = statement.executeQuery()) {
+                if (!resultSet.next()) {
+                    throw new SQLException(String.format("Failed to store world '%s'", worldName));
+                }
+                final int worldId = resultSet.getInt(1);
+                this.worldIds.put(worldName, worldId);
+                return worldId;
+            }
+        }
+    }
+
+    private void loadWorldIds() throws SQLException {
+        this.worldIds.clear();
+        try (final Statement statement = this.connection.createStatement();
+             final ResultSet resultSet = statement.executeQuery("SELECT `id`, `name` FROM `worlds`")) {
+            while (resultSet.next()) {
+                this.worldIds.put(resultSet.getString(2), resultSet.getInt(1));
+            }
+        }
+    }
+
+    private boolean tableExists(final @NonNull String table) throws SQLException {
+        try (final PreparedStatement statement = this.connection.prepareStatement(
+                "SELECT 1 FROM `sqlite_master` WHERE `type` = 'table' AND `name` = ?")) {
+            statement.setString(1, table);
+            try (final ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next();
+            }
+        }
+    }
+
+    /**
+     * Add locations that haven't been migrated yet. Locations that have
+     * already been stored in the new format take precedence
+     */
+    private void loadLegacyLocations(
+            final @NonNull Collection<@NonNull UUID> uuids,
+            final @NonNull String parameters,
+            final @NonNull Map<@NonNull UUID, @NonNull List<@NonNull PersistentLocation>> storedLocations
+    ) throws SQLException {
+        try (final PreparedStatement statement = this.connection.prepareStatement(
+                "SELECT `uuid`, `world`, `x`, `y`, `z`, `locationType` FROM `locations` WHERE `uuid` IN (" + parameters + ")")) {
+            int index = 1;
+            for (final UUID uuid : uuids) {
+                statement.setString(index++, uuid.toString());
+            }
+            try (final ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    final UUID uuid = UUID.fromString(resultSet.getString("uuid"));
+                    final PersistentLocation persistentLocation = new PersistentLocation(
+                            uuid.toString(),
+                            resultSet.getString("world"),
+                            resultSet.getDouble("x"),
+                            resultSet.getDouble("y"),
+                            resultSet.getDouble("z"),
+                            LocationType.valueOf(resultSet.getString("locationType"))
+                    );
+                    final List<PersistentLocation> locations = storedLocations.computeIfAbsent(uuid, key -> new ArrayList<>());
+                    if (!containsLocation(locations, persistentLocation)) {
+                        locations.add(persistentLocation);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Move all rows from the legacy table into the new tables. This is done in small
+     * chunks, each in its own transaction, so that the database remains usable while
+     * the migration is running. Rows are removed from the legacy table as they are
+     * migrated, which means that an interrupted migration resumes on the next start
+     */
+    private void migrateLegacyTable() {
+        final long start = System.currentTimeMillis();
+        long migratedRows = 0;
+        try {
+            int chunk;
+            while (!this.closed && (chunk = this.migrateLegacyChunk()) >= 0) {
+                migratedRows += chunk;
+                Thread.sleep(MIGRATION_PAUSE);
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (final SQLException e) {
+            if (!this.closed) {
+                e.printStackTrace();
+            }
+        }
+        if (!this.migrating) {
+            this.getHyperverse().getLogger().info(String.format("Migrated %d stored locations in %dms",
+                    migratedRows, System.currentTimeMillis() - start
+            ));
+        } else if (migratedRows > 0) {
+            this.getHyperverse().getLogger().info(String.format("Migrated %d stored locations. The migration will resume on the next start",
+                    migratedRows
+            ));
+        }
+    }
+
+    /**
+     * Migrate a single chunk of legacy rows
+     *
+     * @return Number of migrated rows, or -1 if the legacy table was empty and has been dropped
+     */
+    private int migrateLegacyChunk() throws SQLException {
+        synchronized (this.databaseLock) {
+            if (this.closed) {
+                return -1;
+            }
+            this.connection.setAutoCommit(false);
+            try {
+                long lastId = -1;
+                int rows = 0;
+                try (final PreparedStatement select = this.connection.prepareStatement(
+                        "SELECT `id`, `uuid`, `world`, `x`, `y`, `z`, `locationType` FROM `locations` ORDER BY `id` LIMIT ?");
+                     // Locations that have been written since the migration started are newer, and must be kept
+                     final PreparedStatement insert = this.connection.prepareStatement(
+                             "INSERT OR IGNORE INTO `player_locations` (`uuid`, `world`, `type`, `x`, `y`, `z`, `last_seen`) "
+                                     + "VALUES(?, ?, ?, ?, ?, ?, ?)")) {
+                    select.setInt(1, MIGRATION_CHUNK_SIZE);
+                    final long now = System.currentTimeMillis();
+                    try (final ResultSet resultSet = select.executeQuery()) {
+                        while (resultSet.next()) {
+                            lastId = resultSet.getLong("id");
+                            final UUID uuid;
+                            final LocationType locationType;
+                            try {
+                                uuid = UUID.fromString(resultSet.getString("uuid"));
+                                locationType = LocationType.valueOf(resultSet.getString("locationType"));
+                            } catch (final IllegalArgumentException | NullPointerException e) {
+                                this.getHyperverse().getLogger().warning(String.format(
+                                        "Skipping malformed stored location with id %d", lastId));
+                                continue;
+                            }
+                            insert.setBytes(1, toBytes(uuid));
+                            insert.setInt(2, this.getWorldId(resultSet.getString("world")));
+                            insert.setInt(3, locationType.getId());
+                            insert.setDouble(4, resultSet.getDouble("x"));
+                            insert.setDouble(5, resultSet.getDouble("y"));
+                            insert.setDouble(6, resultSet.getDouble("z"));
+                            insert.setLong(7, now);
+                            insert.addBatch();
+                            rows++;
+                        }
+                    }
+                    insert.executeBatch();
+                }
+                if (lastId < 0) {
+                    try (final Statement statement = this.connection.createStatement()) {
+                        statement.executeUpdate("DROP TABLE `locations`");
+                        statement.executeUpdate(String.format("PRAGMA user_version = %d", SCHEMA_VERSION));
+                    }
+                    this.connection.commit();
+                    this.migrating = false;
+                    return -1;
+                }
+                try (final PreparedStatement delete = this.connection.prepareStatement(
+                        "DELETE FROM `locations` WHERE `id` <= ?")) {
+                    delete.setLong(1, lastId);
+                    delete.executeUpdate();
+                }
+                this.connection.commit();
+                return rows;
+            } catch (final SQLException e) {
+                this.connection.rollback();
+                this.loadWorldIds();
+                throw e;
+            } finally {
+                this.connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * Bring a database created by an older version of the schema up to date
+     */
+    private void upgradeSchema() throws SQLException {
+        // Version 3 added the last seen column
+        if (this.hasColumn("player_locations", "last_seen")) {
+            return;
+        }
+        this.getHyperverse().getLogger().info("Upgrading the database schema...");
+        synchronized (this.databaseLock) {
+            this.connection.setAutoCommit(false);
+            try (final Statement statement = this.connection.createStatement()) {
+                statement.executeUpdate("ALTER TABLE `player_locations` ADD COLUMN `last_seen` INTEGER NOT NULL DEFAULT 0");
+                // Existing locations start their expiry from the upgrade
+                statement.executeUpdate(String.format("UPDATE `player_locations` SET `last_seen` = %d",
+                        System.currentTimeMillis()
+                ));
+                // An unfinished migration sets the version once it completes
+                if (!this.tableExists(LEGACY_TABLE)) {
+                    statement.executeUpdate(String.format("PRAGMA user_version = %d", SCHEMA_VERSION));
+                }
+                this.connection.commit();
             } catch (final SQLException e) {
+                this.connection.rollback();
+                throw e;
+            } finally {
+                this.connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    private boolean hasColumn(final @NonNull String table, final @NonNull String column) throws SQLException {
+        try (final Statement statement = this.connection.createStatement();
+             final ResultSet resultSet = statement.executeQuery(String.format("PRAGMA table_info(%s)", table))) {
+            while (resultSet.next()) {
+                if (column.equals(resultSet.getString("name"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private long queryPragma(final @NonNull String pragma) throws SQLException {
+        try (final Statement statement = this.connection.createStatement();
+             final ResultSet resultSet = statement.executeQuery(String.format("PRAGMA %s", pragma))) {
+            return resultSet.next() ? resultSet.getLong(1) : 0L;
+        }
+    }
+
+    private long getExpiry(final @NonNull LocationType locationType) {
+        switch (locationType) {
+            case PLAYER_LOCATION:
+                return this.configuration.getPlayerLocationExpiry();
+            case BED_SPAWN:
+                return this.configuration.getBedSpawnExpiry();
+            default:
+                return 0L;
+        }
+    }
+
+    private boolean isExpiryEnabled() {
+        for (final LocationType locationType : LocationType.values()) {
+            if (this.getExpiry(locationType) > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Remove expired locations, return free pages to the file system and keep
+     * the query planner statistics up to date. All work is split into small
+     * steps so that the database lock is never held for long
+     */
+    private void performMaintenance() {
+        try {
+            this.checkIncrementalVacuum();
+            this.purgeExpiredLocations();
+            this.incrementalVacuum();
+            if (System.currentTimeMillis() - this.lastAnalyze >= ANALYZE_INTERVAL) {
+                synchronized (this.databaseLock) {
+                    if (this.closed) {
+                        return;
+                    }
+                    this.executeUpdate("ANALYZE;");
+                }
+                this.lastAnalyze = System.currentTimeMillis();
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (final SQLException e) {
+            if (!this.closed) {
                 e.printStackTrace();
             }
-        }).execute();
+        }
+    }
+
+    /**
+     * Databases created before incremental vacuuming was enabled have to be
+     * rebuilt once for the setting to take effect. A rebuild locks the whole database
+     * until it is done, so it is never done automatically. Without expiry there is
+     * little to reclaim, so this is only logged once an expiry has been configured
+     */
+    private void checkIncrementalVacuum() throws SQLException {
+        if (this.closed || this.vacuumChecked || !this.isExpiryEnabled()) {
+            return;
+        }
+        this.vacuumChecked = true;
+        synchronized (this.databaseLock) {
+            if (this.queryPragma("auto_vacuum") == 2) {
+                return;
+            }
+        }
+        this.getHyperverse().getLogger().warning("The database does not return the space of expired locations to "
+                + "the file system. To enable this, stop the server and run \"PRAGMA auto_vacuum = INCREMENTAL; VACUUM;\" "
+                + "on the database file");
+    }
+
+    private void purgeExpiredLocations() throws SQLException, InterruptedException {
+        for (final LocationType locationType : LocationType.values()) {
+            final long expiry = this.getExpiry(locationType);
+            if (expiry <= 0) {
+                continue;
+            }
+            final long cutoff = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(expiry);
+            int deleted;
+            do {
+                synchronized (this.databaseLock) {
+                    if (this.closed) {
+                        return;
+                    }
+                    try (final PreparedStatement statement = this.connection.prepareStatement(
+                            "DELETE FROM `player_locations` WHERE (`uuid`, `world`, `type`) IN ("
+                                    + "SELECT `uuid`, `world`, `type` FROM `player_locations` "
+                                    + "WHERE `type` = ? AND `last_seen` < ? LIMIT ?)")) {
+                        statement.setInt(1, locationType.getId());
+                        statement.setLong(2, cutoff);
+                        statement.setInt(3, PURGE_BATCH_SIZE);
+                        deleted = statement.executeUpdate();
+                    }
+                }
+                this.purgedLocations.addAndGet(deleted);
+                if (deleted > 0 && this.configuration.shouldPrintDebug()) {
+                    this.getHyperverse().getLogger().info(String.format("(Debug) Removed %d expired locations of type %s",
+                            deleted, locationType.name()
+                    ));
+                }
+                Thread.sleep(PURGE_PAUSE);
+            } while (deleted >= PURGE_BATCH_SIZE);
+        }
+    }
+
+    private void incrementalVacuum() throws SQLException, InterruptedException {
+        while (true) {
+            synchronized (this.databaseLock) {
+                if (this.closed) {
+                    return;
+                }
+                final long freePages = this.queryPragma("freelist_count");
+                if (freePages == 0) {
+                    return;
+                }
+                // The driver may only step the statement once, which frees a single page,
+                // so the pragma is repeated until enough pages have been freed
+                final long target = Math.max(0L, freePages - VACUUM_PAGES);
+                long remainingPages = freePages;
+                try (final Statement statement = this.connection.createStatement()) {
+                    while (remainingPages > target) {
+                        statement.execute(String.format("PRAGMA incremental_vacuum(%d)", remainingPages - target));
+                        final long pages = this.queryPragma("freelist_count");
+                        if (pages >= remainingPages) {
+                            break;
+                        }
+                        remainingPages = pages;
+                    }
+                }
+                this.reclaimedPages.addAndGet(freePages - remainingPages);
+                if (remainingPages == freePages) {
+                    return;
+                }
+            }
+            Thread.sleep(PURGE_PAUSE);
+        }
     }
 
     private void executeUpdate(final @NonNull String sql) {
@@ -151,6 +151,20 @@ public interface FlagContainer {
      */
     void subscribe(FlagContainer.@NonNull WorldFlagUpdateHandler worldFlagUpdateHandler);
 
+    /**
+     * Stop receiving flag updates through a handler that was
+     * previously passed to {@link #subscribe(WorldFlagUpdateHandler)}.
+     *
+     * @param worldFlagUpdateHandler The update handler to remove.
+     */
+    void unsubscribe(FlagContainer.@NonNull WorldFlagUpdateHandler worldFlagUpdateHandler);
+
+    /**
+     * Stop receiving updates from the parent container. This should be
+     * called once the world that owns this container has been deleted.
+     */
+    void detach();
+
     /**
      * Handle an unknown flag
      *
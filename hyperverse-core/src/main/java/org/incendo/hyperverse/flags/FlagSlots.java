@@ -0,0 +1,91 @@
+//
+//  Hyperverse - A minecraft world management plugin
+//
+//  This program is free software: you can redistribute it and/or modify
+//  it under the terms of the GNU General Public License as published by
+//  the Free Software Foundation, either version 3 of the License, or
+//  (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful,
+//  but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  GNU General Public License for more details.
+//
+//  You should have received a copy of the GNU General Public License
+//  along with this program. If not, see <http://www.gnu.org/licenses/>.
+//
+
+package org.incendo.hyperverse.flags;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Registry of stable integer slots for flag classes. A flag class is given
+ * a slot when it's first registered in the {@link GlobalWorldFlagContainer},
+ * and keeps it for the lifetime of the server. Slots are used to index the
+ * resolved flag arrays held by every {@link WorldFlagContainer}
+ */
+final class FlagSlots {
+
+    private static final Map<Class<?>, Integer> slots = new HashMap<>();
+    private static final ClassValue<Integer> slotCache = new ClassValue<Integer>() {
+        @Override
+        protected Integer computeValue(final Class<?> type) {
+            synchronized (slots) {
+                return slots.getOrDefault(type, -1);
+            }
+        }
+    };
+    private static volatile Class<?>[] flagClasses = new Class<?>[0];
+
+    private FlagSlots() {
+    }
+
+    /**
+     * Assign a slot to a flag class, if it doesn't have one already
+     *
+     * @param flagClass Flag class
+     * @return Slot of the flag class
+     */
+    static int register(final @NonNull Class<?> flagClass) {
+        synchronized (slots) {
+            final Integer existing = slots.get(flagClass);
+            if (existing != null) {
+                return existing;
+            }
+            final int slot = slots.size();
+            slots.put(flagClass, slot);
+            final List<Class<?>> classes = new ArrayList<>(List.of(flagClasses));
+            classes.add(flagClass);
+            flagClasses = classes.toArray(new Class<?>[0]);
+            // The class may have been queried before it was registered
+            slotCache.remove(flagClass);
+            return slot;
+        }
+    }
+
+    /**
+     * Get the slot of a flag class
+     *
+     * @param flagClass Flag class
+     * @return Slot, or {@code -1} if the class hasn't been registered
+     */
+    static int getSlot(final @NonNull Class<?> flagClass) {
+        return slotCache.get(flagClass);
+    }
+
+    /**
+     * Get all registered flag classes, indexed by their slots
+     *
+     * @return Registered flag classes. The array must not be modified
+     */
+    static @NonNull Class<?>[] getFlagClasses() {
+        return flagClasses;
+    }
+
+}
@@ -21,21 +21,25 @@ import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.incendo.hyperverse.flags.implementation.AdvancementFlag;
 import org.incendo.hyperverse.flags.implementation.AliasFlag;
+import org.incendo.hyperverse.flags.implementation.AmbientSpawnFlag;
 import org.incendo.hyperverse.flags.implementation.CreatureSpawnFlag;
 import org.incendo.hyperverse.flags.implementation.DifficultyFlag;
 import org.incendo.hyperverse.flags.implementation.EndFlag;
 import org.incendo.hyperverse.flags.implementation.ForceSpawn;
 import org.incendo.hyperverse.flags.implementation.GamemodeFlag;
+import org.incendo.hyperverse.flags.implementation.HibernateFlag;
 import org.incendo.hyperverse.flags.implementation.IgnoreBedsFlag;
 import org.incendo.hyperverse.flags.implementation.LocalRespawnFlag;
 import org.incendo.hyperverse.flags.implementation.MobSpawnFlag;
 import org.incendo.hyperverse.flags.implementation.NetherFlag;
+import org.incendo.hyperverse.flags.implementation.OnDemandFlag;
 import org.incendo.hyperverse.flags.implementation.ProfileGroupFlag;
 import org.incendo.hyperverse.flags.implementation.PveFlag;
 import org.incendo.hyperverse.flags.implementation.PvpFlag;
 import org.incendo.hyperverse.flags.implementation.RespawnWorldFlag;
 import org.incendo.hyperverse.flags.implementation.SaveWorldFlag;
 import org.incendo.hyperverse.flags.implementation.UnloadSpawnFlag;
+import org.incendo.hyperverse.flags.implementation.WaterSpawnFlag;
 import org.incendo.hyperverse.flags.implementation.WorldPermissionFlag;
 
 import java.util.HashMap;
@@ -50,6 +54,7 @@ public final class GlobalWorldFlagContainer extends WorldFlagContainer {
         super(null, (flag, type) -> {
             if (type == WorldFlagUpdateType.FLAG_ADDED) {
                 stringClassMap.put(flag.getName().toLowerCase(Locale.ENGLISH), flag.getClass());
+                FlagSlots.register(flag.getClass());
             }
         });
         // Register all default flags here
@@ -65,12 +70,16 @@ public final class GlobalWorldFlagContainer extends WorldFlagContainer {
         this.addFlag(DifficultyFlag.DIFFICULTY_FLAG_NORMAL);
         this.addFlag(MobSpawnFlag.MOB_SPAWN_ALLOWED);
         this.addFlag(CreatureSpawnFlag.CREATURE_SPAWN_ALLOWED);
+        this.addFlag(AmbientSpawnFlag.AMBIENT_SPAWN_ALLOWED);
+        this.addFlag(WaterSpawnFlag.WATER_SPAWN_ALLOWED);
         this.addFlag(AdvancementFlag.ADVANCEMENTS_ALLOWED);
         this.addFlag(RespawnWorldFlag.RESPAWN_WORLD_FLAG_EMPTY);
         this.addFlag(IgnoreBedsFlag.IGNORE_BEDS_FALSE);
         this.addFlag(AliasFlag.ALIAS_NONE);
         this.addFlag(UnloadSpawnFlag.UNLOAD_SPAWN_FALSE);
         this.addFlag(SaveWorldFlag.SAVE_WORLD_TRUE);
+        this.addFlag(OnDemandFlag.ON_DEMAND_FALSE);
+        this.addFlag(HibernateFlag.HIBERNATE_FALSE);
     }
 
     @Override
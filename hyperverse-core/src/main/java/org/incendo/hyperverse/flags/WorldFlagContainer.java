@@ -36,7 +36,10 @@ public class WorldFlagContainer implements FlagContainer {
     private final Map<Class<?>, WorldFlag<?, ?>> flagMap = new HashMap<>();
     private final WorldFlagUpdateHandler worldFlagUpdateHandler;
     private final Collection<WorldFlagUpdateHandler> updateSubscribers = new ArrayList<>();
+    private final Object resolveLock = new Object();
+    private final FlagContainer.WorldFlagUpdateHandler parentUpdateHandler;
     private FlagContainer parentContainer;
+    private volatile WorldFlag<?, ?>[] resolvedFlags;
 
     /**
      * Construct a new flag container with an optional parent container and update handler.
@@ -57,8 +60,12 @@ public class WorldFlagContainer implements FlagContainer {
     ) {
         this.parentContainer = parentContainer;
         this.worldFlagUpdateHandler = worldFlagUpdateHandler;
+        this.parentUpdateHandler = (flag, type) -> {
+            this.handleUnknowns(flag, type);
+            this.invalidateResolvedFlags();
+        };
         if (parentContainer != null) {
-            parentContainer.subscribe(this::handleUnknowns);
+            parentContainer.subscribe(this.parentUpdateHandler);
         }
     }
 
@@ -87,6 +94,7 @@ public class WorldFlagContainer implements FlagContainer {
     @Override
     public final void setParentContainer(final @NonNull FlagContainer parentContainer) {
         this.parentContainer = parentContainer;
+        this.invalidateResolvedFlags();
     }
 
     @Override
@@ -103,6 +111,7 @@ public class WorldFlagContainer implements FlagContainer {
     @Override
     public final <V, T extends WorldFlag<V, ?>> void addFlag(final @NonNull T flag) {
         final WorldFlag<?, ?> oldInstance = this.flagMap.put(flag.getClass(), flag);
+        this.invalidateResolvedFlags();
         final WorldFlagUpdateType worldFlagUpdateType;
         if (oldInstance != null) {
             worldFlagUpdateType = WorldFlagUpdateType.FLAG_UPDATED;
@@ -119,6 +128,7 @@ public class WorldFlagContainer implements FlagContainer {
     @SuppressWarnings("unchecked")
     public final <V, T extends WorldFlag<V, ?>> @Nullable V removeFlag(final @NonNull T flag) {
         final Object value = this.flagMap.remove(flag.getClass());
+        this.invalidateResolvedFlags();
         if (this.worldFlagUpdateHandler != null) {
             this.worldFlagUpdateHandler.handle(flag, WorldFlagUpdateType.FLAG_REMOVED);
         }
@@ -146,6 +156,7 @@ public class WorldFlagContainer implements FlagContainer {
     @Override
     public final void clearLocal() {
         this.flagMap.clear();
+        this.invalidateResolvedFlags();
     }
 
     @Override
@@ -169,6 +180,10 @@ public class WorldFlagContainer implements FlagContainer {
      */
     @Override
     public @Nullable WorldFlag<?, ?> getFlagErased(final @NonNull Class<?> flagClass) {
+        final WorldFlag<?, ?> resolvedFlag = this.getResolvedFlag(flagClass);
+        if (resolvedFlag != null) {
+            return resolvedFlag;
+        }
         final WorldFlag<?, ?> flag = this.flagMap.get(flagClass);
         if (flag != null) {
             return flag;
@@ -192,6 +207,10 @@ public class WorldFlagContainer implements FlagContainer {
      */
     @Override
     public @Nullable <V, T extends WorldFlag<V, ?>> T getFlag(final @NonNull Class<? extends T> flagClass) {
+        final WorldFlag<?, ?> resolvedFlag = this.getResolvedFlag(flagClass);
+        if (resolvedFlag != null) {
+            return castUnsafe(resolvedFlag);
+        }
         final WorldFlag<?, ?> flag = this.flagMap.get(flagClass);
         if (flag != null) {
             return castUnsafe(flag);
@@ -203,6 +222,55 @@ public class WorldFlagContainer implements FlagContainer {
         return null;
     }
 
+    /**
+     * Get a flag from the resolved flag array. The array holds the effective flag
+     * for every registered flag class, taking parent containers into account, and it
+     * is rebuilt lazily whenever a flag in this container or a parent container changes
+     *
+     * @param flagClass Flag class
+     * @return Resolved flag, or {@code null} if the flag class isn't registered
+     */
+    private @Nullable WorldFlag<?, ?> getResolvedFlag(final @NonNull Class<?> flagClass) {
+        final int slot = FlagSlots.getSlot(flagClass);
+        if (slot < 0) {
+            return null;
+        }
+        WorldFlag<?, ?>[] resolvedFlags = this.resolvedFlags;
+        if (resolvedFlags == null || slot >= resolvedFlags.length) {
+            resolvedFlags = this.resolveFlags();
+        }
+        return resolvedFlags[slot];
+    }
+
+    private @NonNull WorldFlag<?, ?>[] resolveFlags() {
+        // Invalidation waits for the array to be published, so a flag
+        // that changes while it is being built can't be overwritten
+        synchronized (this.resolveLock) {
+            final Class<?>[] flagClasses = FlagSlots.getFlagClasses();
+            WorldFlag<?, ?>[] resolvedFlags = this.resolvedFlags;
+            if (resolvedFlags != null && resolvedFlags.length == flagClasses.length) {
+                return resolvedFlags;
+            }
+            resolvedFlags = new WorldFlag<?, ?>[flagClasses.length];
+            for (int slot = 0; slot < flagClasses.length; slot++) {
+                final WorldFlag<?, ?> flag = this.flagMap.get(flagClasses[slot]);
+                if (flag != null) {
+                    resolvedFlags[slot] = flag;
+                } else if (this.getParentContainer() != null) {
+                    resolvedFlags[slot] = this.getParentContainer().getFlagErased(flagClasses[slot]);
+                }
+            }
+            this.resolvedFlags = resolvedFlags;
+            return resolvedFlags;
+        }
+    }
+
+    private void invalidateResolvedFlags() {
+        synchronized (this.resolveLock) {
+            this.resolvedFlags = null;
+        }
+    }
+
     @Override
     public final @Nullable <V, T extends WorldFlag<V, ?>> T queryLocal(final @NonNull Class<?> flagClass) {
         final WorldFlag<?, ?> localFlag = this.flagMap.get(flagClass);
@@ -220,6 +288,20 @@ public class WorldFlagContainer implements FlagContainer {
         this.updateSubscribers.add(worldFlagUpdateHandler);
     }
 
+    @Override
+    public final void unsubscribe(
+            final FlagContainer.@NonNull WorldFlagUpdateHandler worldFlagUpdateHandler
+    ) {
+        this.updateSubscribers.remove(worldFlagUpdateHandler);
+    }
+
+    @Override
+    public final void detach() {
+        if (this.parentContainer != null) {
+            this.parentContainer.unsubscribe(this.parentUpdateHandler);
+        }
+    }
+
     @Override
     public final void handleUnknowns(
             final @NonNull WorldFlag<?, ?> flag,
@@ -17,8 +17,6 @@
 
 package org.incendo.hyperverse.listeners;
 
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
 import io.papermc.lib.PaperLib;
 import org.bukkit.GameMode;
 import org.bukkit.Location;
@@ -27,21 +25,9 @@ import org.bukkit.attribute.Attribute;
 import org.bukkit.attribute.AttributeInstance;
 import org.bukkit.attribute.AttributeModifier;
 import org.bukkit.boss.DragonBattle;
-import org.bukkit.entity.Ambient;
-import org.bukkit.entity.Animals;
-import org.bukkit.entity.Boss;
-import org.bukkit.entity.EnderCrystal;
 import org.bukkit.entity.Entity;
 import org.bukkit.entity.EntityType;
-import org.bukkit.entity.Ghast;
-import org.bukkit.entity.IronGolem;
-import org.bukkit.entity.Monster;
-import org.bukkit.entity.NPC;
-import org.bukkit.entity.Phantom;
 import org.bukkit.entity.Player;
-import org.bukkit.entity.Shulker;
-import org.bukkit.entity.Slime;
-import org.bukkit.entity.WaterMob;
 import org.bukkit.event.Event;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
@@ -71,36 +57,37 @@ import org.incendo.hyperverse.database.LocationType;
 import org.incendo.hyperverse.database.PersistentLocation;
 import org.incendo.hyperverse.events.PlayerSeekSpawnEvent;
 import org.incendo.hyperverse.events.PlayerSetSpawnEvent;
-import org.incendo.hyperverse.flags.implementation.CreatureSpawnFlag;
 import org.incendo.hyperverse.flags.implementation.EndFlag;
 import org.incendo.hyperverse.flags.implementation.GamemodeFlag;
 import org.incendo.hyperverse.flags.implementation.LocalRespawnFlag;
-import org.incendo.hyperverse.flags.implementation.MobSpawnFlag;
 import org.incendo.hyperverse.flags.implementation.NetherFlag;
 import org.incendo.hyperverse.flags.implementation.ProfileGroupFlag;
 import org.incendo.hyperverse.flags.implementation.PveFlag;
 import org.incendo.hyperverse.flags.implementation.PvpFlag;
 import org.incendo.hyperverse.flags.implementation.RespawnWorldFlag;
 import org.incendo.hyperverse.modules.HyperEventFactory;
+import org.incendo.hyperverse.profiles.ProfileStore;
+import org.incendo.hyperverse.teleportation.PortalIndex;
+import org.incendo.hyperverse.teleportation.PortalTransferQueue;
 import org.incendo.hyperverse.util.MessageUtil;
 import org.incendo.hyperverse.util.NMS;
 import org.incendo.hyperverse.world.HyperWorld;
+import org.incendo.hyperverse.world.SpawnPolicy;
 import org.incendo.hyperverse.world.WorldManager;
 import org.incendo.hyperverse.world.WorldType;
 
 import javax.inject.Inject;
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
 
 public final class EventListener implements Listener {
 
-    private final Cache<UUID, Long> teleportationTimeout =
-            CacheBuilder.newBuilder().expireAfterWrite(5L, TimeUnit.SECONDS).build();
     private final WorldManager worldManager;
     private final HyperDatabase hyperDatabase;
     private final HyperConfiguration hyperConfiguration;
@@ -108,6 +95,9 @@ public final class EventListener implements Listener {
     private final NMS nms;
     private final BukkitScheduler scheduler;
     private final HyperEventFactory hyperEventFactory;
+    private final ProfileStore profileStore;
+    private final PortalIndex portalIndex;
+    private final PortalTransferQueue portalTransferQueue;
 
     @Inject
     public EventListener(
@@ -118,7 +108,10 @@ public final class EventListener implements Listener {
             final @NonNull PluginManager pluginManager,
             final @NonNull BukkitScheduler scheduler,
             final @NonNull Plugin plugin,
-            final @NonNull NMS nms
+            final @NonNull NMS nms,
+            final @NonNull ProfileStore profileStore,
+            final @NonNull PortalIndex portalIndex,
+            final @NonNull PortalTransferQueue portalTransferQueue
     ) {
         this.worldManager = worldManager;
         this.hyperDatabase = hyperDatabase;
@@ -127,6 +120,9 @@ public final class EventListener implements Listener {
         this.scheduler = scheduler;
         this.plugin = plugin;
         this.nms = nms;
+        this.profileStore = profileStore;
+        this.portalIndex = portalIndex;
+        this.portalTransferQueue = portalTransferQueue;
         // Register pre-spawn listeners
         if (PaperLib.isPaper()) {
             pluginManager.registerEvents(new PaperListener(this.worldManager), plugin);
@@ -144,23 +140,23 @@ public final class EventListener implements Listener {
             final @NonNull HyperWorld world,
             final @NonNull Entity entity
     ) {
-        if (!world.getFlag(CreatureSpawnFlag.class)) {
-            return entity instanceof IronGolem || entity instanceof Animals
-                    || entity instanceof WaterMob || entity instanceof Ambient || entity instanceof NPC;
-        }
-        if (!world.getFlag(MobSpawnFlag.class)) {
-            return entity instanceof Shulker || entity instanceof Monster || entity instanceof Boss
-                    || entity instanceof Slime || entity instanceof Ghast || entity instanceof Phantom
-                    || entity instanceof EnderCrystal;
-        }
-        return false;
+        return world.getSpawnPolicy().shouldCancel(entity.getType());
     }
 
     @EventHandler
     public void onPlayerLogin(final @NonNull AsyncPlayerPreLoginEvent event) {
         if (this.hyperConfiguration.shouldPersistLocations()) {
             try {
-                this.hyperDatabase.getLocations(event.getUniqueId()).get();
+                this.hyperDatabase.preloadLocations(event.getUniqueId())
+                        .get(this.hyperConfiguration.getLoginPreloadTimeout(), TimeUnit.MILLISECONDS);
+            } catch (final TimeoutException e) {
+                // The locations will be added to the cache once they've been loaded, and
+                // anything that depends on them will wait for the pending result
+                if (this.hyperConfiguration.shouldPrintDebug()) {
+                    this.plugin.getLogger().info(String.format("(Debug) Timed out loading persistent locations for %s",
+                            event.getUniqueId()
+                    ));
+                }
             } catch (InterruptedException | ExecutionException e) {
                 e.printStackTrace();
             }
@@ -190,18 +186,12 @@ public final class EventListener implements Listener {
             if (this.hyperConfiguration.shouldGroupProfiles()) {
                 final HyperWorld hyperWorld = this.worldManager.getWorld(from.getWorld());
                 if (hyperWorld != null) {
-                    final Path oldWorldDirectory =
-                            this.plugin.getDataFolder().toPath().resolve("profiles")
-                                    .resolve(hyperWorld.getFlag(ProfileGroupFlag.class));
-                    if (!Files.exists(oldWorldDirectory)) {
-                        try {
-                            Files.createDirectories(oldWorldDirectory);
-                        } catch (IOException e) {
-                            e.printStackTrace();
-                        }
+                    final String group = hyperWorld.getFlag(ProfileGroupFlag.class);
+                    final HyperWorld destination = this.worldManager.getWorld(to.getWorld());
+                    // The profile stays with the player if the group doesn't change
+                    if (destination == null || !group.equals(destination.getFlag(ProfileGroupFlag.class))) {
+                        this.profileStore.saveProfile(event.getPlayer(), group);
                     }
-                    this.nms.writePlayerData(event.getPlayer(), oldWorldDirectory.resolve(
-                            String.format("%s.nbt", event.getPlayer().getUniqueId().toString())));
                 }
             }
         }
@@ -234,60 +224,22 @@ public final class EventListener implements Listener {
             // Only load player data if the worlds belong to different groups
             if (from == null || !from.getFlag(ProfileGroupFlag.class)
                     .equals(hyperWorld.getFlag(ProfileGroupFlag.class))) {
-                final Path newWorldDirectory =
-                        this.plugin.getDataFolder().toPath().resolve("profiles")
-                                .resolve(hyperWorld.getFlag(ProfileGroupFlag.class));
-                if (!Files.exists(newWorldDirectory)) {
-                    try {
-                        Files.createDirectories(newWorldDirectory);
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
-                }
-                final Path playerData = newWorldDirectory
-                        .resolve(String.format("%s.nbt", player.getUniqueId().toString()));
-                if (Files.exists(playerData)) {
-                    final GameMode originalGameMode = player.getGameMode();
-                    this.nms.readPlayerData(event.getPlayer(), playerData,
-                            () -> this.scheduler.runTaskLater(this.plugin, () -> {
-                                // We need to trick Bukkit into updating the gamemode
-                                final GameMode worldGameMode = hyperWorld.getFlag(GamemodeFlag.class);
-                                if (worldGameMode != GameMode.ADVENTURE) {
-                                    player.setGameMode(GameMode.ADVENTURE);
-                                } else {
-                                    player.setGameMode(GameMode.SURVIVAL);
-                                }
-                                player.setGameMode(GameMode.SPECTATOR);
-                                if (!this.setDefaultGameMode(player, hyperWorld)) {
-                                    player.setGameMode(originalGameMode);
-                                }
-                                // Apply any other flags here
-                            }, 1L)
-                    );
+                final String profileGroup = hyperWorld.getFlag(ProfileGroupFlag.class);
+                final CompletableFuture<Object> profile = this.profileStore.loadProfile(player.getUniqueId(), profileGroup);
+                if (profile.isDone()) {
+                    this.applyProfile(player, hyperWorld, profile);
                 } else {
-                    // The player has no stored data. Reset everything
-                    player.setBedSpawnLocation(player.getWorld().getSpawnLocation(), true);
-                    player.getInventory().clear();
-                    player.getEnderChest().clear();
-                    player.setTotalExperience(0);
-                    for (final PotionEffectType potionEffectType : PotionEffectType.values()) {
-                        player.removePotionEffect(potionEffectType);
-                    }
-                    player.setVelocity(new Vector(0, 0, 0));
-                    player.setTicksLived(1);
-                    player.setFireTicks(1);
-                    player.getInventory().setHeldItemSlot(0);
-                    for (final Attribute attribute : Attribute.values()) {
-                        final AttributeInstance attributeInstance = player.getAttribute(attribute);
-                        if (attributeInstance != null) {
-                            attributeInstance.setBaseValue(attributeInstance.getDefaultValue());
-                            for (final AttributeModifier attributeModifier : attributeInstance
-                                    .getModifiers()) {
-                                attributeInstance.removeModifier(attributeModifier);
-                            }
+                    profile.whenComplete((data, throwable) -> this.scheduler.runTask(this.plugin, () -> {
+                        if (!player.isOnline()) {
+                            return;
                         }
-                    }
-                    this.setDefaultGameMode(player, hyperWorld);
+                        // The player may have moved on while the profile was being read. Worlds in the same
+                        // group share the profile, so it is only discarded if they have left the group
+                        final HyperWorld currentWorld = this.worldManager.getWorld(player.getWorld());
+                        if (currentWorld != null && currentWorld.getFlag(ProfileGroupFlag.class).equals(profileGroup)) {
+                            this.applyProfile(player, currentWorld, profile);
+                        }
+                    }));
                 }
             }
         } else {
@@ -295,6 +247,65 @@ public final class EventListener implements Listener {
         }
     }
 
+    private void applyProfile(
+            final @NonNull Player player,
+            final @NonNull HyperWorld hyperWorld,
+            final @NonNull CompletableFuture<Object> profile
+    ) {
+        final Object data;
+        try {
+            data = profile.join();
+        } catch (final CompletionException e) {
+            // Leave the player alone rather than wiping their data
+            this.plugin.getLogger().log(Level.SEVERE, String.format("Failed to load the profile of %s",
+                    player.getName()), e.getCause());
+            return;
+        }
+        if (data != null) {
+            final GameMode originalGameMode = player.getGameMode();
+            this.nms.applyPlayerData(player, data,
+                    () -> this.scheduler.runTaskLater(this.plugin, () -> {
+                        // We need to trick Bukkit into updating the gamemode
+                        final GameMode worldGameMode = hyperWorld.getFlag(GamemodeFlag.class);
+                        if (worldGameMode != GameMode.ADVENTURE) {
+                            player.setGameMode(GameMode.ADVENTURE);
+                        } else {
+                            player.setGameMode(GameMode.SURVIVAL);
+                        }
+                        player.setGameMode(GameMode.SPECTATOR);
+                        if (!this.setDefaultGameMode(player, hyperWorld)) {
+                            player.setGameMode(originalGameMode);
+                        }
+                        // Apply any other flags here
+                    }, 1L)
+            );
+        } else {
+            // The player has no stored data. Reset everything
+            player.setBedSpawnLocation(player.getWorld().getSpawnLocation(), true);
+            player.getInventory().clear();
+            player.getEnderChest().clear();
+            player.setTotalExperience(0);
+            for (final PotionEffectType potionEffectType : PotionEffectType.values()) {
+                player.removePotionEffect(potionEffectType);
+            }
+            player.setVelocity(new Vector(0, 0, 0));
+            player.setTicksLived(1);
+            player.setFireTicks(1);
+            player.getInventory().setHeldItemSlot(0);
+            for (final Attribute attribute : Attribute.values()) {
+                final AttributeInstance attributeInstance = player.getAttribute(attribute);
+                if (attributeInstance != null) {
+                    attributeInstance.setBaseValue(attributeInstance.getDefaultValue());
+                    for (final AttributeModifier attributeModifier : attributeInstance
+                            .getModifiers()) {
+                        attributeInstance.removeModifier(attributeModifier);
+                    }
+                }
+            }
+            this.setDefaultGameMode(player, hyperWorld);
+        }
+    }
+
     private boolean setDefaultGameMode(final @NonNull Player player, final @NonNull HyperWorld world) {
         if (player.hasPermission("plugin.override.gamemode")) {
             if (world.getFlag(GamemodeFlag.class) != player.getGameMode()) {
@@ -335,11 +346,11 @@ public final class EventListener implements Listener {
         Location spawnLocation = event.getRespawnLocation();
 
         if (hyperWorld.getFlag(LocalRespawnFlag.class)) {
-            spawnLocation = hyperWorld.getTeleportationManager().getSpawnLocation(player, hyperWorld);
+            spawnLocation = this.resolveSpawnLocation(player, hyperWorld);
         } else if (!hyperWorld.getFlag(RespawnWorldFlag.class).isEmpty()) {
             final HyperWorld respawnWorld = this.worldManager.getWorld(hyperWorld.getFlag(RespawnWorldFlag.class));
             if (respawnWorld != null) {
-                spawnLocation = respawnWorld.getTeleportationManager().getSpawnLocation(player, respawnWorld);
+                spawnLocation = this.resolveSpawnLocation(player, respawnWorld);
             } else {
                 MessageUtil.sendMessage(player, Messages.messageRespawnWorldNonExistent);
             }
@@ -357,6 +368,22 @@ public final class EventListener implements Listener {
         event.setRespawnLocation(seekSpawnEvent.getRespawnLocation());
     }
 
+    private @NonNull Location resolveSpawnLocation(final @NonNull Player player, final @NonNull HyperWorld hyperWorld) {
+        final CompletableFuture<Location> spawnLocation =
+                hyperWorld.getTeleportationManager().getSpawnLocationAsync(player, hyperWorld);
+        if (spawnLocation.isDone()) {
+            return spawnLocation.join();
+        }
+        // The persistent locations are still being loaded, so the player respawns at the
+        // world spawn, and is moved to the actual spawn location once it is known
+        spawnLocation.thenAccept(location -> {
+            if (player.isOnline() && Objects.equals(player.getWorld(), location.getWorld())) {
+                PaperLib.teleportAsync(player, location);
+            }
+        });
+        return Objects.requireNonNull(hyperWorld.getSpawn());
+    }
+
     @EventHandler
     public void onEntityDamageEvent(final @NonNull EntityDamageByEntityEvent event) {
         final HyperWorld hyperWorld = this.worldManager.getWorld(event.getEntity().getWorld());
@@ -389,9 +416,7 @@ public final class EventListener implements Listener {
             return;
         }
 
-        final Long lastTeleportion =
-                this.teleportationTimeout.getIfPresent(event.getPlayer().getUniqueId());
-        if (lastTeleportion != null && (System.currentTimeMillis() - lastTeleportion) < 5000L) {
+        if (event.getPlayer().getPortalCooldown() > 0) {
             event.setCancelled(true);
             return;
         }
@@ -427,8 +452,7 @@ public final class EventListener implements Listener {
                 MessageUtil.sendMessage(event.getPlayer(), Messages.messageNotPermittedEntry);
             } else {
                 event.setTo(destination);
-                this.teleportationTimeout
-                        .put(event.getPlayer().getUniqueId(), System.currentTimeMillis());
+                event.getPlayer().setPortalCooldown(PortalTransferQueue.PORTAL_COOLDOWN);
             }
         } else {
             final String flag =
@@ -445,6 +469,9 @@ public final class EventListener implements Listener {
     @EventHandler
     public void onEntityPortalEnter(final @NonNull EntityPortalEnterEvent event) {
         if (event.getEntityType() == EntityType.PLAYER) {
+            if (this.hyperConfiguration.shouldGroupProfiles()) {
+                this.prefetchPortalProfile((Player) event.getEntity(), event.getLocation());
+            }
             return;
         }
 
@@ -454,35 +481,32 @@ public final class EventListener implements Listener {
             return;
         }
 
-        final Long lastTeleportion =
-                this.teleportationTimeout.getIfPresent(event.getEntity().getUniqueId());
-        if (lastTeleportion != null && (System.currentTimeMillis() - lastTeleportion) < 5000L) {
+        final Entity entity = event.getEntity();
+        if (entity.getPortalCooldown() > 0) {
             return;
         }
 
         if (event.getLocation().getBlock().getType() == Material.NETHER_PORTAL && !hyperWorld
                 .getFlag(NetherFlag.class).isEmpty()) {
-            final Location destination = hyperWorld.getTeleportationManager()
-                    .netherDestination(event.getEntity(), event.getLocation());
-            if (destination != null) {
+            final Location portal = event.getLocation().clone();
+            this.portalTransferQueue.enqueue(entity, hyperWorld.getFlag(NetherFlag.class), () -> {
+                final Location destination = hyperWorld.getTeleportationManager()
+                        .netherDestination(entity, portal);
+                if (destination == null) {
+                    return null;
+                }
                 // Destination is the location from which we want to search, now we need to find the
                 // actual portal destination
-                final Location location =
-                        this.nms.getOrCreateNetherPortal(event.getEntity(), destination);
-                if (location != null) {
-                    this.teleportationTimeout
-                            .put(event.getEntity().getUniqueId(), System.currentTimeMillis());
-                    PaperLib.teleportAsync(event.getEntity(), location,
-                            PlayerTeleportEvent.TeleportCause.COMMAND
-                    );
-                } else {
+                final Location location = this.portalIndex.getOrCreateNetherPortal(entity, destination);
+                if (location == null) {
                     this.plugin.getLogger().warning(String
                             .format(
                                     "Failed to find/create a portal surrounding %s",
                                     destination.toString()
                             ));
                 }
-            }
+                return location;
+            });
         } else if (event.getLocation().getBlock().getType() == Material.END_PORTAL && !hyperWorld
                 .getFlag(EndFlag.class).isEmpty()) {
             Location portalLocation;
@@ -494,13 +518,42 @@ public final class EventListener implements Listener {
                     return;
                 }
             }
-            final Location destination =
-                    hyperWorld.getTeleportationManager().endDestination(event.getEntity());
-            if (destination != null) {
-                PaperLib.teleportAsync(event.getEntity(), destination,
-                        PlayerTeleportEvent.TeleportCause.COMMAND
-                );
-            }
+            this.portalTransferQueue.enqueue(entity, hyperWorld.getFlag(EndFlag.class), () ->
+                    hyperWorld.getTeleportationManager().endDestination(entity));
+        }
+    }
+
+    /**
+     * Prefetch the profile of a player that is standing in a portal
+     * that is linked to a world in another profile group
+     *
+     * @param player   Player in the portal
+     * @param location Portal location
+     */
+    private void prefetchPortalProfile(final @NonNull Player player, final @NonNull Location location) {
+        final HyperWorld hyperWorld = this.worldManager.getWorld(Objects.requireNonNull(location.getWorld()));
+        if (hyperWorld == null) {
+            return;
+        }
+        final String linkedWorld;
+        final Material portalType = location.getBlock().getType();
+        if (portalType == Material.NETHER_PORTAL) {
+            linkedWorld = hyperWorld.getFlag(NetherFlag.class);
+        } else if (portalType == Material.END_PORTAL) {
+            linkedWorld = hyperWorld.getFlag(EndFlag.class);
+        } else {
+            return;
+        }
+        if (linkedWorld.isEmpty()) {
+            return;
+        }
+        final HyperWorld destination = this.worldManager.getWorld(linkedWorld);
+        if (destination == null) {
+            return;
+        }
+        final String group = destination.getFlag(ProfileGroupFlag.class);
+        if (!group.equals(hyperWorld.getFlag(ProfileGroupFlag.class))) {
+            this.profileStore.prefetchProfile(player.getUniqueId(), group);
         }
     }
 
@@ -549,8 +602,12 @@ public final class EventListener implements Listener {
         if (hyperWorld == null) {
             return;
         }
+        final SpawnPolicy spawnPolicy = hyperWorld.getSpawnPolicy();
+        if (spawnPolicy.allowsAll()) {
+            return;
+        }
         for (final Entity entity : event.getChunk().getEntities()) {
-            if (shouldCancelSpawn(hyperWorld, entity)) {
+            if (spawnPolicy.shouldCancel(entity.getType())) {
                 entity.remove();
             }
         }
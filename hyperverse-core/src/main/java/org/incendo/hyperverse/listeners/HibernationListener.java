@@ -0,0 +1,103 @@
+//
+//  Hyperverse - A minecraft world management plugin
+//
+//  This program is free software: you can redistribute it and/or modify
+//  it under the terms of the GNU General Public License as published by
+//  the Free Software Foundation, either version 3 of the License, or
+//  (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful,
+//  but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  GNU General Public License for more details.
+//
+//  You should have received a copy of the GNU General Public License
+//  along with this program. If not, see <http://www.gnu.org/licenses/>.
+//
+
+package org.incendo.hyperverse.listeners;
+
+import com.google.inject.Inject;
+import org.bukkit.World;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.player.PlayerTeleportEvent;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.incendo.hyperverse.flags.implementation.HibernateFlag;
+import org.incendo.hyperverse.world.HyperWorld;
+import org.incendo.hyperverse.world.WorldManager;
+
+import java.util.Objects;
+
+/**
+ * Puts worlds with the {@link HibernateFlag hibernate flag} into hibernation once the
+ * last player leaves, and wakes them up before a player enters
+ */
+public final class HibernationListener implements Listener {
+
+    private final WorldManager worldManager;
+    private final Plugin plugin;
+    private final BukkitScheduler scheduler;
+
+    @Inject
+    public HibernationListener(
+            final @NonNull WorldManager worldManager,
+            final @NonNull Plugin plugin,
+            final @NonNull BukkitScheduler scheduler
+    ) {
+        this.worldManager = Objects.requireNonNull(worldManager);
+        this.plugin = Objects.requireNonNull(plugin);
+        this.scheduler = Objects.requireNonNull(scheduler);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerTeleport(final @NonNull PlayerTeleportEvent event) {
+        // Wake the world before the player arrives, so that they never see it frozen
+        if (event.getTo().getWorld() != null && !event.getTo().getWorld().equals(event.getFrom().getWorld())) {
+            this.wake(event.getTo().getWorld());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerChangedWorld(final @NonNull PlayerChangedWorldEvent event) {
+        this.wake(event.getPlayer().getWorld());
+        this.scheduleHibernation(event.getFrom());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(final @NonNull PlayerJoinEvent event) {
+        this.wake(event.getPlayer().getWorld());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(final @NonNull PlayerQuitEvent event) {
+        this.scheduleHibernation(event.getPlayer().getWorld());
+    }
+
+    private void wake(final @NonNull World world) {
+        final HyperWorld hyperWorld = this.worldManager.getWorld(world);
+        if (hyperWorld != null) {
+            hyperWorld.wake();
+        }
+    }
+
+    private void scheduleHibernation(final @NonNull World world) {
+        final HyperWorld hyperWorld = this.worldManager.getWorld(world);
+        if (hyperWorld == null || !hyperWorld.getFlag(HibernateFlag.class)) {
+            return;
+        }
+        // The player is still counted as being in the world while the event is handled
+        this.scheduler.runTask(this.plugin, () -> {
+            if (hyperWorld.getFlag(HibernateFlag.class)) {
+                hyperWorld.hibernate();
+            }
+        });
+    }
+
+}
@@ -25,9 +25,8 @@ import org.bukkit.event.Listener;
 import org.bukkit.event.entity.CreatureSpawnEvent;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.incendo.hyperverse.flags.implementation.AdvancementFlag;
-import org.incendo.hyperverse.flags.implementation.CreatureSpawnFlag;
-import org.incendo.hyperverse.flags.implementation.MobSpawnFlag;
 import org.incendo.hyperverse.world.HyperWorld;
+import org.incendo.hyperverse.world.SpawnPolicy;
 import org.incendo.hyperverse.world.WorldManager;
 
 public final class PaperListener implements Listener {
@@ -44,10 +43,12 @@ public final class PaperListener implements Listener {
         if (hyperWorld == null) {
             return;
         }
-        if (hyperWorld.getFlag(CreatureSpawnFlag.class)) {
+        // Natural spawns are normally suppressed through the world spawn limits,
+        // so this only catches spawns that get past those
+        if (event.getReason() != CreatureSpawnEvent.SpawnReason.NATURAL) {
             return;
         }
-        if (event.getReason() != CreatureSpawnEvent.SpawnReason.NATURAL) {
+        if (!hyperWorld.getSpawnPolicy().shouldCancel(event.getType())) {
             return;
         }
         event.setCancelled(true);
@@ -60,7 +61,8 @@ public final class PaperListener implements Listener {
         if (hyperWorld == null) {
             return;
         }
-        if (hyperWorld.getFlag(MobSpawnFlag.class)) {
+        final SpawnPolicy spawnPolicy = hyperWorld.getSpawnPolicy();
+        if (spawnPolicy.allowsMonsters() || spawnPolicy.allowsAnimals()) {
             return;
         }
         event.setCancelled(true);
@@ -0,0 +1,89 @@
+//
+//  Hyperverse - A minecraft world management plugin
+//
+//  This program is free software: you can redistribute it and/or modify
+//  it under the terms of the GNU General Public License as published by
+//  the Free Software Foundation, either version 3 of the License, or
+//  (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful,
+//  but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  GNU General Public License for more details.
+//
+//  You should have received a copy of the GNU General Public License
+//  along with this program. If not, see <http://www.gnu.org/licenses/>.
+//
+
+
+package org.incendo.hyperverse.listeners;
+
+import com.google.inject.Inject;
+import org.bukkit.Material;
+import org.bukkit.block.Block;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockExplodeEvent;
+import org.bukkit.event.entity.EntityExplodeEvent;
+import org.bukkit.event.world.PortalCreateEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.incendo.hyperverse.teleportation.PortalIndex;
+
+import java.util.Collection;
+
+/**
+ * Keeps the {@link PortalIndex} up to date
+ */
+public final class PortalListener implements Listener {
+
+    private final PortalIndex portalIndex;
+
+    @Inject
+    public PortalListener(final @NonNull PortalIndex portalIndex) {
+        this.portalIndex = portalIndex;
+    }
+
+    private static boolean isPortalBlock(final @NonNull Block block) {
+        final Material type = block.getType();
+        return type == Material.NETHER_PORTAL || type == Material.OBSIDIAN;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPortalCreate(final @NonNull PortalCreateEvent event) {
+        this.portalIndex.addPortal(event.getWorld(), event.getBlocks());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockBreak(final @NonNull BlockBreakEvent event) {
+        if (isPortalBlock(event.getBlock())) {
+            this.portalIndex.invalidate(event.getBlock());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockExplode(final @NonNull BlockExplodeEvent event) {
+        this.invalidate(event.blockList());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityExplode(final @NonNull EntityExplodeEvent event) {
+        this.invalidate(event.blockList());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onWorldUnload(final @NonNull WorldUnloadEvent event) {
+        this.portalIndex.invalidate(event.getWorld());
+    }
+
+    private void invalidate(final @NonNull Collection<@NonNull Block> blocks) {
+        for (final Block block : blocks) {
+            if (isPortalBlock(block)) {
+                this.portalIndex.invalidate(block);
+            }
+        }
+    }
+
+}
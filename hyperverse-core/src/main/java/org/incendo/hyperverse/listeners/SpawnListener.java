@@ -0,0 +1,133 @@
+//
+//  Hyperverse - A minecraft world management plugin
+//
+//  This program is free software: you can redistribute it and/or modify
+//  it under the terms of the GNU General Public License as published by
+//  the Free Software Foundation, either version 3 of the License, or
+//  (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful,
+//  but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  GNU General Public License for more details.
+//
+//  You should have received a copy of the GNU General Public License
+//  along with this program. If not, see <http://www.gnu.org/licenses/>.
+//
+
+package org.incendo.hyperverse.listeners;
+
+import com.google.inject.Inject;
+import org.bukkit.block.Block;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockBurnEvent;
+import org.bukkit.event.block.BlockExplodeEvent;
+import org.bukkit.event.block.BlockFromToEvent;
+import org.bukkit.event.block.BlockPistonExtendEvent;
+import org.bukkit.event.block.BlockPistonRetractEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.entity.EntityChangeBlockEvent;
+import org.bukkit.event.entity.EntityExplodeEvent;
+import org.bukkit.event.world.SpawnChangeEvent;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.incendo.hyperverse.world.HyperWorld;
+import org.incendo.hyperverse.world.WorldManager;
+
+import java.util.Collection;
+
+/**
+ * Invalidates the cached {@link HyperWorld#getSafeSpawn() safe spawn} of a world
+ * when its spawn is moved, or when blocks around it change
+ */
+public final class SpawnListener implements Listener {
+
+    private final WorldManager worldManager;
+
+    @Inject
+    public SpawnListener(final @NonNull WorldManager worldManager) {
+        this.worldManager = worldManager;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onSpawnChange(final @NonNull SpawnChangeEvent event) {
+        final HyperWorld hyperWorld = this.worldManager.getWorld(event.getWorld());
+        if (hyperWorld != null) {
+            hyperWorld.invalidateSafeSpawn();
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockPlace(final @NonNull BlockPlaceEvent event) {
+        this.invalidate(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockBreak(final @NonNull BlockBreakEvent event) {
+        this.invalidate(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockBurn(final @NonNull BlockBurnEvent event) {
+        this.invalidate(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockFromTo(final @NonNull BlockFromToEvent event) {
+        this.invalidate(event.getToBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityChangeBlock(final @NonNull EntityChangeBlockEvent event) {
+        this.invalidate(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPistonExtend(final @NonNull BlockPistonExtendEvent event) {
+        this.invalidate(event.getBlocks());
+        for (final Block block : event.getBlocks()) {
+            this.invalidate(block.getRelative(event.getDirection()));
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPistonRetract(final @NonNull BlockPistonRetractEvent event) {
+        this.invalidate(event.getBlocks());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockExplode(final @NonNull BlockExplodeEvent event) {
+        this.invalidate(event.blockList());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityExplode(final @NonNull EntityExplodeEvent event) {
+        this.invalidate(event.blockList());
+    }
+
+    private void invalidate(final @NonNull Collection<@NonNull Block> blocks) {
+        if (blocks.isEmpty()) {
+            return;
+        }
+        final HyperWorld hyperWorld = this.worldManager.getWorld(blocks.iterator().next().getWorld());
+        if (hyperWorld == null) {
+            return;
+        }
+        for (final Block block : blocks) {
+            if (hyperWorld.isNearSpawn(block)) {
+                hyperWorld.invalidateSafeSpawn();
+                return;
+            }
+        }
+    }
+
+    private void invalidate(final @NonNull Block block) {
+        final HyperWorld hyperWorld = this.worldManager.getWorld(block.getWorld());
+        if (hyperWorld != null && hyperWorld.isNearSpawn(block)) {
+            hyperWorld.invalidateSafeSpawn();
+        }
+    }
+
+}
@@ -19,6 +19,7 @@ package org.incendo.hyperverse.modules;
 
 import cloud.commandframework.services.ServicePipeline;
 import com.google.inject.AbstractModule;
+import com.google.inject.Injector;
 import com.google.inject.Provides;
 import com.google.inject.Singleton;
 import com.google.inject.assistedinject.FactoryModuleBuilder;
@@ -30,8 +31,8 @@ import org.checkerframework.checker.nullness.qual.NonNull;
 import org.incendo.hyperverse.Hyperverse;
 import org.incendo.hyperverse.configuration.FileHyperConfiguration;
 import org.incendo.hyperverse.configuration.HyperConfiguration;
+import org.incendo.hyperverse.database.DatabaseType;
 import org.incendo.hyperverse.database.HyperDatabase;
-import org.incendo.hyperverse.database.SQLiteDatabase;
 import org.incendo.hyperverse.database.SimpleLocationTransformer;
 import org.incendo.hyperverse.events.SimpleHyperEventFactory;
 import org.incendo.hyperverse.flags.FlagContainer;
@@ -40,6 +41,8 @@ import org.incendo.hyperverse.flags.WorldFlagContainer;
 import org.incendo.hyperverse.platform.PlatformProvider;
 import org.incendo.hyperverse.platform.PlatformProvisionException;
 import org.incendo.hyperverse.platform.unsupported.NMSImpl;
+import org.incendo.hyperverse.profiles.ProfileStorage;
+import org.incendo.hyperverse.profiles.ProfileStorageType;
 import org.incendo.hyperverse.teleportation.SimpleTeleportationManager;
 import org.incendo.hyperverse.teleportation.TeleportationManager;
 import org.incendo.hyperverse.util.HyperConfigShouldGroupProfiles;
@@ -97,7 +100,6 @@ public final class HyperverseModule extends AbstractModule {
         bind(NMS.class).to(nmsAdapter).in(Singleton.class);
         bind(Plugin.class).toInstance(this.hyperverse);
         bind(Hyperverse.class).toInstance(this.hyperverse);
-        bind(HyperDatabase.class).to(SQLiteDatabase.class).in(Singleton.class);
         bind(PersistentLocationTransformer.class).to(SimpleLocationTransformer.class).in(Singleton.class);
         bind(HyperConfiguration.class).to(FileHyperConfiguration.class).in(Singleton.class);
         bind(WorldManager.class).to(SimpleWorldManager.class).in(Singleton.class);
@@ -126,4 +128,28 @@ public final class HyperverseModule extends AbstractModule {
         return configuration.shouldGroupProfiles();
     }
 
+    @Provides
+    @Singleton
+    HyperDatabase provideDatabase(final @NonNull HyperConfiguration configuration, final @NonNull Injector injector) {
+        final DatabaseType databaseType = DatabaseType.fromString(configuration.getDatabaseType()).orElseGet(() -> {
+            this.logger.warning(String.format("Unknown database type '%s'. Falling back to %s.",
+                    configuration.getDatabaseType(), DatabaseType.SQLITE.getName()
+            ));
+            return DatabaseType.SQLITE;
+        });
+        return injector.getInstance(databaseType.getImplementation());
+    }
+
+    @Provides
+    @Singleton
+    ProfileStorage provideProfileStorage(final @NonNull HyperConfiguration configuration, final @NonNull Injector injector) {
+        final ProfileStorageType storageType = ProfileStorageType.fromString(configuration.getProfileStorage()).orElseGet(() -> {
+            this.logger.warning(String.format("Unknown profile storage type '%s'. Falling back to %s.",
+                    configuration.getProfileStorage(), ProfileStorageType.FILE.getName()
+            ));
+            return ProfileStorageType.FILE;
+        });
+        return injector.getInstance(storageType.getImplementation());
+    }
+
 }
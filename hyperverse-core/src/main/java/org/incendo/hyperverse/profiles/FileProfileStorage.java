@@ -0,0 +1,99 @@
+//
+//  Hyperverse - A minecraft world management plugin
+//
+//  This program is free software: you can redistribute it and/or modify
+//  it under the terms of the GNU General Public License as published by
+//  the Free Software Foundation, either version 3 of the License, or
+//  (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful,
+//  but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  GNU General Public License for more details.
+//
+//  You should have received a copy of the GNU General Public License
+//  along with this program. If not, see <http://www.gnu.org/licenses/>.
+//
+
+
+package org.incendo.hyperverse.profiles;
+
+import com.google.inject.Inject;
+import org.bukkit.plugin.Plugin;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+
+/**
+ * Profile storage that keeps every profile in its own
+ * file, at {@code profiles/<group>/<uuid>.nbt}
+ */
+public final class FileProfileStorage implements ProfileStorage {
+
+    private static final String EXTENSION = ".nbt";
+
+    private final Path directory;
+
+    @Inject
+    public FileProfileStorage(final @NonNull Plugin plugin) {
+        this.directory = plugin.getDataFolder().toPath().resolve("profiles");
+    }
+
+    @Override
+    public byte @Nullable [] read(final @NonNull UUID uuid, final @NonNull String group) throws IOException {
+        final Path file = this.getFile(uuid, group);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        return Files.readAllBytes(file);
+    }
+
+    @Override
+    public void write(final @NonNull UUID uuid, final @NonNull String group, final byte @NonNull [] data) throws IOException {
+        final Path file = this.getFile(uuid, group);
+        Files.createDirectories(file.getParent());
+        final Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(temporaryFile, data);
+        Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public void exportProfiles(final @NonNull ProfileConsumer consumer) throws IOException {
+        if (!Files.isDirectory(this.directory)) {
+            return;
+        }
+        try (final DirectoryStream<Path> groups = Files.newDirectoryStream(this.directory, Files::isDirectory)) {
+            for (final Path group : groups) {
+                try (final DirectoryStream<Path> files = Files.newDirectoryStream(group, "*" + EXTENSION)) {
+                    for (final Path file : files) {
+                        final String fileName = file.getFileName().toString();
+                        final UUID uuid;
+                        try {
+                            uuid = UUID.fromString(fileName.substring(0, fileName.length() - EXTENSION.length()));
+                        } catch (final IllegalArgumentException e) {
+                            // Not a profile
+                            continue;
+                        }
+                        consumer.accept(uuid, group.getFileName().toString(), Files.readAllBytes(file));
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        // Every profile is written straight to its own file
+    }
+
+    private @NonNull Path getFile(final @NonNull UUID uuid, final @NonNull String group) {
+        return this.directory.resolve(group).resolve(uuid + EXTENSION);
+    }
+
+}
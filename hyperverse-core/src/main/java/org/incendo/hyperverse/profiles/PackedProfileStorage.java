@@ -0,0 +1,173 @@
+//
+//  Hyperverse - A minecraft world management plugin
+//
+//  This program is free software: you can redistribute it and/or modify
+//  it under the terms of the GNU General Public License as published by
+//  the Free Software Foundation, either version 3 of the License, or
+//  (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful,
+//  but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  GNU General Public License for more details.
+//
+//  You should have received a copy of the GNU General Public License
+//  along with this program. If not, see <http://www.gnu.org/licenses/>.
+//
+
+
+package org.incendo.hyperverse.profiles;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import org.bukkit.plugin.Plugin;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.incendo.hyperverse.configuration.HyperConfiguration;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Profile storage that packs all profiles in a group into a
+ * single {@link ProfileContainer container file}, at {@code profiles/<group>.profiles}.
+ * <p>
+ * Containers are opened when their group is first used, and are compacted
+ * in the background once most of their space is taken up by old profiles.
+ */
+public final class PackedProfileStorage implements ProfileStorage {
+
+    private static final long COMPACTION_INTERVAL = 5L;
+
+    private final Map<String, ProfileContainer> containers = new ConcurrentHashMap<>();
+    private final Path directory;
+    private final Logger logger;
+    private final HyperConfiguration configuration;
+    private final ScheduledExecutorService compactor;
+
+    @Inject
+    public PackedProfileStorage(final @NonNull Plugin plugin, final @NonNull HyperConfiguration configuration) {
+        this.directory = plugin.getDataFolder().toPath().resolve("profiles");
+        this.logger = plugin.getLogger();
+        this.configuration = configuration;
+        this.compactor = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("Hyperverse Profile Compactor").setDaemon(true).build()
+        );
+        this.compactor.scheduleWithFixedDelay(this::compactIfNeeded, COMPACTION_INTERVAL, COMPACTION_INTERVAL,
+                TimeUnit.MINUTES
+        );
+    }
+
+    @Override
+    public byte @Nullable [] read(final @NonNull UUID uuid, final @NonNull String group) throws IOException {
+        return this.getContainer(group).read(uuid);
+    }
+
+    @Override
+    public void write(final @NonNull UUID uuid, final @NonNull String group, final byte @NonNull [] data) throws IOException {
+        this.getContainer(group).write(uuid, data);
+    }
+
+    @Override
+    public void exportProfiles(final @NonNull ProfileConsumer consumer) throws IOException {
+        if (!Files.isDirectory(this.directory)) {
+            return;
+        }
+        final List<String> groups = new ArrayList<>();
+        try (final DirectoryStream<Path> files = Files.newDirectoryStream(this.directory,
+                "*" + ProfileContainer.EXTENSION
+        )) {
+            for (final Path file : files) {
+                final String fileName = file.getFileName().toString();
+                groups.add(fileName.substring(0, fileName.length() - ProfileContainer.EXTENSION.length()));
+            }
+        }
+        for (final String group : groups) {
+            this.getContainer(group).exportProfiles((uuid, data) -> consumer.accept(uuid, group, data));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        // Let a running compaction finish, rather than interrupting it, as that would close the container
+        this.compactor.shutdown();
+        try {
+            if (!this.compactor.awaitTermination(1L, TimeUnit.MINUTES)) {
+                this.logger.warning("Timed out waiting for the profile compactor to finish");
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        IOException exception = null;
+        for (final String group : new ArrayList<>(this.containers.keySet())) {
+            final ProfileContainer container = this.containers.remove(group);
+            try {
+                container.close();
+            } catch (final IOException e) {
+                if (exception == null) {
+                    exception = e;
+                } else {
+                    exception.addSuppressed(e);
+                }
+            }
+        }
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    /**
+     * Compact all open containers that are mostly made up of old profiles
+     */
+    private void compactIfNeeded() {
+        for (final Map.Entry<String, ProfileContainer> entry : this.containers.entrySet()) {
+            final ProfileContainer container = entry.getValue();
+            if (!container.needsCompaction()) {
+                continue;
+            }
+            final long start = System.currentTimeMillis();
+            final long size = container.getSize();
+            try {
+                container.compact();
+            } catch (final IOException e) {
+                this.logger.log(Level.SEVERE, String.format("Failed to compact the profile group %s", entry.getKey()), e);
+                continue;
+            }
+            if (this.configuration.shouldPrintDebug()) {
+                this.logger.info(String.format("(Debug) Compacted the profile group %s in %dms (%d profiles, %d KB -> %d KB)",
+                        entry.getKey(), System.currentTimeMillis() - start, container.getProfileCount(),
+                        size / 1024, container.getSize() / 1024
+                ));
+            }
+        }
+    }
+
+    private @NonNull ProfileContainer getContainer(final @NonNull String group) throws IOException {
+        try {
+            return this.containers.computeIfAbsent(group, key -> {
+                try {
+                    Files.createDirectories(this.directory);
+                    return ProfileContainer.open(this.directory.resolve(key + ProfileContainer.EXTENSION), this.logger);
+                } catch (final IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (final UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+}
@@ -0,0 +1,527 @@
+//
+//  Hyperverse - A minecraft world management plugin
+//
+//  This program is free software: you can redistribute it and/or modify
+//  it under the terms of the GNU General Public License as published by
+//  the Free Software Foundation, either version 3 of the License, or
+//  (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful,
+//  but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  GNU General Public License for more details.
+//
+//  You should have received a copy of the GNU General Public License
+//  along with this program. If not, see <http://www.gnu.org/licenses/>.
+//
+
+
+package org.incendo.hyperverse.profiles;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Container file that holds every profile in a single profile group.
+ * <p>
+ * Profiles are appended to the container as checksummed records, and an
+ * in-memory index maps each player to the offset of their most recent record.
+ * All reads and writes are positional, so readers never block each other.
+ * Records that have been superseded are removed by {@link #compact()}, which
+ * copies the live records into a new container that atomically replaces the
+ * old one. Most of the copying is done without blocking reads or writes.
+ * <p>
+ * The index is checkpointed to a separate file whenever the container is closed
+ * or compacted, so that only the records that were appended after the checkpoint
+ * have to be replayed when the container is opened. Replaying stops at the first
+ * incomplete or corrupt record, which is how writes that were interrupted by a crash
+ * are discarded.
+ */
+final class ProfileContainer {
+
+    static final String EXTENSION = ".profiles";
+
+    private static final int MAGIC = 0x48565043; // HVPC
+    private static final int INDEX_MAGIC = 0x48565049; // HVPI
+    private static final int VERSION = 1;
+    // Magic, version and container ID
+    private static final int HEADER_SIZE = 2 * Integer.BYTES + Long.BYTES;
+    // UUID and data length
+    private static final int RECORD_HEADER_SIZE = 2 * Long.BYTES + Integer.BYTES;
+    private static final int CHECKSUM_SIZE = Integer.BYTES;
+    // Magic, version, container ID, checkpoint position and entry count
+    private static final int INDEX_HEADER_SIZE = 2 * Integer.BYTES + 2 * Long.BYTES + Integer.BYTES;
+    // UUID, record offset and data length
+    private static final int INDEX_ENTRY_SIZE = 3 * Long.BYTES + Integer.BYTES;
+    private static final long COMPACTION_MIN_DEAD_BYTES = 8L << 20;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object compactionLock = new Object();
+    private final Map<UUID, Entry> index = new HashMap<>();
+    private final Path file;
+    private final Path indexFile;
+    private final Path compactionFile;
+    private final Logger logger;
+    private FileChannel channel;
+    private long id;
+    private long position;
+    private long liveBytes;
+
+    private ProfileContainer(final @NonNull Path file, final @NonNull Logger logger) {
+        this.file = file;
+        this.indexFile = file.resolveSibling(file.getFileName() + ".index");
+        this.compactionFile = file.resolveSibling(file.getFileName() + ".compact");
+        this.logger = logger;
+    }
+
+    /**
+     * Open a container, creating it if it doesn't exist
+     *
+     * @param file   Container file
+     * @param logger Logger used to report discarded data
+     * @return Opened container
+     * @throws IOException If the container could not be opened
+     */
+    static @NonNull ProfileContainer open(final @NonNull Path file, final @NonNull Logger logger) throws IOException {
+        final ProfileContainer container = new ProfileContainer(file, logger);
+        // A compaction that didn't finish. The container is still intact, as it is only replaced once
+        // the compacted file is complete
+        Files.deleteIfExists(container.compactionFile);
+        container.channel = openChannel(file);
+        try {
+            container.recover();
+        } catch (final IOException e) {
+            container.channel.close();
+            throw e;
+        }
+        return container;
+    }
+
+    private static @NonNull FileChannel openChannel(final @NonNull Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private static int getRecordLength(final int dataLength) {
+        return RECORD_HEADER_SIZE + dataLength + CHECKSUM_SIZE;
+    }
+
+    private static void readFully(
+            final @NonNull FileChannel channel,
+            final @NonNull ByteBuffer buffer,
+            final long position
+    ) throws IOException {
+        long offset = position;
+        while (buffer.hasRemaining()) {
+            final int read = channel.read(buffer, offset);
+            if (read < 0) {
+                throw new EOFException(String.format("Unexpected end of profile container at offset %d", offset));
+            }
+            offset += read;
+        }
+        buffer.flip();
+    }
+
+    private static void writeFully(
+            final @NonNull FileChannel channel,
+            final @NonNull ByteBuffer buffer,
+            final long position
+    ) throws IOException {
+        long offset = position;
+        while (buffer.hasRemaining()) {
+            offset += channel.write(buffer, offset);
+        }
+    }
+
+    /**
+     * Append a region of the source channel to the target channel
+     */
+    private static void transferFully(
+            final @NonNull FileChannel source,
+            final long position,
+            final long count,
+            final @NonNull FileChannel target
+    ) throws IOException {
+        long transferred = 0;
+        while (transferred < count) {
+            final long written = source.transferTo(position + transferred, count - transferred, target);
+            if (written <= 0) {
+                throw new EOFException(String.format("Unexpected end of profile container at offset %d",
+                        position + transferred
+                ));
+            }
+            transferred += written;
+        }
+    }
+
+    private static int checksum(final @NonNull ByteBuffer buffer, final int length) {
+        final CRC32 crc = new CRC32();
+        crc.update(buffer.slice(0, length));
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Read the profile of a player
+     *
+     * @param uuid Player UUID
+     * @return Compressed profile, or {@code null} if the player has no profile in the container
+     * @throws IOException If the profile could not be read
+     */
+    byte @Nullable [] read(final @NonNull UUID uuid) throws IOException {
+        this.lock.readLock().lock();
+        try {
+            final Entry entry = this.index.get(uuid);
+            if (entry == null) {
+                return null;
+            }
+            return this.readRecord(this.channel, entry);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Append the profile of a player, replacing their previous profile
+     *
+     * @param uuid Player UUID
+     * @param data Compressed profile
+     * @throws IOException If the profile could not be written
+     */
+    void write(final @NonNull UUID uuid, final byte @NonNull [] data) throws IOException {
+        final int recordLength = getRecordLength(data.length);
+        final ByteBuffer record = ByteBuffer.allocate(recordLength);
+        record.putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits()).putInt(data.length).put(data);
+        record.putInt(checksum(record, recordLength - CHECKSUM_SIZE));
+        record.flip();
+        this.lock.writeLock().lock();
+        try {
+            writeFully(this.channel, record, this.position);
+            this.apply(uuid, new Entry(this.position, data.length));
+            this.position += recordLength;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Pass every profile in the container to a consumer
+     *
+     * @param consumer Consumer that receives the UUID and the compressed profile
+     * @throws IOException If the profiles could not be read
+     */
+    void exportProfiles(final @NonNull RecordConsumer consumer) throws IOException {
+        final Map<UUID, Entry> snapshot;
+        this.lock.readLock().lock();
+        try {
+            snapshot = new HashMap<>(this.index);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+        for (final UUID uuid : snapshot.keySet()) {
+            final byte[] data = this.read(uuid);
+            if (data != null) {
+                consumer.accept(uuid, data);
+            }
+        }
+    }
+
+    /**
+     * Check whether enough of the container is taken up by superseded
+     * records for a compaction to be worthwhile
+     *
+     * @return {@code true} if the container should be compacted
+     */
+    boolean needsCompaction() {
+        this.lock.readLock().lock();
+        try {
+            final long deadBytes = this.getDeadBytes();
+            return deadBytes >= COMPACTION_MIN_DEAD_BYTES && deadBytes > this.liveBytes;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Rewrite the container so that it only contains live records. The live
+     * records are copied without holding the container lock. Only the records that
+     * were written during the copy, and the swap itself, block readers and writers
+     *
+     * @throws IOException If the container could not be rewritten
+     */
+    void compact() throws IOException {
+        synchronized (this.compactionLock) {
+            final Map<UUID, Entry> snapshot;
+            final FileChannel source;
+            this.lock.readLock().lock();
+            try {
+                snapshot = new HashMap<>(this.index);
+                source = this.channel;
+            } finally {
+                this.lock.readLock().unlock();
+            }
+            final long compactedId = ThreadLocalRandom.current().nextLong();
+            final Map<UUID, Entry> compactedIndex = new HashMap<>(snapshot.size());
+            try (final FileChannel output = FileChannel.open(this.compactionFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE
+            )) {
+                long outputPosition = this.writeHeader(output, compactedId);
+                output.position(outputPosition);
+                // The container is append-only, so the snapshotted records can't change while they are copied
+                for (final Map.Entry<UUID, Entry> entry : snapshot.entrySet()) {
+                    final Entry record = entry.getValue();
+                    final int recordLength = getRecordLength(record.length);
+                    transferFully(source, record.offset, recordLength, output);
+                    compactedIndex.put(entry.getKey(), new Entry(outputPosition, record.length));
+                    outputPosition += recordLength;
+                }
+                this.lock.writeLock().lock();
+                try {
+                    // Copy the records that were written while the snapshot was being copied
+                    long compactedLiveBytes = 0;
+                    for (final Map.Entry<UUID, Entry> entry : this.index.entrySet()) {
+                        final Entry record = entry.getValue();
+                        final int recordLength = getRecordLength(record.length);
+                        compactedLiveBytes += recordLength;
+                        if (snapshot.get(entry.getKey()) == record) {
+                            continue;
+                        }
+                        transferFully(this.channel, record.offset, recordLength, output);
+                        compactedIndex.put(entry.getKey(), new Entry(outputPosition, record.length));
+                        outputPosition += recordLength;
+                    }
+                    output.force(true);
+                    this.channel.close();
+                    try {
+                        Files.move(this.compactionFile, this.file, StandardCopyOption.REPLACE_EXISTING,
+                                StandardCopyOption.ATOMIC_MOVE
+                        );
+                    } finally {
+                        // Either the compacted container, or the original one if it could not be replaced
+                        this.channel = openChannel(this.file);
+                    }
+                    this.index.clear();
+                    this.index.putAll(compactedIndex);
+                    this.id = compactedId;
+                    this.position = outputPosition;
+                    this.liveBytes = compactedLiveBytes;
+                    this.writeIndex();
+                } finally {
+                    this.lock.writeLock().unlock();
+                }
+            } finally {
+                Files.deleteIfExists(this.compactionFile);
+            }
+        }
+    }
+
+    /**
+     * Checkpoint the index and close the container
+     *
+     * @throws IOException If the container could not be closed
+     */
+    void close() throws IOException {
+        synchronized (this.compactionLock) {
+            this.lock.writeLock().lock();
+            try {
+                this.channel.force(true);
+                this.writeIndex();
+                this.channel.close();
+            } finally {
+                this.lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Get the number of profiles in the container
+     *
+     * @return Number of profiles
+     */
+    int getProfileCount() {
+        this.lock.readLock().lock();
+        try {
+            return this.index.size();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the size of the container
+     *
+     * @return Container size, in bytes
+     */
+    long getSize() {
+        this.lock.readLock().lock();
+        try {
+            return this.position;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    private long getDeadBytes() {
+        return this.position - HEADER_SIZE - this.liveBytes;
+    }
+
+    private byte @NonNull [] readRecord(final @NonNull FileChannel channel, final @NonNull Entry entry) throws IOException {
+        final int recordLength = getRecordLength(entry.length);
+        final ByteBuffer record = ByteBuffer.allocate(recordLength);
+        readFully(channel, record, entry.offset);
+        if (record.getInt(recordLength - CHECKSUM_SIZE) != checksum(record, recordLength - CHECKSUM_SIZE)) {
+            throw new IOException(String.format("Corrupt profile record at offset %d in %s", entry.offset, this.file));
+        }
+        final byte[] data = new byte[entry.length];
+        record.get(RECORD_HEADER_SIZE, data);
+        return data;
+    }
+
+    private long writeHeader(final @NonNull FileChannel channel, final long id) throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).putLong(id);
+        header.flip();
+        writeFully(channel, header, 0L);
+        return HEADER_SIZE;
+    }
+
+    /**
+     * Load the index checkpoint, and replay everything that was written after
+     * it. Everything after the first incomplete or corrupt record is discarded
+     */
+    private void recover() throws IOException {
+        final long size = this.channel.size();
+        if (size < HEADER_SIZE) {
+            // New container, or one that was never completely created
+            this.channel.truncate(0L);
+            this.id = ThreadLocalRandom.current().nextLong();
+            this.position = this.writeHeader(this.channel, this.id);
+            this.channel.force(true);
+            return;
+        }
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(this.channel, header, 0L);
+        if (header.getInt() != MAGIC) {
+            throw new IOException(String.format("%s is not a valid profile container", this.file));
+        }
+        final int version = header.getInt();
+        if (version != VERSION) {
+            throw new IOException(String.format("Unsupported profile container version: %d", version));
+        }
+        this.id = header.getLong();
+        long offset = this.readIndex(size);
+        final ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        while (offset + RECORD_HEADER_SIZE + CHECKSUM_SIZE <= size) {
+            recordHeader.clear();
+            readFully(this.channel, recordHeader, offset);
+            final UUID uuid = new UUID(recordHeader.getLong(), recordHeader.getLong());
+            final int length = recordHeader.getInt();
+            if (length < 0 || offset + getRecordLength(length) > size) {
+                break;
+            }
+            final Entry entry = new Entry(offset, length);
+            try {
+                this.readRecord(this.channel, entry);
+            } catch (final IOException e) {
+                break;
+            }
+            this.apply(uuid, entry);
+            offset += getRecordLength(length);
+        }
+        this.position = offset;
+        // Anything after the last valid record was never completely written
+        if (offset < size) {
+            this.channel.truncate(offset);
+            this.logger.warning(String.format("The profile container %s was not closed properly. Discarded %d bytes of incomplete data.",
+                    this.file.getFileName(), size - offset
+            ));
+        }
+    }
+
+    /**
+     * Load the index checkpoint, if there is one that belongs to the container
+     *
+     * @return Position up to which the container is covered by the checkpoint
+     */
+    private long readIndex(final long size) throws IOException {
+        if (!Files.exists(this.indexFile)) {
+            return HEADER_SIZE;
+        }
+        final ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(this.indexFile));
+        if (buffer.capacity() < INDEX_HEADER_SIZE + CHECKSUM_SIZE || buffer.getInt() != INDEX_MAGIC
+                || buffer.getInt() != VERSION || buffer.getLong() != this.id) {
+            // Belongs to a container that has since been replaced
+            return HEADER_SIZE;
+        }
+        final long checkpoint = buffer.getLong();
+        final int count = buffer.getInt();
+        final int checksumOffset = buffer.capacity() - CHECKSUM_SIZE;
+        if (checkpoint < HEADER_SIZE || checkpoint > size || count < 0
+                || (long) INDEX_HEADER_SIZE + (long) count * INDEX_ENTRY_SIZE != checksumOffset
+                || buffer.getInt(checksumOffset) != checksum(buffer, checksumOffset)) {
+            return HEADER_SIZE;
+        }
+        for (int i = 0; i < count; i++) {
+            this.apply(new UUID(buffer.getLong(), buffer.getLong()), new Entry(buffer.getLong(), buffer.getInt()));
+        }
+        return checkpoint;
+    }
+
+    private void writeIndex() throws IOException {
+        final int checksumOffset = INDEX_HEADER_SIZE + this.index.size() * INDEX_ENTRY_SIZE;
+        final ByteBuffer buffer = ByteBuffer.allocate(checksumOffset + CHECKSUM_SIZE);
+        buffer.putInt(INDEX_MAGIC).putInt(VERSION).putLong(this.id).putLong(this.position).putInt(this.index.size());
+        for (final Map.Entry<UUID, Entry> entry : this.index.entrySet()) {
+            buffer.putLong(entry.getKey().getMostSignificantBits()).putLong(entry.getKey().getLeastSignificantBits());
+            buffer.putLong(entry.getValue().offset).putInt(entry.getValue().length);
+        }
+        buffer.putInt(checksum(buffer, checksumOffset));
+        final Path temporaryFile = this.indexFile.resolveSibling(this.indexFile.getFileName() + ".tmp");
+        Files.write(temporaryFile, buffer.array());
+        Files.move(temporaryFile, this.indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void apply(final @NonNull UUID uuid, final @NonNull Entry entry) {
+        final Entry previous = this.index.put(uuid, entry);
+        if (previous != null) {
+            this.liveBytes -= getRecordLength(previous.length);
+        }
+        this.liveBytes += getRecordLength(entry.length);
+    }
+
+    /**
+     * Receives the records of a container
+     */
+    @FunctionalInterface
+    interface RecordConsumer {
+
+        void accept(@NonNull UUID uuid, byte @NonNull [] data) throws IOException;
+
+    }
+
+    private static final class Entry {
+
+        private final long offset;
+        private final int length;
+
+        private Entry(final long offset, final int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+
+    }
+
+}
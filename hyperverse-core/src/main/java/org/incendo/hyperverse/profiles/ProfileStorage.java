@@ -0,0 +1,89 @@
+//
+//  Hyperverse - A minecraft world management plugin
+//
+//  This program is free software: you can redistribute it and/or modify
+//  it under the terms of the GNU General Public License as published by
+//  the Free Software Foundation, either version 3 of the License, or
+//  (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful,
+//  but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  GNU General Public License for more details.
+//
+//  You should have received a copy of the GNU General Public License
+//  along with this program. If not, see <http://www.gnu.org/licenses/>.
+//
+
+
+package org.incendo.hyperverse.profiles;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Backend that grouped player profiles are stored in. Profiles
+ * are stored as compressed NBT, and are identified by the player
+ * UUID and the name of the profile group
+ */
+public interface ProfileStorage {
+
+    /**
+     * Read a stored profile
+     *
+     * @param uuid  Player UUID
+     * @param group Profile group
+     * @return Compressed profile, or {@code null} if the player has no profile in the group
+     * @throws IOException If the profile could not be read
+     */
+    byte @Nullable [] read(@NonNull UUID uuid, @NonNull String group) throws IOException;
+
+    /**
+     * Store a profile, replacing any profile that is
+     * already stored for the player in the group
+     *
+     * @param uuid  Player UUID
+     * @param group Profile group
+     * @param data  Compressed profile
+     * @throws IOException If the profile could not be written
+     */
+    void write(@NonNull UUID uuid, @NonNull String group, byte @NonNull [] data) throws IOException;
+
+    /**
+     * Pass every stored profile to a consumer. This is used
+     * to copy profiles between storage backends
+     *
+     * @param consumer Consumer that receives the profiles
+     * @throws IOException If the profiles could not be read
+     */
+    void exportProfiles(@NonNull ProfileConsumer consumer) throws IOException;
+
+    /**
+     * Release all resources held by the storage
+     *
+     * @throws IOException If the storage could not be closed
+     */
+    void close() throws IOException;
+
+    /**
+     * Receives profiles that are exported from a storage
+     */
+    @FunctionalInterface
+    interface ProfileConsumer {
+
+        /**
+         * Accept a stored profile
+         *
+         * @param uuid  Player UUID
+         * @param group Profile group
+         * @param data  Compressed profile
+         * @throws IOException If the profile could not be handled
+         */
+        void accept(@NonNull UUID uuid, @NonNull String group, byte @NonNull [] data) throws IOException;
+
+    }
+
+}
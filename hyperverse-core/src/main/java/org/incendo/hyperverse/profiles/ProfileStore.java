@@ -0,0 +1,460 @@
+//
+//  Hyperverse - A minecraft world management plugin
+//
+//  This program is free software: you can redistribute it and/or modify
+//  it under the terms of the GNU General Public License as published by
+//  the Free Software Foundation, either version 3 of the License, or
+//  (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful,
+//  but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  GNU General Public License for more details.
+//
+//  You should have received a copy of the GNU General Public License
+//  along with this program. If not, see <http://www.gnu.org/licenses/>.
+//
+
+package org.incendo.hyperverse.profiles;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.incendo.hyperverse.configuration.HyperConfiguration;
+import org.incendo.hyperverse.util.NMS;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Store for grouped player profiles, that sits between the NMS player data methods
+ * and the {@link ProfileStorage profile storage}.
+ * <p>
+ * Profiles are kept in memory as compressed NBT, in a cache that holds at most
+ * {@link HyperConfiguration#getProfileCacheSize()} profiles. Writes are delayed by
+ * {@link HyperConfiguration#getProfileWriteDelay()} milliseconds, and all writes of the
+ * same profile within that window are merged into a single disk write. A profile
+ * that hasn't been written yet is always served from memory.
+ * <p>
+ * Profiles can also be {@link #prefetchProfile(UUID, String) prefetched} when a group
+ * switch is likely. Prefetched profiles are decoded right away, so that they only have to
+ * be applied once the switch happens. They are kept outside of the cache, so that switches
+ * that never happen don't push out other profiles, and are dropped once they have been
+ * unused for {@link HyperConfiguration#getProfilePrefetchTtl()} milliseconds.
+ */
+@Singleton
+public final class ProfileStore {
+
+    private final Map<Key, CompletableFuture<byte[]>> pending = new ConcurrentHashMap<>();
+    private final Map<Key, CompletableFuture<byte[]>> cache;
+    private final Map<Key, Prefetch> prefetched = new ConcurrentHashMap<>();
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskReads = new AtomicLong();
+    private final AtomicLong diskWrites = new AtomicLong();
+    private final AtomicLong mergedWrites = new AtomicLong();
+    private final AtomicLong prefetchHits = new AtomicLong();
+    private final AtomicLong prefetchMisses = new AtomicLong();
+    private final ScheduledThreadPoolExecutor executor;
+    private final ProfileStorage storage;
+    private final NMS nms;
+    private final Logger logger;
+    private final long writeDelay;
+    private final long prefetchTtl;
+
+    @Inject
+    public ProfileStore(
+            final @NonNull Plugin plugin,
+            final @NonNull NMS nms,
+            final @NonNull ProfileStorage storage,
+            final @NonNull HyperConfiguration hyperConfiguration
+    ) {
+        this.nms = Objects.requireNonNull(nms);
+        this.storage = Objects.requireNonNull(storage);
+        this.logger = plugin.getLogger();
+        this.writeDelay = Math.max(0L, hyperConfiguration.getProfileWriteDelay());
+        this.prefetchTtl = Math.max(0L, hyperConfiguration.getProfilePrefetchTtl());
+        final int cacheSize = Math.max(1, hyperConfiguration.getProfileCacheSize());
+        this.cache = new LinkedHashMap<Key, CompletableFuture<byte[]>>(16, 0.75F, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Key, CompletableFuture<byte[]>> eldest) {
+                return this.size() > cacheSize;
+            }
+        };
+        this.executor = new ScheduledThreadPoolExecutor(1,
+                new ThreadFactoryBuilder().setNameFormat("Hyperverse Profile Writer").setDaemon(true).build()
+        );
+        this.executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        if (this.prefetchTtl > 0) {
+            this.executor.scheduleWithFixedDelay(this::purgePrefetches, this.prefetchTtl, this.prefetchTtl,
+                    TimeUnit.MILLISECONDS
+            );
+        }
+    }
+
+    /**
+     * Save the profile of a player in a group. The player data is captured
+     * immediately, and must therefore be saved from the main thread
+     *
+     * @param player Player to save
+     * @param group  Profile group
+     */
+    public void saveProfile(final @NonNull Player player, final @NonNull String group) {
+        final Key key = new Key(player.getUniqueId(), group);
+        final CompletableFuture<byte[]> data = this.supply(this.nms.capturePlayerData(player));
+        // The prefetched profile is older than the one being saved
+        this.prefetched.remove(key);
+        if (this.pending.put(key, data) != null) {
+            this.mergedWrites.incrementAndGet();
+        }
+        synchronized (this.cache) {
+            this.cache.put(key, data);
+        }
+        if (!this.executor.isShutdown()) {
+            this.executor.schedule(() -> this.write(key), this.writeDelay, TimeUnit.MILLISECONDS);
+        } else {
+            this.write(key);
+        }
+    }
+
+    /**
+     * Load the profile of a player in a group
+     *
+     * @param uuid  Player UUID
+     * @param group Profile group
+     * @return Future that completes with the profile, decoded using {@link NMS#decodePlayerData(byte[])},
+     *         or {@code null} if the player has no profile in the group
+     */
+    public @NonNull CompletableFuture<@Nullable Object> loadProfile(
+            final @NonNull UUID uuid,
+            final @NonNull String group
+    ) {
+        final Key key = new Key(uuid, group);
+        CompletableFuture<byte[]> data = this.pending.get(key);
+        if (data == null) {
+            synchronized (this.cache) {
+                data = this.cache.get(key);
+            }
+        }
+        // The prefetched profile is used up by the load, even when it isn't needed
+        final Prefetch prefetch = this.prefetched.remove(key);
+        if (data != null) {
+            this.memoryHits.incrementAndGet();
+            return this.decode(data);
+        }
+        final CompletableFuture<byte[]> loaded;
+        final CompletableFuture<Object> decoded;
+        if (prefetch != null) {
+            this.prefetchHits.incrementAndGet();
+            loaded = prefetch.data;
+            decoded = prefetch.decoded;
+        } else {
+            loaded = this.read(key);
+            decoded = this.decode(loaded);
+        }
+        loaded.thenAccept(bytes -> {
+            if (bytes != null) {
+                synchronized (this.cache) {
+                    this.cache.putIfAbsent(key, loaded);
+                }
+            }
+        });
+        return decoded;
+    }
+
+    /**
+     * Start loading the profile of a player in a group, because the player is
+     * likely to switch to the group soon. Prefetching a profile again extends
+     * its lifetime, and profiles that are already in memory are left alone
+     *
+     * @param uuid  Player UUID
+     * @param group Profile group
+     */
+    public void prefetchProfile(final @NonNull UUID uuid, final @NonNull String group) {
+        if (this.prefetchTtl <= 0 || this.executor.isShutdown()) {
+            return;
+        }
+        final Key key = new Key(uuid, group);
+        final long expiry = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.prefetchTtl);
+        final Prefetch existing = this.prefetched.get(key);
+        if (existing != null) {
+            existing.expiry = expiry;
+            return;
+        }
+        if (this.pending.containsKey(key)) {
+            return;
+        }
+        synchronized (this.cache) {
+            if (this.cache.containsKey(key)) {
+                return;
+            }
+        }
+        final CompletableFuture<byte[]> data = this.read(key);
+        this.prefetched.putIfAbsent(key, new Prefetch(data, this.decode(data), expiry));
+    }
+
+    /**
+     * Write all pending profiles to disk, without waiting for their write delay
+     */
+    public void flush() {
+        this.supply(() -> {
+            for (final Key key : new ArrayList<>(this.pending.keySet())) {
+                this.write(key);
+            }
+            return null;
+        }).join();
+    }
+
+    /**
+     * Stop accepting delayed writes, write all pending profiles
+     * to disk and close the underlying storage
+     */
+    public void close() {
+        this.executor.shutdown();
+        try {
+            if (!this.executor.awaitTermination(10L, TimeUnit.SECONDS)) {
+                this.logger.warning("Timed out waiting for the profile writer to finish");
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.flush();
+        try {
+            this.storage.close();
+        } catch (final IOException e) {
+            this.logger.log(Level.SEVERE, "Failed to close the profile storage", e);
+        }
+    }
+
+    /**
+     * Get the storage that profiles are written to
+     *
+     * @return Profile storage
+     */
+    public @NonNull ProfileStorage getStorage() {
+        return this.storage;
+    }
+
+    /**
+     * Get the number of profiles that are waiting to be written
+     *
+     * @return Number of pending writes
+     */
+    public int getPendingWrites() {
+        return this.pending.size();
+    }
+
+    /**
+     * Get the number of profiles that are kept in memory
+     *
+     * @return Number of cached profiles
+     */
+    public int getCachedProfiles() {
+        synchronized (this.cache) {
+            return this.cache.size();
+        }
+    }
+
+    /**
+     * Get the number of profile loads that were served from memory
+     *
+     * @return Number of memory hits
+     */
+    public long getMemoryHits() {
+        return this.memoryHits.get();
+    }
+
+    /**
+     * Get the number of profile loads that had to read from disk
+     *
+     * @return Number of disk reads
+     */
+    public long getDiskReads() {
+        return this.diskReads.get();
+    }
+
+    /**
+     * Get the number of profiles that have been written to disk
+     *
+     * @return Number of disk writes
+     */
+    public long getDiskWrites() {
+        return this.diskWrites.get();
+    }
+
+    /**
+     * Get the number of profile saves that were merged into a later write
+     *
+     * @return Number of merged writes
+     */
+    public long getMergedWrites() {
+        return this.mergedWrites.get();
+    }
+
+    /**
+     * Get the number of profile loads that were served by a prefetched profile
+     *
+     * @return Number of prefetch hits
+     */
+    public long getPrefetchHits() {
+        return this.prefetchHits.get();
+    }
+
+    /**
+     * Get the number of prefetched profiles that expired without being used
+     *
+     * @return Number of prefetch misses
+     */
+    public long getPrefetchMisses() {
+        return this.prefetchMisses.get();
+    }
+
+    /**
+     * Get the number of prefetched profiles that are waiting to be used
+     *
+     * @return Number of prefetched profiles
+     */
+    public int getPrefetchedProfiles() {
+        return this.prefetched.size();
+    }
+
+    private <T> @NonNull CompletableFuture<T> supply(final @NonNull Supplier<T> supplier) {
+        if (this.executor.isShutdown()) {
+            // The plugin is shutting down, so there's no writer thread to hand the work to
+            try {
+                return CompletableFuture.completedFuture(supplier.get());
+            } catch (final RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        return CompletableFuture.supplyAsync(supplier, this.executor);
+    }
+
+    private @NonNull CompletableFuture<byte @Nullable []> read(final @NonNull Key key) {
+        this.diskReads.incrementAndGet();
+        return this.supply(() -> {
+            try {
+                return this.storage.read(key.uuid, key.group);
+            } catch (final IOException e) {
+                throw new UncheckedIOException(String.format("Failed to read profile %s", key), e);
+            }
+        });
+    }
+
+    private @NonNull CompletableFuture<@Nullable Object> decode(final @NonNull CompletableFuture<byte @Nullable []> data) {
+        return data.thenCompose(bytes -> {
+            if (bytes == null) {
+                return CompletableFuture.completedFuture(null);
+            }
+            return this.supply(() -> {
+                try {
+                    return this.nms.decodePlayerData(bytes);
+                } catch (final IOException e) {
+                    throw new UncheckedIOException("Failed to decode a profile", e);
+                }
+            });
+        });
+    }
+
+    private void purgePrefetches() {
+        final long now = System.nanoTime();
+        final Iterator<Prefetch> iterator = this.prefetched.values().iterator();
+        while (iterator.hasNext()) {
+            if (now - iterator.next().expiry >= 0) {
+                iterator.remove();
+                this.prefetchMisses.incrementAndGet();
+            }
+        }
+    }
+
+    private void write(final @NonNull Key key) {
+        final CompletableFuture<byte[]> data = this.pending.get(key);
+        if (data == null) {
+            // Already written by an earlier task
+            return;
+        }
+        try {
+            this.storage.write(key.uuid, key.group, data.join());
+            this.diskWrites.incrementAndGet();
+        } catch (final Exception e) {
+            this.logger.log(Level.SEVERE, String.format("Failed to write profile %s", key), e);
+            // Make sure that the failed profile isn't served from memory
+            synchronized (this.cache) {
+                this.cache.remove(key, data);
+            }
+        } finally {
+            // Only remove the entry if it hasn't been replaced in the meantime
+            this.pending.remove(key, data);
+        }
+    }
+
+    private static final class Prefetch {
+
+        private final CompletableFuture<byte[]> data;
+        private final CompletableFuture<Object> decoded;
+        private volatile long expiry;
+
+        private Prefetch(
+                final @NonNull CompletableFuture<byte[]> data,
+                final @NonNull CompletableFuture<Object> decoded,
+                final long expiry
+        ) {
+            this.data = data;
+            this.decoded = decoded;
+            this.expiry = expiry;
+        }
+
+    }
+
+    private static final class Key {
+
+        private final UUID uuid;
+        private final String group;
+
+        private Key(final @NonNull UUID uuid, final @NonNull String group) {
+            this.uuid = uuid;
+            this.group = group;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || this.getClass() != o.getClass()) {
+                return false;
+            }
+            final Key that = (Key) o;
+            return this.uuid.equals(that.uuid) && this.group.equals(that.group);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.uuid, this.group);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s/%s", this.group, this.uuid);
+        }
+
+    }
+
+}
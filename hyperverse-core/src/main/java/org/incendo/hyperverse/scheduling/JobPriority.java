@@ -0,0 +1,33 @@
+//
+//  Hyperverse - A minecraft world management plugin
+//
+//  This program is free software: you can redistribute it and/or modify
+//  it under the terms of the GNU General Public License as published by
+//  the Free Software Foundation, either version 3 of the License, or
+//  (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful,
+//  but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  GNU General Public License for more details.
+//
+//  You should have received a copy of the GNU General Public License
+//  along with this program. If not, see <http://www.gnu.org/licenses/>.
+//
+
+package org.incendo.hyperverse.scheduling;
+
+/**
+ * Priority of a {@link SlicedJob}. Jobs with a higher priority are
+ * always stepped before jobs with a lower priority
+ */
+public enum JobPriority {
+    /**
+     * Work that a player or command sender is waiting for
+     */
+    INTERACTIVE,
+    /**
+     * Background work that nobody is waiting for
+     */
+    MAINTENANCE
+}
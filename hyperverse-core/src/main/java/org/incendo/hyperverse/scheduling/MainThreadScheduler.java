@@ -0,0 +1,288 @@
+//
+//  Hyperverse - A minecraft world management plugin
+//
+//  This program is free software: you can redistribute it and/or modify
+//  it under the terms of the GNU General Public License as published by
+//  the Free Software Foundation, either version 3 of the License, or
+//  (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful,
+//  but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  GNU General Public License for more details.
+//
+//  You should have received a copy of the GNU General Public License
+//  along with this program. If not, see <http://www.gnu.org/licenses/>.
+//
+
+package org.incendo.hyperverse.scheduling;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import org.bukkit.Server;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.bukkit.scheduler.BukkitTask;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.incendo.hyperverse.configuration.HyperConfiguration;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Runs {@link SlicedJob sliced jobs} on the main thread, a few steps at a time.
+ * <p>
+ * Every tick the scheduler steps the queued jobs until its time budget runs out. The
+ * budget is half of the time that is left of the tick, based on the average tick time
+ * of the server, and it is capped by the configured tick budget. When the server is
+ * behind, the budget drops to a single millisecond. At least one step is performed in
+ * every tick. {@link JobPriority#INTERACTIVE Interactive} jobs are always stepped before
+ * {@link JobPriority#MAINTENANCE maintenance} jobs, and jobs with the same priority
+ * take turns.
+ * <p>
+ * This is only accessed from the main thread, with the exception of the statistics getters
+ */
+@Singleton
+public final class MainThreadScheduler {
+
+    /**
+     * Time (in milliseconds) that the server has to complete a tick
+     */
+    private static final double TICK_TIME = 50.0D;
+    /**
+     * Budget (in nanoseconds) used when the server is behind
+     */
+    private static final long MIN_BUDGET = TimeUnit.MILLISECONDS.toNanos(1L);
+
+    private final Map<JobPriority, Deque<Job>> queues = new EnumMap<>(JobPriority.class);
+    private final Plugin plugin;
+    private final Server server;
+    private final BukkitScheduler scheduler;
+    private final long maxBudget;
+    private BukkitTask task;
+    private volatile int queuedJobs;
+    private volatile long completedJobs;
+    private volatile long lastBudget;
+
+    @Inject
+    public MainThreadScheduler(
+            final @NonNull Plugin plugin,
+            final @NonNull Server server,
+            final @NonNull BukkitScheduler scheduler,
+            final @NonNull HyperConfiguration hyperConfiguration
+    ) {
+        this.plugin = Objects.requireNonNull(plugin);
+        this.server = Objects.requireNonNull(server);
+        this.scheduler = Objects.requireNonNull(scheduler);
+        this.maxBudget = TimeUnit.MILLISECONDS.toNanos(Math.max(1, hyperConfiguration.getTickBudget()));
+        for (final JobPriority priority : JobPriority.values()) {
+            this.queues.put(priority, new ArrayDeque<>());
+        }
+    }
+
+    /**
+     * Queue a job. The job is first stepped on the next tick. This may be called from any thread
+     *
+     * @param name     Name of the job, as shown in the job list
+     * @param priority Job priority
+     * @param job      Job to run
+     * @return Future that completes on the main thread once the job is done, or
+     *         completes exceptionally if a step of the job throws an exception
+     */
+    public @NonNull CompletableFuture<Void> submit(
+            final @NonNull String name,
+            final @NonNull JobPriority priority,
+            final @NonNull SlicedJob job
+    ) {
+        final Job scheduledJob = new Job(Objects.requireNonNull(name), Objects.requireNonNull(priority),
+                Objects.requireNonNull(job)
+        );
+        if (this.server.isPrimaryThread()) {
+            this.enqueue(scheduledJob);
+        } else {
+            this.scheduler.runTask(this.plugin, () -> this.enqueue(scheduledJob));
+        }
+        return scheduledJob.future;
+    }
+
+    private void enqueue(final @NonNull Job job) {
+        this.queues.get(job.priority).addLast(job);
+        this.queuedJobs++;
+        if (this.task == null) {
+            this.task = this.scheduler.runTaskTimer(this.plugin, this::tick, 1L, 1L);
+        }
+    }
+
+    private void tick() {
+        final double tickTime = this.server.getAverageTickTime();
+        final long budget;
+        if (tickTime >= TICK_TIME) {
+            budget = MIN_BUDGET;
+        } else {
+            final long headroom = (long) ((TICK_TIME - tickTime) * TimeUnit.MILLISECONDS.toNanos(1L)) / 2L;
+            budget = Math.max(MIN_BUDGET, Math.min(this.maxBudget, headroom));
+        }
+        this.lastBudget = budget;
+        // Jobs that yield are put back once the tick is over, so that they aren't stepped again
+        final List<Job> yielded = new ArrayList<>();
+        final long deadline = System.nanoTime() + budget;
+        Job job;
+        while ((job = this.poll()) != null) {
+            final long start = System.nanoTime();
+            SlicedJob.Status status;
+            try {
+                status = job.job.step();
+            } catch (final Exception e) {
+                this.plugin.getLogger().log(Level.SEVERE, String.format("Job '%s' failed", job.name), e);
+                job.future.completeExceptionally(e);
+                status = null;
+            }
+            final long end = System.nanoTime();
+            job.time += end - start;
+            job.steps++;
+            if (status == SlicedJob.Status.CONTINUE) {
+                this.queues.get(job.priority).addLast(job);
+            } else if (status == SlicedJob.Status.YIELD) {
+                yielded.add(job);
+            } else {
+                this.queuedJobs--;
+                this.completedJobs++;
+                if (status == SlicedJob.Status.DONE) {
+                    job.future.complete(null);
+                }
+            }
+            if (end >= deadline) {
+                break;
+            }
+        }
+        for (final Job yieldedJob : yielded) {
+            this.queues.get(yieldedJob.priority).addLast(yieldedJob);
+        }
+        if (this.queuedJobs == 0) {
+            this.task.cancel();
+            this.task = null;
+        }
+    }
+
+    private Job poll() {
+        for (final Deque<Job> queue : this.queues.values()) {
+            final Job job = queue.pollFirst();
+            if (job != null) {
+                return job;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get a snapshot of the queued jobs, in the order that they will be stepped. This
+     * must be called from the main thread
+     *
+     * @return Queued jobs
+     */
+    public @NonNull List<@NonNull Job> getJobs() {
+        final List<Job> jobs = new ArrayList<>();
+        for (final Deque<Job> queue : this.queues.values()) {
+            jobs.addAll(queue);
+        }
+        return jobs;
+    }
+
+    /**
+     * Get the number of jobs that are queued, including jobs that
+     * have yielded for the rest of the current tick
+     *
+     * @return Queue depth
+     */
+    public int getQueueDepth() {
+        return this.queuedJobs;
+    }
+
+    /**
+     * Get the number of jobs that have finished, successfully or not
+     *
+     * @return Completed job count
+     */
+    public long getCompletedJobs() {
+        return this.completedJobs;
+    }
+
+    /**
+     * Get the time budget of the most recent tick that had queued jobs
+     *
+     * @return Last tick budget
+     */
+    public @NonNull Duration getLastBudget() {
+        return Duration.ofNanos(this.lastBudget);
+    }
+
+    /**
+     * A job that has been queued in the scheduler
+     */
+    public static final class Job {
+
+        private final String name;
+        private final JobPriority priority;
+        private final SlicedJob job;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+        private long time;
+        private int steps;
+
+        private Job(
+                final @NonNull String name,
+                final @NonNull JobPriority priority,
+                final @NonNull SlicedJob job
+        ) {
+            this.name = name;
+            this.priority = priority;
+            this.job = job;
+        }
+
+        /**
+         * Get the name of the job
+         *
+         * @return Job name
+         */
+        public @NonNull String getName() {
+            return this.name;
+        }
+
+        /**
+         * Get the priority of the job
+         *
+         * @return Job priority
+         */
+        public @NonNull JobPriority getPriority() {
+            return this.priority;
+        }
+
+        /**
+         * Get the main thread time that the job has used so far
+         *
+         * @return Time spent
+         */
+        public @NonNull Duration getTime() {
+            return Duration.ofNanos(this.time);
+        }
+
+        /**
+         * Get the number of steps that the job has performed so far
+         *
+         * @return Step count
+         */
+        public int getSteps() {
+            return this.steps;
+        }
+
+    }
+
+}
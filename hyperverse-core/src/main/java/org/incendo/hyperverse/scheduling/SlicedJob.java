@@ -0,0 +1,56 @@
+//
+//  Hyperverse - A minecraft world management plugin
+//
+//  This program is free software: you can redistribute it and/or modify
+//  it under the terms of the GNU General Public License as published by
+//  the Free Software Foundation, either version 3 of the License, or
+//  (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful,
+//  but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  GNU General Public License for more details.
+//
+//  You should have received a copy of the GNU General Public License
+//  along with this program. If not, see <http://www.gnu.org/licenses/>.
+//
+
+package org.incendo.hyperverse.scheduling;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+/**
+ * Main thread work that is split into small steps, so that it can be
+ * spread out over several ticks by the {@link MainThreadScheduler}
+ */
+@FunctionalInterface
+public interface SlicedJob {
+
+    /**
+     * Perform the next step of the job. A step should be small
+     * (at most a fraction of a millisecond), as the scheduler can
+     * only check its time budget in between steps
+     *
+     * @return Status of the job after the step
+     */
+    @NonNull Status step();
+
+    /**
+     * Status of a job after it has been stepped
+     */
+    enum Status {
+        /**
+         * The job has more work, and may be stepped again in the same tick
+         */
+        CONTINUE,
+        /**
+         * The job has more work, but shouldn't be stepped again until the next tick
+         */
+        YIELD,
+        /**
+         * The job has finished
+         */
+        DONE
+    }
+
+}
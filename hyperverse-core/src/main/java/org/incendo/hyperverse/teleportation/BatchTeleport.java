@@ -0,0 +1,124 @@
+//
+//  Hyperverse - A minecraft world management plugin
+//
+//  This program is free software: you can redistribute it and/or modify
+//  it under the terms of the GNU General Public License as published by
+//  the Free Software Foundation, either version 3 of the License, or
+//  (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful,
+//  but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  GNU General Public License for more details.
+//
+//  You should have received a copy of the GNU General Public License
+//  along with this program. If not, see <http://www.gnu.org/licenses/>.
+//
+
+package org.incendo.hyperverse.teleportation;
+
+import org.bukkit.Location;
+import org.bukkit.Server;
+import org.bukkit.entity.Player;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.incendo.hyperverse.scheduling.MainThreadScheduler;
+import org.incendo.hyperverse.scheduling.SlicedJob;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * {@link MainThreadScheduler Sliced job} that sends the players of a
+ * {@link TeleportationManager#teleportPlayers(Collection, Location, BiConsumer) batch teleport}
+ * to their destination, one player per step and a limited number per tick. This is only
+ * accessed from the main thread, and the teleport futures are expected to complete there
+ */
+final class BatchTeleport implements SlicedJob {
+
+    /**
+     * Interval (in ticks) between progress updates
+     */
+    private static final int PROGRESS_INTERVAL = 20;
+
+    private final Server server;
+    private final List<Player> players;
+    private final Function<Player, CompletableFuture<Boolean>> teleport;
+    private final List<CompletableFuture<Boolean>> teleports;
+    private final ChunkPrewarmer.ChunkHold hold;
+    private final int rate;
+    private final BiConsumer<Integer, Integer> progress;
+    private final CompletableFuture<Integer> result;
+    private int processed;
+    private int tick;
+    private int sentThisTick;
+    private int progressTick;
+
+    BatchTeleport(
+            final @NonNull Server server,
+            final @NonNull List<@NonNull Player> players,
+            final @NonNull Function<@NonNull Player, @NonNull CompletableFuture<@NonNull Boolean>> teleport,
+            final ChunkPrewarmer.@Nullable ChunkHold hold,
+            final int rate,
+            final @NonNull BiConsumer<@NonNull Integer, @NonNull Integer> progress,
+            final @NonNull CompletableFuture<@NonNull Integer> result
+    ) {
+        this.server = server;
+        this.players = players;
+        this.teleport = teleport;
+        this.teleports = new ArrayList<>(players.size());
+        this.hold = hold;
+        this.rate = Math.max(1, rate);
+        this.progress = progress;
+        this.result = result;
+        this.tick = server.getCurrentTick();
+        this.progressTick = this.tick;
+    }
+
+    @Override
+    public @NonNull Status step() {
+        final int currentTick = this.server.getCurrentTick();
+        if (currentTick != this.tick) {
+            this.tick = currentTick;
+            this.sentThisTick = 0;
+        }
+        if (this.sentThisTick >= this.rate) {
+            return Status.YIELD;
+        }
+        if (this.processed < this.players.size()) {
+            final Player player = this.players.get(this.processed++);
+            if (player.isOnline()) {
+                this.sentThisTick++;
+                this.teleports.add(this.teleport.apply(player).exceptionally(throwable -> false));
+            }
+        }
+        if (this.processed >= this.players.size()) {
+            this.progress.accept(this.processed, this.players.size());
+            // The players are only counted once their teleports have been resolved
+            CompletableFuture.allOf(this.teleports.toArray(new CompletableFuture<?>[0])).thenRun(() -> {
+                this.release();
+                this.result.complete((int) this.teleports.stream().filter(CompletableFuture::join).count());
+            });
+            return Status.DONE;
+        }
+        if (currentTick - this.progressTick >= PROGRESS_INTERVAL) {
+            this.progressTick = currentTick;
+            this.progress.accept(this.processed, this.players.size());
+        }
+        return Status.CONTINUE;
+    }
+
+    /**
+     * Release the chunks around the destination
+     */
+    void release() {
+        if (this.hold != null) {
+            this.hold.release();
+        }
+    }
+
+}
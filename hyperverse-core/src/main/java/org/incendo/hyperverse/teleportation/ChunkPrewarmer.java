@@ -0,0 +1,185 @@
+//
+//  Hyperverse - A minecraft world management plugin
+//
+//  This program is free software: you can redistribute it and/or modify
+//  it under the terms of the GNU General Public License as published by
+//  the Free Software Foundation, either version 3 of the License, or
+//  (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful,
+//  but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  GNU General Public License for more details.
+//
+//  You should have received a copy of the GNU General Public License
+//  along with this program. If not, see <http://www.gnu.org/licenses/>.
+//
+
+package org.incendo.hyperverse.teleportation;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import io.papermc.lib.PaperLib;
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.Server;
+import org.bukkit.World;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Loads the chunks around teleport destinations ahead of time and keeps them loaded
+ * using plugin chunk tickets.
+ * <p>
+ * Bukkit only keeps a single plugin ticket per chunk, so the tickets are reference counted.
+ * A chunk keeps its ticket until every {@link ChunkHold} covering it has been released.
+ * This is only accessed from the main thread
+ */
+@Singleton
+public final class ChunkPrewarmer {
+
+    private final Map<UUID, Map<Long, Integer>> tickets = new HashMap<>();
+    private final Plugin plugin;
+    private final Server server;
+    private final BukkitScheduler scheduler;
+    private volatile int heldChunks;
+
+    @Inject
+    public ChunkPrewarmer(
+            final @NonNull Plugin plugin,
+            final @NonNull Server server,
+            final @NonNull BukkitScheduler scheduler
+    ) {
+        this.plugin = plugin;
+        this.server = server;
+        this.scheduler = scheduler;
+    }
+
+    private static long chunkKey(final int x, final int z) {
+        return ((long) z << 32) | (x & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Asynchronously load the chunks within a square radius of a location, and hold
+     * them until the returned {@link ChunkHold} is released
+     *
+     * @param center Center of the area
+     * @param radius Radius, in chunks
+     * @return Future that completes on the main thread once all chunks have been loaded
+     */
+    public @NonNull CompletableFuture<@NonNull ChunkHold> load(final @NonNull Location center, final int radius) {
+        final World world = Objects.requireNonNull(center.getWorld());
+        final int centerX = center.getBlockX() >> 4;
+        final int centerZ = center.getBlockZ() >> 4;
+        final int range = Math.max(0, radius);
+        final ChunkHold hold = new ChunkHold(world);
+        final List<CompletableFuture<?>> loads = new ArrayList<>();
+        for (int x = centerX - range; x <= centerX + range; x++) {
+            for (int z = centerZ - range; z <= centerZ + range; z++) {
+                loads.add(PaperLib.getChunkAtAsync(world, x, z).thenAccept(hold::acquire));
+            }
+        }
+        return CompletableFuture.allOf(loads.toArray(new CompletableFuture<?>[0])).handle((ignored, throwable) -> {
+            if (throwable != null) {
+                // Don't leak the tickets of the chunks that did load
+                hold.release();
+                throw new CompletionException(throwable);
+            }
+            return hold;
+        });
+    }
+
+    /**
+     * Get the number of chunks that are currently held
+     *
+     * @return Number of held chunks
+     */
+    public int getHeldChunks() {
+        return this.heldChunks;
+    }
+
+    private void acquire(final @NonNull Chunk chunk) {
+        final Map<Long, Integer> worldTickets = this.tickets.computeIfAbsent(chunk.getWorld().getUID(), uuid -> new HashMap<>());
+        if (worldTickets.merge(chunkKey(chunk.getX(), chunk.getZ()), 1, Integer::sum) == 1) {
+            chunk.addPluginChunkTicket(this.plugin);
+            this.heldChunks++;
+        }
+    }
+
+    private void release(final @NonNull World world, final int x, final int z) {
+        final Map<Long, Integer> worldTickets = this.tickets.get(world.getUID());
+        if (worldTickets == null
+                || worldTickets.computeIfPresent(chunkKey(x, z), (key, count) -> count == 1 ? null : count - 1) != null) {
+            return;
+        }
+        this.heldChunks--;
+        if (worldTickets.isEmpty()) {
+            this.tickets.remove(world.getUID());
+        }
+        // The ticket went away together with the world if it has been unloaded
+        if (this.server.getWorld(world.getUID()) != null) {
+            world.removePluginChunkTicket(x, z, this.plugin);
+        }
+    }
+
+    /**
+     * Chunks that are being held by the {@link ChunkPrewarmer}
+     */
+    public final class ChunkHold {
+
+        private final World world;
+        private final List<Chunk> chunks = new ArrayList<>();
+        private boolean released;
+
+        private ChunkHold(final @NonNull World world) {
+            this.world = world;
+        }
+
+        private void acquire(final @NonNull Chunk chunk) {
+            if (this.released) {
+                return;
+            }
+            ChunkPrewarmer.this.acquire(chunk);
+            this.chunks.add(chunk);
+        }
+
+        /**
+         * Release the chunks. Releasing a hold more than once has no effect
+         */
+        public void release() {
+            if (this.released) {
+                return;
+            }
+            this.released = true;
+            for (final Chunk chunk : this.chunks) {
+                ChunkPrewarmer.this.release(this.world, chunk.getX(), chunk.getZ());
+            }
+            this.chunks.clear();
+        }
+
+        /**
+         * Release the chunks after a delay
+         *
+         * @param delay Delay, in ticks
+         */
+        public void release(final long delay) {
+            if (delay <= 0) {
+                this.release();
+            } else {
+                ChunkPrewarmer.this.scheduler.runTaskLater(ChunkPrewarmer.this.plugin, (Runnable) this::release, delay);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,278 @@
+//
+//  Hyperverse - A minecraft world management plugin
+//
+//  This program is free software: you can redistribute it and/or modify
+//  it under the terms of the GNU General Public License as published by
+//  the Free Software Foundation, either version 3 of the License, or
+//  (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful,
+//  but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  GNU General Public License for more details.
+//
+//  You should have received a copy of the GNU General Public License
+//  along with this program. If not, see <http://www.gnu.org/licenses/>.
+//
+
+
+package org.incendo.hyperverse.teleportation;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockState;
+import org.bukkit.entity.Entity;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.incendo.hyperverse.util.NMS;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+/**
+ * Cache of nether portal search results, used to avoid searching for the
+ * destination portal every time an entity travels through a linked portal.
+ * <p>
+ * The result of {@link NMS#getOrCreateNetherPortal(Entity, Location)} is stored for the exact
+ * block it was searched from, so a cached destination is always the portal that the vanilla
+ * search found. Entries are stored in grid cells with the same size as the vanilla search
+ * radius, so that lighting a portal only has to drop the entries from the surrounding cells
+ * that it could now be closer to. A cached portal is always checked before it is returned,
+ * so portals that were removed without being invalidated trigger a new search rather than being used.
+ * <p>
+ * The index is not thread safe and must only be used from the main thread.
+ */
+@Singleton
+public final class PortalIndex {
+
+    // Vanilla searches for existing portals within 128 blocks
+    private static final int SEARCH_RADIUS = 128;
+    private static final int CELL_SHIFT = 7;
+    // Largest possible portal frame
+    private static final int INVALIDATION_RADIUS = 23;
+
+    private final Map<UUID, Map<Long, Map<Long, Destination>>> worlds = new HashMap<>();
+    private final NMS nms;
+    private long hits;
+    private long misses;
+
+    @Inject
+    public PortalIndex(final @NonNull NMS nms) {
+        this.nms = Objects.requireNonNull(nms);
+    }
+
+    private static long getCellKey(final int cellX, final int cellZ) {
+        return ((long) cellX << 32) | (cellZ & 0xFFFFFFFFL);
+    }
+
+    private static long getBlockKey(final int x, final int y, final int z) {
+        return ((x & 0x3FFFFFFL) << 38) | ((z & 0x3FFFFFFL) << 12) | (y & 0xFFFL);
+    }
+
+    private static boolean isPortal(final @NonNull World world, final int x, final int y, final int z) {
+        return world.getBlockAt(x, y, z).getType() == Material.NETHER_PORTAL;
+    }
+
+    /**
+     * Get the portal that was found the last time a portal was searched for from the same
+     * block, and fall back to searching for (or creating) a portal if there is no such
+     * portal, or if it no longer exists
+     *
+     * @param entity Entity that is searching for the portal
+     * @param origin Origin location
+     * @return Portal location
+     * @see NMS#getOrCreateNetherPortal(Entity, Location)
+     */
+    public @Nullable Location getOrCreateNetherPortal(final @NonNull Entity entity, final @NonNull Location origin) {
+        final World world = Objects.requireNonNull(origin.getWorld());
+        final int x = origin.getBlockX();
+        final int y = origin.getBlockY();
+        final int z = origin.getBlockZ();
+        final Map<Long, Destination> cell = this.worlds.computeIfAbsent(world.getUID(), uuid -> new HashMap<>())
+                .computeIfAbsent(getCellKey(x >> CELL_SHIFT, z >> CELL_SHIFT), key -> new HashMap<>());
+        final long key = getBlockKey(x, y, z);
+        final Destination cached = cell.get(key);
+        if (cached != null && isPortal(world, cached.portalX, cached.portalY, cached.portalZ)) {
+            this.hits++;
+            return cached.location.clone();
+        }
+        this.misses++;
+        cell.remove(key);
+        final Location location = this.nms.getOrCreateNetherPortal(entity, origin);
+        if (location != null) {
+            final Destination destination = this.findPortal(x, z, location);
+            if (destination != null) {
+                cell.put(key, destination);
+            }
+        }
+        if (cell.isEmpty()) {
+            this.worlds.get(world.getUID()).remove(getCellKey(x >> CELL_SHIFT, z >> CELL_SHIFT));
+        }
+        return location;
+    }
+
+    /**
+     * Drop the cached destinations that a portal that has just been lit could be closer to
+     *
+     * @param world  World containing the portal
+     * @param blocks Blocks that make up the portal
+     */
+    public void addPortal(final @NonNull World world, final @NonNull Collection<@NonNull BlockState> blocks) {
+        for (final BlockState block : blocks) {
+            if (block.getType() == Material.NETHER_PORTAL) {
+                // Anything that searched from within the search radius of the portal could now find it instead
+                final int radius = SEARCH_RADIUS + INVALIDATION_RADIUS;
+                this.invalidate(world, block.getX(), block.getZ(), radius,
+                        destination -> Math.abs(destination.originX - block.getX()) <= radius
+                                && Math.abs(destination.originZ - block.getZ()) <= radius
+                );
+                return;
+            }
+        }
+    }
+
+    /**
+     * Drop the cached destinations of all portals that could contain the given block
+     *
+     * @param block Block that was removed
+     */
+    public void invalidate(final @NonNull Block block) {
+        this.invalidate(block.getWorld(), block.getX(), block.getZ(), SEARCH_RADIUS + INVALIDATION_RADIUS,
+                destination -> Math.abs(destination.portalX - block.getX()) <= INVALIDATION_RADIUS
+                        && Math.abs(destination.portalY - block.getY()) <= INVALIDATION_RADIUS
+                        && Math.abs(destination.portalZ - block.getZ()) <= INVALIDATION_RADIUS
+        );
+    }
+
+    /**
+     * Drop all cached destinations in a world
+     *
+     * @param world World
+     */
+    public void invalidate(final @NonNull World world) {
+        this.worlds.remove(world.getUID());
+    }
+
+    /**
+     * Get the number of portal lookups that were answered by the index
+     *
+     * @return Number of hits
+     */
+    public long getHits() {
+        return this.hits;
+    }
+
+    /**
+     * Get the number of portal lookups that had to search the world
+     *
+     * @return Number of misses
+     */
+    public long getMisses() {
+        return this.misses;
+    }
+
+    /**
+     * Get the number of cached portal destinations
+     *
+     * @return Number of destinations
+     */
+    public int getDestinationCount() {
+        int count = 0;
+        for (final Map<Long, Map<Long, Destination>> cells : this.worlds.values()) {
+            for (final Map<Long, Destination> destinations : cells.values()) {
+                count += destinations.size();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Remove the matching destinations from all cells within the given
+     * horizontal distance of a block
+     */
+    private void invalidate(
+            final @NonNull World world,
+            final int x,
+            final int z,
+            final int radius,
+            final @NonNull Predicate<@NonNull Destination> predicate
+    ) {
+        final Map<Long, Map<Long, Destination>> cells = this.worlds.get(world.getUID());
+        if (cells == null) {
+            return;
+        }
+        for (int cellX = (x - radius) >> CELL_SHIFT; cellX <= (x + radius) >> CELL_SHIFT; cellX++) {
+            for (int cellZ = (z - radius) >> CELL_SHIFT; cellZ <= (z + radius) >> CELL_SHIFT; cellZ++) {
+                final Map<Long, Destination> destinations = cells.get(getCellKey(cellX, cellZ));
+                if (destinations != null) {
+                    destinations.values().removeIf(predicate);
+                    if (destinations.isEmpty()) {
+                        cells.remove(getCellKey(cellX, cellZ));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Find the portal block of a destination returned by {@link NMS#getOrCreateNetherPortal(Entity, Location)}.
+     * Existing portals are returned as a portal block, but created portals are returned
+     * as a location next to the portal, so the portal block is searched for
+     */
+    private @Nullable Destination findPortal(
+            final int originX,
+            final int originZ,
+            final @NonNull Location location
+    ) {
+        final World world = Objects.requireNonNull(location.getWorld());
+        for (int dy = 0; dy <= 1; dy++) {
+            for (int dx = -1; dx <= 1; dx++) {
+                for (int dz = -1; dz <= 1; dz++) {
+                    final int x = location.getBlockX() + dx;
+                    final int y = location.getBlockY() + dy;
+                    final int z = location.getBlockZ() + dz;
+                    if (isPortal(world, x, y, z)) {
+                        return new Destination(originX, originZ, x, y, z, location.clone());
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private static final class Destination {
+
+        private final int originX;
+        private final int originZ;
+        private final int portalX;
+        private final int portalY;
+        private final int portalZ;
+        private final Location location;
+
+        private Destination(
+                final int originX,
+                final int originZ,
+                final int portalX,
+                final int portalY,
+                final int portalZ,
+                final @NonNull Location location
+        ) {
+            this.originX = originX;
+            this.originZ = originZ;
+            this.portalX = portalX;
+            this.portalY = portalY;
+            this.portalZ = portalZ;
+            this.location = location;
+        }
+
+    }
+
+}
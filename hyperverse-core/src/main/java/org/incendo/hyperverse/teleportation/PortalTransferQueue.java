@@ -0,0 +1,284 @@
+//
+//  Hyperverse - A minecraft world management plugin
+//
+//  This program is free software: you can redistribute it and/or modify
+//  it under the terms of the GNU General Public License as published by
+//  the Free Software Foundation, either version 3 of the License, or
+//  (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful,
+//  but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  GNU General Public License for more details.
+//
+//  You should have received a copy of the GNU General Public License
+//  along with this program. If not, see <http://www.gnu.org/licenses/>.
+//
+
+
+package org.incendo.hyperverse.teleportation;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import io.papermc.lib.PaperLib;
+import org.bukkit.Location;
+import org.bukkit.Server;
+import org.bukkit.entity.Entity;
+import org.bukkit.event.player.PlayerTeleportEvent;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.bukkit.scheduler.BukkitTask;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.incendo.hyperverse.configuration.HyperConfiguration;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Queue that limits how many non-player entities are sent through linked
+ * portals from one world to another every tick.
+ * <p>
+ * Transfers run immediately as long as the budget of their route (source world
+ * and destination world) hasn't been used up in the current tick. Once it has, they
+ * are queued and run in later ticks, in the order they were requested. Repeated
+ * requests for an entity that is already queued are merged into the queued
+ * transfer, and requests that don't fit in a full queue are dropped, which leaves
+ * the entity in the portal to try again.
+ * <p>
+ * Entities that have been sent through a portal are put on portal cooldown, which
+ * vanilla keeps refreshing for as long as they remain in a portal. This prevents
+ * them from being sent straight back when they arrive in the destination portal.
+ * <p>
+ * The queue must only be used from the main thread.
+ */
+@Singleton
+public final class PortalTransferQueue {
+
+    /**
+     * Number of ticks that an entity has to wait before
+     * it can be sent through a linked portal again
+     */
+    public static final int PORTAL_COOLDOWN = 100;
+
+    private final Map<Route, RouteQueue> routes = new HashMap<>();
+    private final Plugin plugin;
+    private final Server server;
+    private final BukkitScheduler scheduler;
+    private final int budget;
+    private final int maxQueueLength;
+    private BukkitTask task;
+    private int queueLength;
+    private long completedTransfers;
+    private long deferredTransfers;
+    private long mergedTransfers;
+    private long droppedTransfers;
+
+    @Inject
+    public PortalTransferQueue(
+            final @NonNull Plugin plugin,
+            final @NonNull Server server,
+            final @NonNull BukkitScheduler scheduler,
+            final @NonNull HyperConfiguration hyperConfiguration
+    ) {
+        this.plugin = Objects.requireNonNull(plugin);
+        this.server = Objects.requireNonNull(server);
+        this.scheduler = Objects.requireNonNull(scheduler);
+        this.budget = Math.max(1, hyperConfiguration.getPortalTransferBudget());
+        this.maxQueueLength = Math.max(0, hyperConfiguration.getPortalTransferQueueSize());
+    }
+
+    /**
+     * Request that an entity is sent to another world
+     *
+     * @param entity           Entity to send
+     * @param destinationWorld Name of the destination world
+     * @param destination      Supplier of the destination location. This is called when the transfer runs,
+     *                         and the transfer is dropped if it returns {@code null}
+     */
+    public void enqueue(
+            final @NonNull Entity entity,
+            final @NonNull String destinationWorld,
+            final @NonNull Supplier<@Nullable Location> destination
+    ) {
+        final Route route = new Route(entity.getWorld().getUID(), destinationWorld);
+        final RouteQueue queue = this.routes.computeIfAbsent(route, key -> new RouteQueue());
+        if (queue.transfers.isEmpty() && queue.tryAcquire(this.server.getCurrentTick())) {
+            this.transfer(route, new Transfer(entity, destination));
+            return;
+        }
+        final UUID uuid = entity.getUniqueId();
+        if (queue.transfers.containsKey(uuid)) {
+            // Keep the position in the queue, but use the most recent destination
+            queue.transfers.put(uuid, new Transfer(entity, destination));
+            this.mergedTransfers++;
+            return;
+        }
+        if (queue.transfers.size() >= this.maxQueueLength) {
+            this.droppedTransfers++;
+            return;
+        }
+        queue.transfers.put(uuid, new Transfer(entity, destination));
+        this.queueLength++;
+        this.deferredTransfers++;
+        if (this.task == null) {
+            this.task = this.scheduler.runTaskTimer(this.plugin, this::tick, 1L, 1L);
+        }
+    }
+
+    /**
+     * Get the number of transfers that are waiting for their route budget
+     *
+     * @return Queue length
+     */
+    public int getQueueLength() {
+        return this.queueLength;
+    }
+
+    /**
+     * Get the number of entities that have been sent through linked portals
+     *
+     * @return Number of completed transfers
+     */
+    public long getCompletedTransfers() {
+        return this.completedTransfers;
+    }
+
+    /**
+     * Get the number of transfers that had to wait for a later tick
+     *
+     * @return Number of deferred transfers
+     */
+    public long getDeferredTransfers() {
+        return this.deferredTransfers;
+    }
+
+    /**
+     * Get the number of requests that were merged into an already queued transfer
+     *
+     * @return Number of merged transfers
+     */
+    public long getMergedTransfers() {
+        return this.mergedTransfers;
+    }
+
+    /**
+     * Get the number of transfers that were dropped, either because the queue was full
+     * or because the entity could no longer be sent once the transfer was due
+     *
+     * @return Number of dropped transfers
+     */
+    public long getDroppedTransfers() {
+        return this.droppedTransfers;
+    }
+
+    private void tick() {
+        final int currentTick = this.server.getCurrentTick();
+        // Teleports can fire events that queue new transfers, so neither the routes
+        // nor the queues are iterated while transfers are running
+        for (final Map.Entry<Route, RouteQueue> entry : new ArrayList<>(this.routes.entrySet())) {
+            final RouteQueue queue = entry.getValue();
+            while (!queue.transfers.isEmpty() && queue.tryAcquire(currentTick)) {
+                final Iterator<Transfer> iterator = queue.transfers.values().iterator();
+                final Transfer transfer = iterator.next();
+                iterator.remove();
+                this.queueLength--;
+                this.transfer(entry.getKey(), transfer);
+            }
+        }
+        if (this.queueLength == 0) {
+            this.task.cancel();
+            this.task = null;
+        }
+    }
+
+    private void transfer(final @NonNull Route route, final @NonNull Transfer transfer) {
+        final Entity entity = transfer.entity;
+        // The entity may have died or moved on while it was queued
+        if (!entity.isValid() || !entity.getWorld().getUID().equals(route.sourceWorld)) {
+            this.droppedTransfers++;
+            return;
+        }
+        final Location location = transfer.destination.get();
+        if (location == null) {
+            this.droppedTransfers++;
+            return;
+        }
+        entity.setPortalCooldown(PORTAL_COOLDOWN);
+        PaperLib.teleportAsync(entity, location, PlayerTeleportEvent.TeleportCause.COMMAND);
+        this.completedTransfers++;
+    }
+
+    private static final class Route {
+
+        private final UUID sourceWorld;
+        private final String destinationWorld;
+
+        private Route(final @NonNull UUID sourceWorld, final @NonNull String destinationWorld) {
+            this.sourceWorld = sourceWorld;
+            this.destinationWorld = destinationWorld;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || this.getClass() != o.getClass()) {
+                return false;
+            }
+            final Route that = (Route) o;
+            return this.sourceWorld.equals(that.sourceWorld) && this.destinationWorld.equals(that.destinationWorld);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.sourceWorld, this.destinationWorld);
+        }
+
+    }
+
+    private final class RouteQueue {
+
+        private final Map<UUID, Transfer> transfers = new LinkedHashMap<>();
+        private int tick = -1;
+        private int used;
+
+        /**
+         * Use one transfer from the budget of the given tick
+         *
+         * @return {@code true} if the budget wasn't used up yet
+         */
+        private boolean tryAcquire(final int currentTick) {
+            if (this.tick != currentTick) {
+                this.tick = currentTick;
+                this.used = 0;
+            }
+            if (this.used >= PortalTransferQueue.this.budget) {
+                return false;
+            }
+            this.used++;
+            return true;
+        }
+
+    }
+
+    private static final class Transfer {
+
+        private final Entity entity;
+        private final Supplier<Location> destination;
+
+        private Transfer(final @NonNull Entity entity, final @NonNull Supplier<@Nullable Location> destination) {
+            this.entity = entity;
+            this.destination = destination;
+        }
+
+    }
+
+}
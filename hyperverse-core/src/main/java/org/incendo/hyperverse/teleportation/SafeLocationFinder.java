@@ -0,0 +1,260 @@
+//
+//  Hyperverse - A minecraft world management plugin
+//
+//  This program is free software: you can redistribute it and/or modify
+//  it under the terms of the GNU General Public License as published by
+//  the Free Software Foundation, either version 3 of the License, or
+//  (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful,
+//  but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  GNU General Public License for more details.
+//
+//  You should have received a copy of the GNU General Public License
+//  along with this program. If not, see <http://www.gnu.org/licenses/>.
+//
+
+package org.incendo.hyperverse.teleportation;
+
+import co.aikar.taskchain.TaskChainFactory;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import io.papermc.lib.PaperLib;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Finds safe locations using {@link ChunkSnapshot chunk snapshots}, so that the
+ * search itself runs off the main thread.
+ * <p>
+ * The chunks covering the search area are loaded asynchronously and snapshotted
+ * together with their heightmaps. Columns are then searched in square rings around
+ * the origin, and the first ring containing a safe spot yields the spot closest to
+ * the origin. The heightmap lets each column start at the surface instead of
+ * walking down through air.
+ * <p>
+ * The chunk containing the origin is searched on its own first, as it usually
+ * contains a safe spot. The surrounding chunks are only loaded if it doesn't.
+ */
+@Singleton
+public final class SafeLocationFinder {
+
+    private static final Set<Material> HAZARDS = EnumSet.of(
+            Material.LAVA,
+            Material.FIRE,
+            Material.SOUL_FIRE,
+            Material.MAGMA_BLOCK,
+            Material.CAMPFIRE,
+            Material.SOUL_CAMPFIRE,
+            Material.CACTUS,
+            Material.SWEET_BERRY_BUSH,
+            Material.WITHER_ROSE,
+            Material.POWDER_SNOW,
+            Material.POINTED_DRIPSTONE
+    );
+
+    private final TaskChainFactory taskChainFactory;
+
+    @Inject
+    public SafeLocationFinder(final @NonNull TaskChainFactory taskChainFactory) {
+        this.taskChainFactory = taskChainFactory;
+    }
+
+    /**
+     * Find the safe location closest to the origin, preferring locations in the chunk of the
+     * origin. If the origin itself is safe, the future completes with the origin instance. The
+     * future is completed on the main thread
+     *
+     * @param origin Search origin
+     * @param radius Horizontal search radius, in blocks. A radius of 0 only searches
+     *               the column of the origin
+     * @return Future that completes with the safe location, or {@code null} if no
+     *         safe location exists within the radius
+     */
+    public @NonNull CompletableFuture<@Nullable Location> findSafe(
+            final @NonNull Location origin,
+            final int radius
+    ) {
+        final World world = Objects.requireNonNull(origin.getWorld());
+        final int range = Math.max(0, radius);
+        final int minChunkX = (origin.getBlockX() - range) >> 4;
+        final int minChunkZ = (origin.getBlockZ() - range) >> 4;
+        final int width = ((origin.getBlockX() + range) >> 4) - minChunkX + 1;
+        final int depth = ((origin.getBlockZ() + range) >> 4) - minChunkZ + 1;
+        final Search search = new Search(new ChunkSnapshot[width * depth], minChunkX, minChunkZ, depth,
+                world.getMinHeight(), world.getMaxHeight()
+        );
+        final int originIndex = search.getIndex(origin.getBlockX(), origin.getBlockZ());
+        return this.search(search.load(world, originIndex), search, origin, range).thenCompose(location -> {
+            if (location != null || width * depth == 1) {
+                return CompletableFuture.completedFuture(location);
+            }
+            final CompletableFuture<?>[] loads = new CompletableFuture<?>[width * depth - 1];
+            for (int index = 0, load = 0; index < width * depth; index++) {
+                if (index != originIndex) {
+                    loads[load++] = search.load(world, index);
+                }
+            }
+            return this.search(CompletableFuture.allOf(loads), search, origin, range);
+        });
+    }
+
+    /**
+     * Search for a safe location once the given chunk loads have completed. The
+     * future is completed on the main thread
+     */
+    private @NonNull CompletableFuture<@Nullable Location> search(
+            final @NonNull CompletableFuture<?> loads,
+            final @NonNull Search search,
+            final @NonNull Location origin,
+            final int radius
+    ) {
+        final CompletableFuture<Location> future = new CompletableFuture<>();
+        loads.whenComplete((ignored, throwable) -> {
+            if (throwable != null) {
+                future.completeExceptionally(throwable);
+                return;
+            }
+            this.taskChainFactory.newChain()
+                    .asyncFirst(() -> search.find(origin, radius))
+                    .syncLast(future::complete)
+                    .execute();
+        });
+        return future;
+    }
+
+    private static boolean isPassable(final @NonNull Material material) {
+        return !material.isSolid() && material != Material.WATER && !HAZARDS.contains(material);
+    }
+
+    private static boolean isGround(final @NonNull Material material) {
+        return material.isSolid() && !HAZARDS.contains(material);
+    }
+
+    private static final class Search {
+
+        private static final int NONE = Integer.MIN_VALUE;
+
+        private final @Nullable ChunkSnapshot[] snapshots;
+        private final int minChunkX;
+        private final int minChunkZ;
+        private final int depth;
+        private final int minY;
+        private final int maxY;
+
+        private Search(
+                final @Nullable ChunkSnapshot @NonNull [] snapshots,
+                final int minChunkX,
+                final int minChunkZ,
+                final int depth,
+                final int minY,
+                final int maxY
+        ) {
+            this.snapshots = snapshots;
+            this.minChunkX = minChunkX;
+            this.minChunkZ = minChunkZ;
+            this.depth = depth;
+            this.minY = minY;
+            this.maxY = maxY;
+        }
+
+        private int getIndex(final int x, final int z) {
+            return ((x >> 4) - this.minChunkX) * this.depth + ((z >> 4) - this.minChunkZ);
+        }
+
+        private @NonNull CompletableFuture<?> load(final @NonNull World world, final int index) {
+            // Paper completes chunk futures on the main thread, which is where the snapshot has to be taken
+            return PaperLib.getChunkAtAsync(world, this.minChunkX + index / this.depth, this.minChunkZ + index % this.depth)
+                    .thenAccept(chunk -> this.snapshots[index] = chunk.getChunkSnapshot(true, false, false));
+        }
+
+        private @Nullable Location find(final @NonNull Location origin, final int radius) {
+            final int originX = origin.getBlockX();
+            final int originY = origin.getBlockY();
+            final int originZ = origin.getBlockZ();
+            for (int ring = 0; ring <= radius; ring++) {
+                int bestX = 0;
+                int bestY = NONE;
+                int bestZ = 0;
+                long bestDistance = Long.MAX_VALUE;
+                for (int dx = -ring; dx <= ring; dx++) {
+                    // Only the edge of the ring, the inside has already been searched
+                    final int step = Math.abs(dx) == ring ? 1 : ring * 2;
+                    for (int dz = -ring; dz <= ring; dz += step) {
+                        final int y = this.findInColumn(originX + dx, originY, originZ + dz);
+                        if (y == NONE) {
+                            continue;
+                        }
+                        final long dy = y - originY;
+                        final long distance = (long) dx * dx + (long) dz * dz + dy * dy;
+                        if (distance < bestDistance) {
+                            bestDistance = distance;
+                            bestX = originX + dx;
+                            bestY = y;
+                            bestZ = originZ + dz;
+                        }
+                    }
+                }
+                if (bestY == NONE) {
+                    continue;
+                }
+                if (bestDistance == 0) {
+                    return origin;
+                }
+                return new Location(origin.getWorld(), bestX + 0.5, bestY, bestZ + 0.5, origin.getYaw(), origin.getPitch());
+            }
+            return null;
+        }
+
+        /**
+         * Find the standable y-coordinate in a column closest to the origin height,
+         * preferring spots at or below it
+         */
+        private int findInColumn(final int x, final int originY, final int z) {
+            final ChunkSnapshot snapshot = this.snapshots[this.getIndex(x, z)];
+            if (snapshot == null) {
+                // The chunk hasn't been loaded yet
+                return NONE;
+            }
+            final int localX = x & 15;
+            final int localZ = z & 15;
+            final int highest = snapshot.getHighestBlockYAt(localX, localZ);
+            if (highest < this.minY) {
+                // Nothing but air (or void) in this column
+                return NONE;
+            }
+            // Everything above the heightmap is air, so there is no need to walk through it
+            final int top = Math.min(this.maxY - 2, highest + 1);
+            for (int y = Math.min(originY, top); y > this.minY; y--) {
+                if (this.isStandable(snapshot, localX, y, localZ)) {
+                    return y;
+                }
+            }
+            // The origin is buried, so look upwards instead
+            for (int y = Math.max(originY + 1, this.minY + 1); y <= top; y++) {
+                if (this.isStandable(snapshot, localX, y, localZ)) {
+                    return y;
+                }
+            }
+            return NONE;
+        }
+
+        private boolean isStandable(final @NonNull ChunkSnapshot snapshot, final int x, final int y, final int z) {
+            return isGround(snapshot.getBlockType(x, y - 1, z))
+                    && isPassable(snapshot.getBlockType(x, y, z))
+                    && isPassable(snapshot.getBlockType(x, y + 1, z));
+        }
+
+    }
+
+}
@@ -17,11 +17,12 @@
 
 package org.incendo.hyperverse.teleportation;
 
+import co.aikar.taskchain.TaskChainFactory;
 import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
 import io.papermc.lib.PaperLib;
 import org.bukkit.Location;
-import org.bukkit.block.BlockFace;
+import org.bukkit.World;
 import org.bukkit.block.data.type.Bed;
 import org.bukkit.entity.Entity;
 import org.bukkit.entity.Player;
@@ -29,6 +30,7 @@ import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.incendo.hyperverse.Hyperverse;
 import org.incendo.hyperverse.configuration.HyperConfiguration;
+import org.incendo.hyperverse.configuration.Messages;
 import org.incendo.hyperverse.database.HyperDatabase;
 import org.incendo.hyperverse.database.LocationType;
 import org.incendo.hyperverse.flags.implementation.EndFlag;
@@ -36,20 +38,33 @@ import org.incendo.hyperverse.flags.implementation.IgnoreBedsFlag;
 import org.incendo.hyperverse.flags.implementation.NetherFlag;
 import org.incendo.hyperverse.flags.implementation.WorldPermissionFlag;
 import org.incendo.hyperverse.modules.PersistentLocationTransformer;
+import org.incendo.hyperverse.scheduling.JobPriority;
+import org.incendo.hyperverse.scheduling.MainThreadScheduler;
 import org.incendo.hyperverse.service.internal.SafeTeleportService;
+import org.incendo.hyperverse.util.MessageUtil;
 import org.incendo.hyperverse.util.NMS;
 import org.incendo.hyperverse.world.HyperWorld;
 import org.incendo.hyperverse.world.WorldManager;
 import org.incendo.hyperverse.world.WorldType;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
 
 /**
  * {@inheritDoc}
  */
 public final class SimpleTeleportationManager implements TeleportationManager {
 
+    /**
+     * Radius (in chunks) around the destination of a batch teleport that is kept loaded
+     */
+    private static final int BATCH_PRELOAD_RADIUS = 1;
+
     private final Hyperverse hyperverse;
     private final HyperWorld hyperWorld;
     private final WorldManager worldManager;
@@ -57,6 +72,11 @@ public final class SimpleTeleportationManager implements TeleportationManager {
     private final HyperDatabase hyperDatabase;
     private final NMS nms;
     private final PersistentLocationTransformer locationTransformer;
+    private final TaskChainFactory taskChainFactory;
+    private final SafeLocationFinder safeLocationFinder;
+    private final ChunkPrewarmer chunkPrewarmer;
+    private final TeleportStatistics teleportStatistics;
+    private final MainThreadScheduler mainThreadScheduler;
 
     @Inject
     public SimpleTeleportationManager(
@@ -66,7 +86,12 @@ public final class SimpleTeleportationManager implements TeleportationManager {
             final @NonNull NMS nms,
             final @NonNull HyperConfiguration configuration,
             final @NonNull HyperDatabase hyperDatabase,
-            final @NonNull PersistentLocationTransformer locationTransformer
+            final @NonNull PersistentLocationTransformer locationTransformer,
+            final @NonNull TaskChainFactory taskChainFactory,
+            final @NonNull SafeLocationFinder safeLocationFinder,
+            final @NonNull ChunkPrewarmer chunkPrewarmer,
+            final @NonNull TeleportStatistics teleportStatistics,
+            final @NonNull MainThreadScheduler mainThreadScheduler
     ) {
         this.hyperverse = hyperverse;
         this.hyperWorld = hyperWorld;
@@ -75,6 +100,11 @@ public final class SimpleTeleportationManager implements TeleportationManager {
         this.configuration = configuration;
         this.hyperDatabase = hyperDatabase;
         this.locationTransformer = locationTransformer;
+        this.taskChainFactory = taskChainFactory;
+        this.safeLocationFinder = safeLocationFinder;
+        this.chunkPrewarmer = chunkPrewarmer;
+        this.teleportStatistics = teleportStatistics;
+        this.mainThreadScheduler = mainThreadScheduler;
     }
 
     private static boolean hasBedNearby(final @NonNull Location location) {
@@ -102,8 +132,7 @@ public final class SimpleTeleportationManager implements TeleportationManager {
             final @NonNull Location location
     ) {
         if (this.configuration.shouldSafeTeleport()) {
-            return PaperLib.getChunkAtAsync(location).thenApply(
-                    chunk -> location.getBlock().getRelative(BlockFace.DOWN).getType().isSolid());
+            return this.safeLocationFinder.findSafe(location, 0).thenApply(location::equals);
         } else {
             return CompletableFuture.completedFuture(true);
         }
@@ -112,21 +141,147 @@ public final class SimpleTeleportationManager implements TeleportationManager {
     @Override
     public @NonNull CompletableFuture<@NonNull Location> findSafe(final @NonNull Location location) {
         if (this.configuration.shouldSafeTeleport()) {
-            return PaperLib.getChunkAtAsync(location).thenApply(chunk ->
-                    this.hyperverse.getServicePipeline().pump(location).through(SafeTeleportService.class)
-                            .getResult());
+            return this.safeLocationFinder.findSafe(location, this.configuration.getSafeTeleportRadius()).thenApply(safe -> {
+                if (safe != null) {
+                    return safe;
+                }
+                // Nothing within the search radius, so let the service decide
+                return this.hyperverse.getServicePipeline().pump(location).through(SafeTeleportService.class)
+                        .getResult();
+            });
         } else {
             return PaperLib.getChunkAtAsync(location).thenApply(c -> location);
         }
     }
 
     @Override
-    public void teleportPlayer(
+    public @NonNull CompletableFuture<@NonNull Boolean> teleportPlayer(
+            final @NonNull Player player,
+            final @NonNull Location location
+    ) {
+        final CompletableFuture<Boolean> result = new CompletableFuture<>();
+        final int radius = this.getPrewarmRadius(location);
+        if (radius <= 0) {
+            this.teleport(player, location).whenComplete((success, teleportFailure) ->
+                    result.complete(teleportFailure == null && success));
+            return result;
+        }
+        final long start = System.nanoTime();
+        this.chunkPrewarmer.load(location, radius).whenComplete((hold, throwable) -> {
+            this.teleportStatistics.recordPrewarm(System.nanoTime() - start);
+            if (!player.isOnline()) {
+                if (hold != null) {
+                    hold.release();
+                }
+                result.complete(false);
+                return;
+            }
+            // Teleport even if the pre-warm failed, the chunk will then be loaded by the teleport itself
+            this.teleport(player, location).whenComplete((success, teleportFailure) -> {
+                if (hold != null) {
+                    hold.release(this.configuration.getTeleportPrewarmGrace());
+                }
+                result.complete(teleportFailure == null && success);
+            });
+        });
+        return result;
+    }
+
+    private @NonNull CompletableFuture<@NonNull Boolean> teleport(
             final @NonNull Player player,
             final @NonNull Location location
     ) {
-        PaperLib.teleportAsync(player, Objects.requireNonNull(location)).thenAccept(l ->
-                player.setPortalCooldown(100));
+        final long start = System.nanoTime();
+        return PaperLib.teleportAsync(player, Objects.requireNonNull(location)).whenComplete((success, throwable) -> {
+            this.teleportStatistics.recordTeleport(System.nanoTime() - start);
+            player.setPortalCooldown(100);
+        });
+    }
+
+    /**
+     * Get the radius (in chunks) that should be loaded around a destination before
+     * teleporting to it. There is no point in loading chunks that the player won't see
+     */
+    private int getPrewarmRadius(final @NonNull Location location) {
+        final World world = Objects.requireNonNull(location.getWorld());
+        return Math.min(this.configuration.getTeleportPrewarmRadius(), world.getViewDistance());
+    }
+
+    @Override
+    public @NonNull CompletableFuture<@NonNull Integer> teleportPlayers(
+            final @NonNull Collection<@NonNull Player> players,
+            final @NonNull Location location,
+            final @NonNull BiConsumer<@NonNull Integer, @NonNull Integer> progress
+    ) {
+        // Resolve the destination once for the entire batch
+        return this.teleportBatch(players, location, (player, safeLocation) ->
+                this.allowedTeleport(player, safeLocation).thenCompose(allowed -> {
+                    if (!allowed) {
+                        MessageUtil.sendMessage(player, Messages.messageNotPermittedEntry);
+                        return CompletableFuture.completedFuture(false);
+                    }
+                    if (!location.equals(safeLocation)) {
+                        MessageUtil.sendMessage(player, Messages.messageTeleportNotSafe);
+                    }
+                    return this.teleportPlayer(player, safeLocation);
+                }), progress
+        );
+    }
+
+    @Override
+    public @NonNull CompletableFuture<@NonNull Integer> teleportPlayers(
+            final @NonNull Collection<@NonNull Player> players,
+            final @NonNull BiConsumer<@NonNull Integer, @NonNull Integer> progress
+    ) {
+        // Players without a stored location end up at the spawn, so that is what gets preloaded
+        return this.teleportBatch(players, Objects.requireNonNull(this.hyperWorld.getSpawn()),
+                (player, safeLocation) -> this.hyperWorld.teleportPlayer(player), progress
+        );
+    }
+
+    private @NonNull CompletableFuture<@NonNull Integer> teleportBatch(
+            final @NonNull Collection<@NonNull Player> players,
+            final @NonNull Location location,
+            final @NonNull BiFunction<@NonNull Player, @NonNull Location, @NonNull CompletableFuture<@NonNull Boolean>> teleport,
+            final @NonNull BiConsumer<@NonNull Integer, @NonNull Integer> progress
+    ) {
+        final List<Player> queue = new ArrayList<>(players);
+        final CompletableFuture<Integer> result = new CompletableFuture<>();
+        // Use the cached spawn if possible
+        final Location safeSpawn = this.hyperWorld.getSafeSpawn();
+        final CompletableFuture<Location> destination = safeSpawn != null && location.equals(this.hyperWorld.getSpawn())
+                ? CompletableFuture.completedFuture(safeSpawn)
+                : this.findSafe(location);
+        destination.whenComplete((safeLocation, throwable) -> {
+            if (throwable != null) {
+                result.completeExceptionally(throwable);
+                return;
+            }
+            // Keep the destination loaded until the last player has arrived
+            final int radius = Math.max(BATCH_PRELOAD_RADIUS, this.getPrewarmRadius(safeLocation));
+            this.chunkPrewarmer.load(safeLocation, radius).whenComplete((hold, loadFailure) -> {
+                final BatchTeleport batchTeleport = new BatchTeleport(
+                        this.hyperverse.getServer(),
+                        queue,
+                        player -> teleport.apply(player, safeLocation),
+                        hold,
+                        this.configuration.getBatchTeleportRate(),
+                        progress,
+                        result
+                );
+                final String name = String.format("teleport %d players to %s", queue.size(),
+                        this.hyperWorld.getConfiguration().getName()
+                );
+                this.mainThreadScheduler.submit(name, JobPriority.INTERACTIVE, batchTeleport)
+                        .whenComplete((ignored, failure) -> {
+                            if (failure != null) {
+                                batchTeleport.release();
+                                result.completeExceptionally(failure);
+                            }
+                        });
+            });
+        });
+        return result;
     }
 
     @Override
@@ -140,7 +295,7 @@ public final class SimpleTeleportationManager implements TeleportationManager {
         }
 
         final HyperWorld destination = this.worldManager.getWorld(netherLinkedWorld);
-        if (destination == null || !destination.isLoaded()) {
+        if (destination == null || !destination.ensureLoaded()) {
             return null;
         }
 
@@ -168,7 +323,7 @@ public final class SimpleTeleportationManager implements TeleportationManager {
             return null;
         }
         final HyperWorld destination = this.worldManager.getWorld(endLinkedWorld);
-        if (destination == null || !destination.isLoaded()) {
+        if (destination == null || !destination.ensureLoaded()) {
             return null;
         }
         return this.nms.getDimensionSpawn(Objects.requireNonNull(destination.getSpawn()));
@@ -194,4 +349,23 @@ public final class SimpleTeleportationManager implements TeleportationManager {
         return Objects.requireNonNull(hyperWorld.getSpawn());
     }
 
+    @Override
+    public @NonNull CompletableFuture<@NonNull Location> getSpawnLocationAsync(
+            final @NonNull Player player,
+            final @NonNull HyperWorld hyperWorld
+    ) {
+        if (!this.configuration.shouldPersistLocations() || hyperWorld.getFlag(IgnoreBedsFlag.class)) {
+            return CompletableFuture.completedFuture(this.getSpawnLocation(player, hyperWorld));
+        }
+        final CompletableFuture<Void> pending = this.hyperDatabase.awaitLocations(player.getUniqueId());
+        if (pending.isDone()) {
+            return CompletableFuture.completedFuture(this.getSpawnLocation(player, hyperWorld));
+        }
+        final CompletableFuture<Location> future = new CompletableFuture<>();
+        pending.thenRun(() -> this.taskChainFactory.newChain()
+                .sync(() -> future.complete(this.getSpawnLocation(player, hyperWorld)))
+                .execute());
+        return future;
+    }
+
 }
@@ -0,0 +1,102 @@
+//
+//  Hyperverse - A minecraft world management plugin
+//
+//  This program is free software: you can redistribute it and/or modify
+//  it under the terms of the GNU General Public License as published by
+//  the Free Software Foundation, either version 3 of the License, or
+//  (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful,
+//  but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  GNU General Public License for more details.
+//
+//  You should have received a copy of the GNU General Public License
+//  along with this program. If not, see <http://www.gnu.org/licenses/>.
+//
+
+package org.incendo.hyperverse.teleportation;
+
+import com.google.inject.Singleton;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latency statistics for player teleports. The time spent pre-warming the destination
+ * is recorded separately from the time spent on the teleport itself
+ */
+@Singleton
+public final class TeleportStatistics {
+
+    private final AtomicLong prewarmCount = new AtomicLong();
+    private final AtomicLong totalPrewarmLatency = new AtomicLong();
+    private final AtomicLong teleportCount = new AtomicLong();
+    private final AtomicLong totalTeleportLatency = new AtomicLong();
+
+    private static @NonNull Duration average(final @NonNull AtomicLong total, final @NonNull AtomicLong count) {
+        final long samples = count.get();
+        if (samples == 0) {
+            return Duration.ZERO;
+        }
+        return Duration.ofNanos(total.get() / samples);
+    }
+
+    /**
+     * Record the time it took to load the chunks around a destination
+     *
+     * @param nanos Latency, in nanoseconds
+     */
+    public void recordPrewarm(final long nanos) {
+        this.prewarmCount.incrementAndGet();
+        this.totalPrewarmLatency.addAndGet(nanos);
+    }
+
+    /**
+     * Record the time it took to teleport a player, excluding any pre-warming
+     *
+     * @param nanos Latency, in nanoseconds
+     */
+    public void recordTeleport(final long nanos) {
+        this.teleportCount.incrementAndGet();
+        this.totalTeleportLatency.addAndGet(nanos);
+    }
+
+    /**
+     * Get the number of destinations that have been pre-warmed
+     *
+     * @return Pre-warm count
+     */
+    public long getPrewarms() {
+        return this.prewarmCount.get();
+    }
+
+    /**
+     * Get the average time it has taken to pre-warm a destination
+     *
+     * @return Average pre-warm latency
+     */
+    public @NonNull Duration getAveragePrewarmLatency() {
+        return average(this.totalPrewarmLatency, this.prewarmCount);
+    }
+
+    /**
+     * Get the number of teleports that have completed
+     *
+     * @return Teleport count
+     */
+    public long getTeleports() {
+        return this.teleportCount.get();
+    }
+
+    /**
+     * Get the average time it has taken to teleport a player
+     *
+     * @return Average teleport latency
+     */
+    public @NonNull Duration getAverageTeleportLatency() {
+        return average(this.totalTeleportLatency, this.teleportCount);
+    }
+
+}
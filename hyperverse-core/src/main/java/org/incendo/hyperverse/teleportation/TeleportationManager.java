@@ -24,7 +24,9 @@ import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.incendo.hyperverse.world.HyperWorld;
 
+import java.util.Collection;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
 
 /**
  * Manager responsible for teleportation related actions
@@ -44,6 +46,21 @@ public interface TeleportationManager {
             @NonNull HyperWorld hyperWorld
     );
 
+    /**
+     * Get the spawn location for a player in a particular world. If the persistent
+     * locations of the player are still being loaded, the future completes
+     * once they are available. The future is completed on the main thread
+     *
+     * @param player     Player to check the location for
+     * @param hyperWorld The world in which the location exists
+     * @return Future that completes with the spawn location
+     * @see #getSpawnLocation(Player, HyperWorld)
+     */
+    @NonNull CompletableFuture<@NonNull Location> getSpawnLocationAsync(
+            @NonNull Player player,
+            @NonNull HyperWorld hyperWorld
+    );
+
     /**
      * Check whether or not the player is allowed
      * to teleport to the specified location
@@ -72,7 +89,9 @@ public interface TeleportationManager {
 
     /**
      * Find a safe teleportation location near the specified
-     * location
+     * location. If the location itself is safe, the future
+     * completes with the location, so there is no need to
+     * call {@link #canTeleport(Player, Location)} first
      *
      * @param location Search origin
      * @return Safe location
@@ -84,12 +103,52 @@ public interface TeleportationManager {
      *
      * @param player   Player to teleport
      * @param location Location to teleport the player to
+     * @return Future that completes with {@code true} once the player has been teleported,
+     *         or {@code false} if the player went offline or the teleport failed
      */
-    void teleportPlayer(
+    @NonNull CompletableFuture<@NonNull Boolean> teleportPlayer(
             @NonNull Player player,
             @NonNull Location location
     );
 
+    /**
+     * Teleport a group of players to the same location. The safe destination is resolved
+     * once, and the chunks around it are loaded once and kept loaded until every player
+     * has been sent. Players are then sent over several ticks, at most
+     * {@link org.incendo.hyperverse.configuration.HyperConfiguration#getBatchTeleportRate()}
+     * per tick. Players that have gone offline or are not allowed to enter the world are skipped
+     *
+     * @param players  Players to teleport
+     * @param location Location to teleport the players to
+     * @param progress Called on the main thread with the number of processed players and the
+     *                 total number of players. This happens at most once per second, and once
+     *                 all players have been processed
+     * @return Future that completes with the number of players that were teleported
+     */
+    @NonNull CompletableFuture<@NonNull Integer> teleportPlayers(
+            @NonNull Collection<@NonNull Player> players,
+            @NonNull Location location,
+            @NonNull BiConsumer<@NonNull Integer, @NonNull Integer> progress
+    );
+
+    /**
+     * Teleport a group of players to the world, in the same way as
+     * {@link org.incendo.hyperverse.world.HyperWorld#teleportPlayer(Player)}, so that each player
+     * is sent to their persisted location if there is one. The chunks around the spawn are kept
+     * loaded until every player has been sent, and players are sent over several ticks, as with
+     * {@link #teleportPlayers(Collection, Location, BiConsumer)}
+     *
+     * @param players  Players to teleport
+     * @param progress Called on the main thread with the number of processed players and the
+     *                 total number of players. This happens at most once per second, and once
+     *                 all players have been processed
+     * @return Future that completes with the number of players that were teleported
+     */
+    @NonNull CompletableFuture<@NonNull Integer> teleportPlayers(
+            @NonNull Collection<@NonNull Player> players,
+            @NonNull BiConsumer<@NonNull Integer, @NonNull Integer> progress
+    );
+
     /**
      * Handle nether portal teleportation
      *
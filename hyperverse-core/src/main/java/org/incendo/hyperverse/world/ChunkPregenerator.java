@@ -0,0 +1,418 @@
+//
+//  Hyperverse - A minecraft world management plugin
+//
+//  This program is free software: you can redistribute it and/or modify
+//  it under the terms of the GNU General Public License as published by
+//  the Free Software Foundation, either version 3 of the License, or
+//  (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful,
+//  but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  GNU General Public License for more details.
+//
+//  You should have received a copy of the GNU General Public License
+//  along with this program. If not, see <http://www.gnu.org/licenses/>.
+//
+
+package org.incendo.hyperverse.world;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import org.bukkit.Location;
+import org.bukkit.Server;
+import org.bukkit.World;
+import org.bukkit.WorldBorder;
+import org.bukkit.command.CommandSender;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.WorldLoadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+import org.bukkit.plugin.Plugin;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.incendo.hyperverse.configuration.HyperConfiguration;
+import org.incendo.hyperverse.configuration.Messages;
+import org.incendo.hyperverse.scheduling.JobPriority;
+import org.incendo.hyperverse.scheduling.MainThreadScheduler;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Pre-generates the chunks around the spawn of worlds, so that they don't have
+ * to be generated while players explore.
+ * <p>
+ * Chunks are generated asynchronously, with a limited number of chunks in flight. The
+ * limit is halved whenever the server is running slow, and it slowly grows back once
+ * the server has recovered. Nothing is dispatched while the server is behind. The
+ * tasks are stepped by the {@link MainThreadScheduler}, and their progress is saved
+ * to disk, so that they continue where they left off when the server restarts or the
+ * world is loaded again. This is only accessed from the main thread, with the exception
+ * of the statistics getters
+ */
+@Singleton
+public final class ChunkPregenerator implements Listener {
+
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+    /**
+     * Average tick time (in milliseconds) above which fewer chunks are generated at once
+     */
+    private static final double TARGET_TICK_TIME = 40.0D;
+    /**
+     * Time (in milliseconds) that a tick may take before the server is considered to be behind
+     */
+    private static final double TICK_TIME = 50.0D;
+    /**
+     * Interval (in ticks) between changes to the chunk limit
+     */
+    private static final int ADJUSTMENT_INTERVAL = 20;
+
+    private final Map<String, PregenTask> tasks = new HashMap<>();
+    private final Server server;
+    private final MainThreadScheduler mainThreadScheduler;
+    private final HyperConfiguration hyperConfiguration;
+    private final Logger logger;
+    private final Path directory;
+    private final ExecutorService writer;
+    private final int maxChunksInFlight;
+    private int chunkLimit;
+    private int chunksInFlight;
+    private int lastAdjustment;
+    private volatile int runningTasks;
+    private volatile long generatedChunks;
+
+    @Inject
+    public ChunkPregenerator(
+            final @NonNull Plugin plugin,
+            final @NonNull Server server,
+            final @NonNull MainThreadScheduler mainThreadScheduler,
+            final @NonNull HyperConfiguration hyperConfiguration
+    ) {
+        this.server = Objects.requireNonNull(server);
+        this.mainThreadScheduler = Objects.requireNonNull(mainThreadScheduler);
+        this.hyperConfiguration = Objects.requireNonNull(hyperConfiguration);
+        this.logger = plugin.getLogger();
+        this.directory = plugin.getDataFolder().toPath().resolve("pregen");
+        // A single thread keeps the writes in order, so that old progress never replaces newer progress
+        this.writer = Executors.newSingleThreadExecutor(
+                new ThreadFactoryBuilder().setNameFormat("Hyperverse Pregen Writer").setDaemon(true).build()
+        );
+        this.maxChunksInFlight = Math.max(1, hyperConfiguration.getPregenMaxChunksInFlight());
+        this.chunkLimit = this.maxChunksInFlight;
+    }
+
+    /**
+     * Start pre-generating the chunks within a square radius around the spawn of a world.
+     * The radius is clamped so that the task stops at the world border
+     *
+     * @param hyperWorld World to pre-generate. This must be loaded
+     * @param radius     Radius, in blocks
+     * @param sender     Recipient of the progress messages
+     * @return {@code true} if the task was started, {@code false} if the
+     *         world is already being pre-generated
+     */
+    public boolean start(
+            final @NonNull HyperWorld hyperWorld,
+            final int radius,
+            final @NonNull CommandSender sender
+    ) {
+        final World world = Objects.requireNonNull(hyperWorld.getBukkitWorld(), "world is not loaded");
+        final String name = hyperWorld.getConfiguration().getName();
+        if (this.tasks.containsKey(name)) {
+            return false;
+        }
+        final Location spawn = world.getSpawnLocation();
+        final WorldBorder border = world.getWorldBorder();
+        final Location center = border.getCenter();
+        final double offset = Math.max(Math.abs(spawn.getX() - center.getX()), Math.abs(spawn.getZ() - center.getZ()));
+        final int maxRadius = (int) Math.min(Integer.MAX_VALUE - 15, Math.ceil(border.getSize() / 2.0D + offset));
+        final PregenTask.State state = new PregenTask.State(name, spawn.getBlockX() >> 4,
+                spawn.getBlockZ() >> 4, (Math.max(0, Math.min(radius, maxRadius)) + 15) >> 4
+        );
+        final PregenTask task = this.run(world, state, sender);
+        this.save(task.snapshot());
+        task.sendMessage(Messages.messagePregenStarted, "%chunks%", Long.toString(state.getTotal()));
+        return true;
+    }
+
+    /**
+     * Start pre-generating a world that has just been created, if
+     * {@link HyperConfiguration#getPregenRadiusOnCreate() configured}
+     *
+     * @param hyperWorld Created world
+     * @param sender     Recipient of the progress messages
+     */
+    public void startAutomatically(final @NonNull HyperWorld hyperWorld, final @NonNull CommandSender sender) {
+        final int radius = this.hyperConfiguration.getPregenRadiusOnCreate();
+        if (radius > 0 && hyperWorld.isLoaded()) {
+            this.start(hyperWorld, radius, sender);
+        }
+    }
+
+    /**
+     * Stop pre-generating a world, and forget its progress
+     *
+     * @param hyperWorld World
+     * @return {@code true} if the world was being pre-generated
+     */
+    public boolean cancel(final @NonNull HyperWorld hyperWorld) {
+        if (!this.isRunning(hyperWorld)) {
+            return false;
+        }
+        this.forget(hyperWorld);
+        return true;
+    }
+
+    /**
+     * Stop pre-generating a world, if it is being pre-generated, and delete
+     * any saved progress. This is used when the world is deleted, so that a
+     * new world with the same name doesn't pick up the old task
+     *
+     * @param hyperWorld World
+     */
+    public void forget(final @NonNull HyperWorld hyperWorld) {
+        final String name = hyperWorld.getConfiguration().getName();
+        final PregenTask task = this.tasks.remove(name);
+        if (task != null) {
+            task.stop();
+            this.runningTasks = this.tasks.size();
+        }
+        // This runs after any progress that was saved when the world was unloaded
+        this.writer.execute(() -> this.delete(name));
+    }
+
+    /**
+     * Check whether a world is being pre-generated
+     *
+     * @param hyperWorld World
+     * @return {@code true} if the world has a running task
+     */
+    public boolean isRunning(final @NonNull HyperWorld hyperWorld) {
+        return this.tasks.containsKey(hyperWorld.getConfiguration().getName());
+    }
+
+    /**
+     * Resume the tasks of all loaded worlds that were interrupted when the server stopped
+     */
+    public void resume() {
+        if (!Files.isDirectory(this.directory)) {
+            return;
+        }
+        final List<PregenTask.State> states = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.directory, "*.json")) {
+            for (final Path path : stream) {
+                final PregenTask.State state = this.read(path);
+                if (state != null) {
+                    states.add(state);
+                }
+            }
+        } catch (final IOException e) {
+            this.logger.log(Level.WARNING, "Failed to list the pre-generation tasks", e);
+        }
+        for (final PregenTask.State state : states) {
+            final World world = this.server.getWorld(state.getWorld());
+            if (world != null) {
+                this.resume(world, state);
+            }
+        }
+    }
+
+    /**
+     * Stop all tasks and save their progress. This blocks until the progress has been written
+     */
+    public void close() {
+        this.writer.shutdown();
+        try {
+            if (!this.writer.awaitTermination(5L, TimeUnit.SECONDS)) {
+                this.logger.warning("Timed out waiting for the pre-generation progress to be saved");
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (final PregenTask task : this.tasks.values()) {
+            task.stop();
+            this.write(task.snapshot());
+        }
+        this.tasks.clear();
+        this.runningTasks = 0;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldLoad(final @NonNull WorldLoadEvent event) {
+        final String name = event.getWorld().getName();
+        if (this.tasks.containsKey(name)) {
+            return;
+        }
+        final Path path = this.directory.resolve(String.format("%s.json", name));
+        if (Files.exists(path)) {
+            final PregenTask.State state = this.read(path);
+            if (state != null) {
+                this.resume(event.getWorld(), state);
+            }
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onWorldUnload(final @NonNull WorldUnloadEvent event) {
+        // Pause the task. It continues once the world is loaded again
+        final PregenTask task = this.tasks.remove(event.getWorld().getName());
+        if (task != null) {
+            task.stop();
+            this.runningTasks = this.tasks.size();
+            this.save(task.snapshot());
+        }
+    }
+
+    private void resume(final @NonNull World world, final PregenTask.@NonNull State state) {
+        final PregenTask task = this.run(world, state, this.server.getConsoleSender());
+        task.sendMessage(Messages.messagePregenResumed, "%generated%", Long.toString(task.getGenerated()),
+                "%chunks%", Long.toString(state.getTotal())
+        );
+    }
+
+    private @NonNull PregenTask run(
+            final @NonNull World world,
+            final PregenTask.@NonNull State state,
+            final @NonNull CommandSender sender
+    ) {
+        final PregenTask task = new PregenTask(this, this.server, world, state, sender);
+        this.tasks.put(state.getWorld(), task);
+        this.runningTasks = this.tasks.size();
+        this.mainThreadScheduler.submit(String.format("pre-generate %s", state.getWorld()), JobPriority.MAINTENANCE, task)
+                .whenComplete((ignored, throwable) -> {
+                    if (throwable != null && this.tasks.remove(state.getWorld(), task)) {
+                        // Keep the progress, so that the task can be resumed after a restart
+                        this.runningTasks = this.tasks.size();
+                        this.save(task.snapshot());
+                    }
+                });
+        return task;
+    }
+
+    /**
+     * Called when a task has generated all of its chunks
+     *
+     * @param task Finished task
+     */
+    void finish(final @NonNull PregenTask task) {
+        if (!this.tasks.remove(task.getWorldName(), task)) {
+            return;
+        }
+        this.runningTasks = this.tasks.size();
+        this.writer.execute(() -> this.delete(task.getWorldName()));
+        task.sendProgress();
+        task.sendMessage(Messages.messagePregenFinished);
+    }
+
+    /**
+     * Attempt to reserve room for another chunk
+     *
+     * @return {@code true} if a chunk may be generated
+     */
+    boolean acquire() {
+        final double tickTime = this.server.getAverageTickTime();
+        final int currentTick = this.server.getCurrentTick();
+        if (currentTick - this.lastAdjustment >= ADJUSTMENT_INTERVAL) {
+            this.lastAdjustment = currentTick;
+            if (tickTime > TARGET_TICK_TIME) {
+                this.chunkLimit = Math.max(1, this.chunkLimit / 2);
+            } else if (this.chunkLimit < this.maxChunksInFlight) {
+                this.chunkLimit++;
+            }
+        }
+        if (tickTime >= TICK_TIME || this.chunksInFlight >= this.chunkLimit) {
+            return false;
+        }
+        this.chunksInFlight++;
+        return true;
+    }
+
+    /**
+     * Release room that was reserved using {@link #acquire()}
+     *
+     * @param generated Whether or not a chunk was generated
+     */
+    void release(final boolean generated) {
+        this.chunksInFlight--;
+        if (generated) {
+            this.generatedChunks++;
+        }
+    }
+
+    /**
+     * Save the progress of a task in the background
+     *
+     * @param state Progress snapshot
+     */
+    void save(final PregenTask.@NonNull State state) {
+        this.writer.execute(() -> this.write(state));
+    }
+
+    private void write(final PregenTask.@NonNull State state) {
+        try {
+            Files.createDirectories(this.directory);
+            try (BufferedWriter writer = Files.newBufferedWriter(this.directory.resolve(String.format("%s.json",
+                    state.getWorld())))) {
+                GSON.toJson(state, writer);
+            }
+        } catch (final IOException e) {
+            this.logger.log(Level.WARNING, String.format("Failed to save the pre-generation progress of %s",
+                    state.getWorld()), e);
+        }
+    }
+
+    private PregenTask.@Nullable State read(final @NonNull Path path) {
+        try (BufferedReader reader = Files.newBufferedReader(path)) {
+            return GSON.fromJson(reader, PregenTask.State.class);
+        } catch (final Exception e) {
+            this.logger.log(Level.WARNING, String.format("Failed to read the pre-generation progress in %s", path), e);
+            return null;
+        }
+    }
+
+    private void delete(final @NonNull String world) {
+        try {
+            Files.deleteIfExists(this.directory.resolve(String.format("%s.json", world)));
+        } catch (final IOException e) {
+            this.logger.log(Level.WARNING, String.format("Failed to delete the pre-generation progress of %s", world), e);
+        }
+    }
+
+    /**
+     * Get the number of worlds that are being pre-generated
+     *
+     * @return Running task count
+     */
+    public int getRunningTasks() {
+        return this.runningTasks;
+    }
+
+    /**
+     * Get the number of chunks that have been pre-generated since the server started
+     *
+     * @return Generated chunk count
+     */
+    public long getGeneratedChunks() {
+        return this.generatedChunks;
+    }
+
+}
@@ -19,6 +19,7 @@ package org.incendo.hyperverse.world;
 
 import org.bukkit.Location;
 import org.bukkit.World;
+import org.bukkit.block.Block;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 import org.checkerframework.checker.nullness.qual.NonNull;
@@ -28,8 +29,10 @@ import org.incendo.hyperverse.flags.FlagParseException;
 import org.incendo.hyperverse.flags.WorldFlag;
 import org.incendo.hyperverse.teleportation.TeleportationManager;
 
+import java.time.Duration;
 import java.util.Collection;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
 
 /**
@@ -50,8 +53,11 @@ public interface HyperWorld {
      * Teleport a player to this world
      *
      * @param player Player to teleport
+     * @return Future that completes on the main thread with {@code true} once the player has
+     *         been sent to the world, or {@code false} if the player was already in the world,
+     *         went offline or wasn't allowed to enter it
      */
-    void teleportPlayer(@NonNull Player player);
+    @NonNull CompletableFuture<@NonNull Boolean> teleportPlayer(@NonNull Player player);
 
     /**
      * Get the world spawn location
@@ -60,6 +66,31 @@ public interface HyperWorld {
      */
     @Nullable Location getSpawn();
 
+    /**
+     * Get the cached safe spawn location. This is the world spawn, or the closest safe
+     * location to it if the spawn itself is unsafe. The location is resolved by the first
+     * spawn teleport and cached until {@link #invalidateSafeSpawn()} is called
+     *
+     * @return Safe spawn location, or {@code null} if it has not been resolved yet
+     */
+    @Nullable Location getSafeSpawn();
+
+    /**
+     * Drop the cached safe spawn location and resolve it again asynchronously. This
+     * should be called when the spawn is moved, or when a block that
+     * {@link #isNearSpawn(Block) is near the spawn} changes
+     */
+    void invalidateSafeSpawn();
+
+    /**
+     * Check whether or not a block is close enough to the spawn location, or the
+     * cached safe spawn location, for changes to it to affect spawn safety
+     *
+     * @param block Block to check
+     * @return {@code true} if the block is near the spawn
+     */
+    boolean isNearSpawn(@NonNull Block block);
+
     /**
      * Get the world UUID
      *
@@ -107,6 +138,15 @@ public interface HyperWorld {
      */
     boolean isLoaded();
 
+    /**
+     * Make sure that the world is loaded before it is used. If the world is
+     * unloaded and has the {@link org.incendo.hyperverse.flags.implementation.OnDemandFlag on-demand flag}
+     * set, it is loaded. This must be called from the main thread
+     *
+     * @return {@code true} if the world is loaded
+     */
+    boolean ensureLoaded();
+
     /**
      * Attempt to delete the world
      *
@@ -114,6 +154,17 @@ public interface HyperWorld {
      */
     void deleteWorld(@NonNull Consumer<@NonNull WorldUnloadResult> result);
 
+    /**
+     * Attempt to delete the world, and optionally its directory. The directory is
+     * usually moved out of the way right away, and its files are deleted in the background.
+     * A directory that can't be moved is deleted in place first
+     *
+     * @param deleteDirectory Whether or not the world directory should be deleted
+     * @return Future that completes on the main thread with the result of the deletion once
+     *         the directory is gone, or completes exceptionally if the world directory was kept
+     */
+    @NonNull CompletableFuture<@NonNull WorldUnloadResult> deleteWorld(boolean deleteDirectory);
+
     /**
      * Attempt to unload the world and save it to disk.
      *
@@ -175,6 +226,13 @@ public interface HyperWorld {
      */
     @NonNull TeleportationManager getTeleportationManager();
 
+    /**
+     * Get the spawn policy derived from the creature and mob spawn flags
+     *
+     * @return Spawn policy
+     */
+    @NonNull SpawnPolicy getSpawnPolicy();
+
     /**
      * Refresh the world flags
      */
@@ -203,6 +261,37 @@ public interface HyperWorld {
      */
     boolean shouldKeepSpawnLoaded();
 
+    /**
+     * Put the world into hibernation. This pauses random ticks, the daylight and weather
+     * cycles and mob spawning, and lets the spawn chunks unload. The world only hibernates
+     * if it is loaded and empty
+     *
+     * @return {@code true} if the world went into hibernation
+     */
+    boolean hibernate();
+
+    /**
+     * Wake the world from hibernation, restoring the settings that were
+     * replaced when it went into hibernation. This does nothing if the
+     * world isn't hibernating
+     */
+    void wake();
+
+    /**
+     * Check whether or not the world is hibernating
+     *
+     * @return {@code true} if the world is hibernating
+     */
+    boolean isHibernating();
+
+    /**
+     * Get the total time that the world has spent in hibernation since
+     * the server started, including the current hibernation
+     *
+     * @return Time spent hibernating
+     */
+    @NonNull Duration getHibernationTime();
+
     /**
      * Result of unloading or deleting a world
      */
@@ -0,0 +1,280 @@
+//
+//  Hyperverse - A minecraft world management plugin
+//
+//  This program is free software: you can redistribute it and/or modify
+//  it under the terms of the GNU General Public License as published by
+//  the Free Software Foundation, either version 3 of the License, or
+//  (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful,
+//  but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  GNU General Public License for more details.
+//
+//  You should have received a copy of the GNU General Public License
+//  along with this program. If not, see <http://www.gnu.org/licenses/>.
+//
+
+package org.incendo.hyperverse.world;
+
+import io.papermc.lib.PaperLib;
+import org.bukkit.Server;
+import org.bukkit.World;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.incendo.hyperverse.configuration.Message;
+import org.incendo.hyperverse.configuration.Messages;
+import org.incendo.hyperverse.scheduling.SlicedJob;
+import org.incendo.hyperverse.util.MessageUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * Pre-generates the chunks within a square radius around a center chunk. The chunks
+ * are visited region by region, in a spiral around the center region, so that region
+ * files are written one at a time. Every chunk has a fixed index in that order, which
+ * is what makes it possible to resume the task after a restart. This is only
+ * accessed from the main thread
+ */
+final class PregenTask implements SlicedJob {
+
+    /**
+     * Interval (in ticks) between progress messages
+     */
+    private static final int PROGRESS_INTERVAL = 200;
+    /**
+     * Interval (in ticks) between progress saves
+     */
+    private static final int SAVE_INTERVAL = 600;
+    private static final int REGION_SHIFT = 5;
+    private static final int CHUNKS_PER_REGION = 1 << (REGION_SHIFT * 2);
+
+    private final NavigableSet<Long> inFlight = new TreeSet<>();
+    private final ChunkPregenerator pregenerator;
+    private final Server server;
+    private final World world;
+    private final State state;
+    private final CommandSender sender;
+    private final int[] regionX;
+    private final int[] regionZ;
+    private final long end;
+    private final long startGenerated;
+    private final long startTime = System.nanoTime();
+    private long nextIndex;
+    private int lastProgress;
+    private int lastSave;
+    private boolean stopped;
+
+    PregenTask(
+            final @NonNull ChunkPregenerator pregenerator,
+            final @NonNull Server server,
+            final @NonNull World world,
+            final @NonNull State state,
+            final @NonNull CommandSender sender
+    ) {
+        this.pregenerator = pregenerator;
+        this.server = server;
+        this.world = world;
+        this.state = state;
+        this.sender = sender;
+        final List<int[]> regions = spiral(state);
+        this.regionX = new int[regions.size()];
+        this.regionZ = new int[regions.size()];
+        for (int i = 0; i < regions.size(); i++) {
+            this.regionX[i] = regions.get(i)[0];
+            this.regionZ[i] = regions.get(i)[1];
+        }
+        this.end = (long) regions.size() * CHUNKS_PER_REGION;
+        this.nextIndex = Math.max(0L, state.position);
+        this.startGenerated = state.generated;
+        this.lastProgress = server.getCurrentTick();
+        this.lastSave = this.lastProgress;
+    }
+
+    /**
+     * List the regions that overlap the area, ordered in a square spiral
+     * around the region that contains the center chunk
+     */
+    private static @NonNull List<int[]> spiral(final @NonNull State state) {
+        final int minX = (state.centerX - state.radius) >> REGION_SHIFT;
+        final int maxX = (state.centerX + state.radius) >> REGION_SHIFT;
+        final int minZ = (state.centerZ - state.radius) >> REGION_SHIFT;
+        final int maxZ = (state.centerZ + state.radius) >> REGION_SHIFT;
+        final int centerX = state.centerX >> REGION_SHIFT;
+        final int centerZ = state.centerZ >> REGION_SHIFT;
+        final int rings = Math.max(Math.max(centerX - minX, maxX - centerX), Math.max(centerZ - minZ, maxZ - centerZ));
+        final List<int[]> regions = new ArrayList<>();
+        regions.add(new int[]{centerX, centerZ});
+        for (int ring = 1; ring <= rings; ring++) {
+            final List<int[]> perimeter = new ArrayList<>();
+            for (int x = centerX - ring; x < centerX + ring; x++) {
+                perimeter.add(new int[]{x, centerZ - ring});
+            }
+            for (int z = centerZ - ring; z < centerZ + ring; z++) {
+                perimeter.add(new int[]{centerX + ring, z});
+            }
+            for (int x = centerX + ring; x > centerX - ring; x--) {
+                perimeter.add(new int[]{x, centerZ + ring});
+            }
+            for (int z = centerZ + ring; z > centerZ - ring; z--) {
+                perimeter.add(new int[]{centerX - ring, z});
+            }
+            for (final int[] region : perimeter) {
+                if (region[0] >= minX && region[0] <= maxX && region[1] >= minZ && region[1] <= maxZ) {
+                    regions.add(region);
+                }
+            }
+        }
+        return regions;
+    }
+
+    @Override
+    public @NonNull Status step() {
+        if (this.stopped) {
+            return Status.DONE;
+        }
+        final int currentTick = this.server.getCurrentTick();
+        if (currentTick - this.lastProgress >= PROGRESS_INTERVAL) {
+            this.lastProgress = currentTick;
+            this.sendProgress();
+        }
+        if (currentTick - this.lastSave >= SAVE_INTERVAL) {
+            this.lastSave = currentTick;
+            this.pregenerator.save(this.snapshot());
+        }
+        if (this.nextIndex >= this.end) {
+            if (!this.inFlight.isEmpty()) {
+                return Status.YIELD;
+            }
+            this.stopped = true;
+            this.pregenerator.finish(this);
+            return Status.DONE;
+        }
+        if (!this.pregenerator.acquire()) {
+            return Status.YIELD;
+        }
+        while (this.nextIndex < this.end) {
+            final long index = this.nextIndex++;
+            final int region = (int) (index / CHUNKS_PER_REGION);
+            final int local = (int) (index % CHUNKS_PER_REGION);
+            final int chunkX = (this.regionX[region] << REGION_SHIFT) + (local & ((1 << REGION_SHIFT) - 1));
+            final int chunkZ = (this.regionZ[region] << REGION_SHIFT) + (local >> REGION_SHIFT);
+            if (Math.abs(chunkX - this.state.centerX) > this.state.radius
+                    || Math.abs(chunkZ - this.state.centerZ) > this.state.radius) {
+                continue;
+            }
+            this.inFlight.add(index);
+            PaperLib.getChunkAtAsync(this.world, chunkX, chunkZ, true).whenComplete((chunk, throwable) -> {
+                this.inFlight.remove(index);
+                if (throwable == null) {
+                    this.state.generated++;
+                }
+                this.pregenerator.release(throwable == null);
+            });
+            return Status.CONTINUE;
+        }
+        // There was nothing left to generate
+        this.pregenerator.release(false);
+        return Status.CONTINUE;
+    }
+
+    /**
+     * Stop dispatching chunks. Chunks that are already being generated will still complete
+     */
+    void stop() {
+        this.stopped = true;
+    }
+
+    /**
+     * Get a copy of the progress of the task. The position is that of the first chunk that
+     * hasn't been generated yet, so that no chunk is skipped when the task is resumed
+     *
+     * @return Progress snapshot
+     */
+    @NonNull State snapshot() {
+        final State snapshot = new State(this.state.world, this.state.centerX, this.state.centerZ, this.state.radius);
+        snapshot.position = this.inFlight.isEmpty() ? this.nextIndex : this.inFlight.first();
+        snapshot.generated = this.state.generated;
+        return snapshot;
+    }
+
+    /**
+     * Send a message with the current progress to whoever started the task
+     */
+    void sendProgress() {
+        final long generated = this.getGenerated();
+        final double seconds = Math.max(1L, System.nanoTime() - this.startTime) / 1_000_000_000.0D;
+        this.sendMessage(Messages.messagePregenProgress, "%generated%", Long.toString(generated),
+                "%chunks%", Long.toString(this.state.getTotal()),
+                "%percent%", String.format("%.1f", generated * 100.0D / this.state.getTotal()),
+                "%rate%", String.format("%.1f", (generated - this.startGenerated) / seconds)
+        );
+    }
+
+    void sendMessage(final @NonNull Message message, final @NonNull String... replacements) {
+        final String[] allReplacements = new String[replacements.length + 2];
+        allReplacements[0] = "%world%";
+        allReplacements[1] = this.state.world;
+        System.arraycopy(replacements, 0, allReplacements, 2, replacements.length);
+        if (this.sender instanceof Player && !((Player) this.sender).isOnline()) {
+            MessageUtil.sendMessage(this.server.getConsoleSender(), message, allReplacements);
+        } else {
+            MessageUtil.sendMessage(this.sender, message, allReplacements);
+        }
+    }
+
+    /**
+     * Get the number of chunks that have been generated. Chunks that were being generated
+     * when the task was interrupted are generated again when it is resumed, so the stored
+     * count is capped at the total
+     *
+     * @return Generated chunks
+     */
+    long getGenerated() {
+        return Math.min(this.state.generated, this.state.getTotal());
+    }
+
+    @NonNull String getWorldName() {
+        return this.state.world;
+    }
+
+    /**
+     * Persistent progress of a pre-generation task
+     */
+    static final class State {
+
+        private String world;
+        private int centerX;
+        private int centerZ;
+        private int radius;
+        private long position;
+        private long generated;
+
+        State(final @NonNull String world, final int centerX, final int centerZ, final int radius) {
+            this.world = world;
+            this.centerX = centerX;
+            this.centerZ = centerZ;
+            this.radius = radius;
+        }
+
+        @NonNull String getWorld() {
+            return this.world;
+        }
+
+        /**
+         * Get the number of chunks in the area
+         *
+         * @return Chunk count
+         */
+        long getTotal() {
+            final long width = 2L * this.radius + 1L;
+            return width * width;
+        }
+
+    }
+
+}
@@ -25,8 +25,10 @@ import org.bukkit.GameRule;
 import org.bukkit.Location;
 import org.bukkit.Server;
 import org.bukkit.World;
+import org.bukkit.block.Block;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
+import org.bukkit.entity.SpawnCategory;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.incendo.hyperverse.configuration.HyperConfiguration;
@@ -39,26 +41,46 @@ import org.incendo.hyperverse.flags.FlagParseException;
 import org.incendo.hyperverse.flags.GlobalWorldFlagContainer;
 import org.incendo.hyperverse.flags.WorldFlag;
 import org.incendo.hyperverse.flags.implementation.AliasFlag;
+import org.incendo.hyperverse.flags.implementation.AmbientSpawnFlag;
+import org.incendo.hyperverse.flags.implementation.CreatureSpawnFlag;
 import org.incendo.hyperverse.flags.implementation.DifficultyFlag;
 import org.incendo.hyperverse.flags.implementation.ForceSpawn;
+import org.incendo.hyperverse.flags.implementation.HibernateFlag;
+import org.incendo.hyperverse.flags.implementation.MobSpawnFlag;
+import org.incendo.hyperverse.flags.implementation.OnDemandFlag;
+import org.incendo.hyperverse.flags.implementation.ProfileGroupFlag;
 import org.incendo.hyperverse.flags.implementation.SaveWorldFlag;
 import org.incendo.hyperverse.flags.implementation.UnloadSpawnFlag;
+import org.incendo.hyperverse.flags.implementation.WaterSpawnFlag;
 import org.incendo.hyperverse.modules.FlagContainerFactory;
 import org.incendo.hyperverse.modules.HyperEventFactory;
 import org.incendo.hyperverse.modules.HyperWorldCreatorFactory;
 import org.incendo.hyperverse.modules.PersistentLocationTransformer;
 import org.incendo.hyperverse.modules.TeleportationManagerFactory;
+import org.incendo.hyperverse.profiles.ProfileStore;
+import org.incendo.hyperverse.scheduling.JobPriority;
+import org.incendo.hyperverse.scheduling.MainThreadScheduler;
+import org.incendo.hyperverse.scheduling.SlicedJob;
 import org.incendo.hyperverse.teleportation.TeleportationManager;
 import org.incendo.hyperverse.util.MessageUtil;
 
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.function.Consumer;
 
 /**
@@ -67,6 +89,29 @@ import java.util.function.Consumer;
  */
 public final class SimpleWorld implements HyperWorld {
 
+    /**
+     * Distance (in blocks) from the spawn within which block changes invalidate the safe spawn
+     */
+    private static final int SPAWN_VOLUME_RADIUS = 2;
+    /**
+     * Delay (in ticks) before an invalidated safe spawn is resolved again, so that bursts of block changes
+     * only cause a single search
+     */
+    private static final int SAFE_SPAWN_REFRESH_DELAY = 20;
+    /**
+     * Game rules that are overridden while the world is hibernating
+     */
+    private static final Map<GameRule<?>, Object> HIBERNATION_GAME_RULES = new LinkedHashMap<>();
+
+    static {
+        HIBERNATION_GAME_RULES.put(GameRule.RANDOM_TICK_SPEED, 0);
+        HIBERNATION_GAME_RULES.put(GameRule.DO_DAYLIGHT_CYCLE, false);
+        HIBERNATION_GAME_RULES.put(GameRule.DO_WEATHER_CYCLE, false);
+        HIBERNATION_GAME_RULES.put(GameRule.DO_MOB_SPAWNING, false);
+        HIBERNATION_GAME_RULES.put(GameRule.DO_PATROL_SPAWNING, false);
+        HIBERNATION_GAME_RULES.put(GameRule.DO_TRADER_SPAWNING, false);
+    }
+
     private final UUID worldUUID;
     private final WorldConfiguration configuration;
     private final HyperWorldCreatorFactory hyperWorldCreatorFactory;
@@ -78,10 +123,24 @@ public final class SimpleWorld implements HyperWorld {
     private final HyperEventFactory hyperEventFactory;
     private final TeleportationManager teleportationManager;
     private final PersistentLocationTransformer locationTransformer;
+    private final ProfileStore profileStore;
     private final Server server;
     private final GlobalWorldFlagContainer globalWorldFlagContainer;
+    private final MainThreadScheduler mainThreadScheduler;
+    private final WorldTrash worldTrash;
+    private final ChunkPregenerator chunkPregenerator;
     private boolean flagsInitialized = false;
+    private final Set<SpawnCategory> suppressedCategories = EnumSet.noneOf(SpawnCategory.class);
+    private volatile SpawnPolicy spawnPolicy;
+    private boolean spawnFlagsChanged;
     private World bukkitWorld;
+    private Location safeSpawn;
+    private CompletableFuture<Location> safeSpawnFuture;
+    private int safeSpawnRevision;
+    private boolean safeSpawnRefreshScheduled;
+    private volatile boolean hibernating;
+    private volatile long hibernatingSince;
+    private volatile long hibernationTime;
 
     @Inject
     public SimpleWorld(
@@ -97,7 +156,11 @@ public final class SimpleWorld implements HyperWorld {
             final @NonNull HyperEventFactory hyperEventFactory,
             final @NonNull TeleportationManagerFactory teleportationManagerFactory,
             final @NonNull PersistentLocationTransformer locationTransformer,
-            final @NonNull Server server
+            final @NonNull ProfileStore profileStore,
+            final @NonNull Server server,
+            final @NonNull MainThreadScheduler mainThreadScheduler,
+            final @NonNull WorldTrash worldTrash,
+            final @NonNull ChunkPregenerator chunkPregenerator
     ) {
         this.worldUUID = Objects.requireNonNull(worldUUID);
         this.configuration = Objects.requireNonNull(configuration);
@@ -109,9 +172,24 @@ public final class SimpleWorld implements HyperWorld {
         this.hyperConfiguration = Objects.requireNonNull(hyperConfiguration);
         this.teleportationManager = Objects.requireNonNull(teleportationManagerFactory).create(this);
         this.locationTransformer = Objects.requireNonNull(locationTransformer);
+        this.profileStore = Objects.requireNonNull(profileStore);
         this.server = Objects.requireNonNull(server);
         this.globalWorldFlagContainer = Objects.requireNonNull(globalFlagContainer);
+        this.mainThreadScheduler = Objects.requireNonNull(mainThreadScheduler);
+        this.worldTrash = Objects.requireNonNull(worldTrash);
+        this.chunkPregenerator = Objects.requireNonNull(chunkPregenerator);
         this.flagContainer = Objects.requireNonNull(flagContainerFactory).create((flag, type) -> {
+            if (flag instanceof CreatureSpawnFlag || flag instanceof MobSpawnFlag
+                    || flag instanceof AmbientSpawnFlag || flag instanceof WaterSpawnFlag) {
+                this.updateSpawnPolicy();
+            }
+            if (flag instanceof HibernateFlag && this.flagsInitialized) {
+                if (this.getFlag(HibernateFlag.class)) {
+                    this.hibernate();
+                } else {
+                    this.wake();
+                }
+            }
             if (this.flagsInitialized) {
                 if (type == FlagContainer.WorldFlagUpdateType.FLAG_REMOVED) {
                     this.configuration.setFlagValue(flag.getName(), null);
@@ -136,9 +214,19 @@ public final class SimpleWorld implements HyperWorld {
                 }
             }
         }
+        this.updateSpawnPolicy();
         this.flagsInitialized = true;
     }
 
+    private void updateSpawnPolicy() {
+        this.spawnPolicy = SpawnPolicy.of(
+                this.getFlag(CreatureSpawnFlag.class),
+                this.getFlag(MobSpawnFlag.class),
+                this.getFlag(AmbientSpawnFlag.class),
+                this.getFlag(WaterSpawnFlag.class)
+        );
+    }
+
     @Override
     public void saveConfiguration() {
         this.taskChainFactory.newChain().async(() -> this.getConfiguration().writeToFile(this.worldManager.getWorldDirectory().
@@ -150,6 +238,27 @@ public final class SimpleWorld implements HyperWorld {
         return this.bukkitWorld != null;
     }
 
+    @Override
+    public boolean ensureLoaded() {
+        if (this.bukkitWorld != null) {
+            return true;
+        }
+        if (!this.getFlag(OnDemandFlag.class)) {
+            return false;
+        }
+        // The load status in the configuration is left alone, so that the world isn't loaded on startup
+        this.worldManager.ignoreWorld(this.configuration.getName());
+        try {
+            this.createBukkitWorld();
+        } catch (final HyperWorldValidationException e) {
+            MessageUtil.sendMessage(this.server.getConsoleSender(), Messages.messageWorldImportFailure,
+                    "%world%", this.configuration.getName(), "%result%", e.getMessage()
+            );
+            return false;
+        }
+        return this.bukkitWorld != null;
+    }
+
     @Override
     public void deleteWorld(final @NonNull Consumer<@NonNull WorldUnloadResult> result) {
         if (this.bukkitWorld != null) {
@@ -178,6 +287,10 @@ public final class SimpleWorld implements HyperWorld {
             }
         }).sync(() -> {
             this.worldManager.unregisterWorld(this);
+            // The global flag container would otherwise keep the world alive
+            this.flagContainer.detach();
+            // A new world with the same name must not resume the old pre-generation task
+            this.chunkPregenerator.forget(this);
             // Delete world in the database
             this.hyperDatabase.clearWorld(this.configuration.getName());
             result.accept(WorldUnloadResult.SUCCESS);
@@ -186,6 +299,29 @@ public final class SimpleWorld implements HyperWorld {
         }).execute();
     }
 
+    @Override
+    public @NonNull CompletableFuture<@NonNull WorldUnloadResult> deleteWorld(final boolean deleteDirectory) {
+        final CompletableFuture<WorldUnloadResult> future = new CompletableFuture<>();
+        final Path directory = this.server.getWorldContainer().toPath().resolve(this.configuration.getName());
+        this.deleteWorld(result -> {
+            if (result != WorldUnloadResult.SUCCESS || !deleteDirectory || !Files.exists(directory)) {
+                future.complete(result);
+                return;
+            }
+            // The future only completes once the directory is gone, so that a new world
+            // with the same name never ends up in the directory that is being deleted
+            this.worldTrash.trash(directory).whenComplete((ignored, throwable) -> this.taskChainFactory.newChain().sync(() -> {
+                if (throwable == null) {
+                    future.complete(result);
+                } else {
+                    future.completeExceptionally(throwable instanceof CompletionException
+                            ? throwable.getCause() : throwable);
+                }
+            }).execute());
+        });
+        return future;
+    }
+
     @Override
     public @NonNull WorldUnloadResult unloadWorld() {
         return this.unloadWorld(true);
@@ -202,6 +338,8 @@ public final class SimpleWorld implements HyperWorld {
         if (!this.bukkitWorld.getPlayers().isEmpty()) {
             return WorldUnloadResult.FAILURE_HAS_PLAYERS;
         }
+        // Make sure that the hibernation game rules don't end up in level.dat
+        this.wake();
         if (!this.server.unloadWorld(this.bukkitWorld, saveWorld)) {
             return WorldUnloadResult.FAILURE_OTHER;
         }
@@ -211,6 +349,7 @@ public final class SimpleWorld implements HyperWorld {
         this.saveConfiguration();
 
         this.bukkitWorld = null;
+        this.invalidateSafeSpawn();
         return WorldUnloadResult.SUCCESS;
     }
 
@@ -299,15 +438,24 @@ public final class SimpleWorld implements HyperWorld {
         if (this.bukkitWorld == null || this.shouldKeepSpawnLoaded()) {
             return;
         }
-        try {
-            for (final Chunk chunk : this.bukkitWorld.getLoadedChunks()) {
-                if (chunk.isForceLoaded() || chunk.getInhabitedTime() > 0) {
-                    continue;
+        // Unloading saves the chunk, so spread the work out over several ticks
+        final World world = this.bukkitWorld;
+        final Iterator<Chunk> chunks = Arrays.asList(world.getLoadedChunks()).iterator();
+        this.mainThreadScheduler.submit(String.format("unload chunks in %s", this.configuration.getName()),
+                JobPriority.MAINTENANCE, () -> {
+                    if (!world.equals(this.bukkitWorld) || !chunks.hasNext()) {
+                        return SlicedJob.Status.DONE;
+                    }
+                    final Chunk chunk = chunks.next();
+                    try {
+                        if (chunk.isLoaded() && !chunk.isForceLoaded() && chunk.getInhabitedTime() <= 0) {
+                            chunk.unload(true);
+                        }
+                    } catch (final Exception ignored) {
+                    }
+                    return chunks.hasNext() ? SlicedJob.Status.CONTINUE : SlicedJob.Status.DONE;
                 }
-                chunk.unload(true);
-            }
-        } catch (final Exception ignored) {
-        }
+        );
     }
 
     @Override
@@ -320,6 +468,8 @@ public final class SimpleWorld implements HyperWorld {
         if (world != null) {
             this.bukkitWorld = world;
             this.refreshFlags();
+            this.restoreGameRules();
+            this.hibernateIfEmpty();
             this.unloadChunks();
             return;
         }
@@ -336,49 +486,148 @@ public final class SimpleWorld implements HyperWorld {
         }
         this.bukkitWorld = world;
         this.refreshFlags();
+        this.restoreGameRules();
+        this.hibernateIfEmpty();
         this.unloadChunks();
     }
 
     @Override
-    public void teleportPlayer(final @NonNull Player player) {
-        if (this.bukkitWorld == null) {
+    public @NonNull CompletableFuture<@NonNull Boolean> teleportPlayer(final @NonNull Player player) {
+        if (!this.ensureLoaded()) {
             throw new IllegalStateException(
                     "Cannot teleport a player to a world before it has been generated");
         }
 
         if (player.getWorld().equals(this.bukkitWorld)) {
-            return;
+            return CompletableFuture.completedFuture(false);
         }
 
-        final Location location;
+        if (this.hyperConfiguration.shouldGroupProfiles()) {
+            // Load the profile while the destination is being checked
+            final HyperWorld from = this.worldManager.getWorld(player.getWorld());
+            final String group = this.getFlag(ProfileGroupFlag.class);
+            if (from == null || !group.equals(from.getFlag(ProfileGroupFlag.class))) {
+                this.profileStore.prefetchProfile(player.getUniqueId(), group);
+            }
+        }
+
+        Location location = null;
         if (!this.getFlag(ForceSpawn.class) && this.hyperConfiguration.shouldPersistLocations()) {
+            final CompletableFuture<Void> pending = this.hyperDatabase.awaitLocations(player.getUniqueId());
+            if (!pending.isDone()) {
+                // The persistent locations are still being loaded, so we
+                // wait for them instead of falling back to the spawn location
+                final CompletableFuture<Boolean> result = new CompletableFuture<>();
+                pending.thenRun(() -> this.taskChainFactory.newChain().sync(() -> {
+                    if (player.isOnline()) {
+                        this.teleportPlayer(player).thenAccept(result::complete);
+                    } else {
+                        result.complete(false);
+                    }
+                }).execute());
+                return result;
+            }
             location = this.hyperDatabase.getLocation(player.getUniqueId(),
                     this.getConfiguration().getName(), LocationType.PLAYER_LOCATION
             )
                     .map(this.locationTransformer::transform)
-                    .orElse(Objects.requireNonNull(this.getSpawn()));
-        } else {
-            location = this.getSpawn();
+                    .orElse(null);
         }
 
-        assert location != null;
-        this.teleportationManager.allowedTeleport(player, location).thenAccept(value -> {
+        if (location == null) {
+            return this.teleportToSpawn(player);
+        }
+
+        final Location destination = location;
+        return this.teleportationManager.allowedTeleport(player, destination).thenCompose(value -> {
             if (!value) {
                 MessageUtil.sendMessage(player, Messages.messageNotPermittedEntry);
-            } else {
-                this.teleportationManager.canTeleport(player, location).thenAccept(safe -> {
-                    if (!safe) {
-                        MessageUtil.sendMessage(player, Messages.messageTeleportNotSafe);
-                        this.teleportationManager.findSafe(location).thenAccept(safeLocation ->
-                                this.teleportationManager.teleportPlayer(player, safeLocation));
-                    } else {
-                        this.teleportationManager.teleportPlayer(player, location);
-                    }
-                });
+                return CompletableFuture.completedFuture(false);
             }
+            return this.teleportationManager.findSafe(destination).thenCompose(safeLocation -> {
+                if (!destination.equals(safeLocation)) {
+                    MessageUtil.sendMessage(player, Messages.messageTeleportNotSafe);
+                }
+                return this.teleportationManager.teleportPlayer(player, safeLocation);
+            });
+        });
+    }
+
+    private @NonNull CompletableFuture<@NonNull Boolean> teleportToSpawn(final @NonNull Player player) {
+        final Location spawn = Objects.requireNonNull(this.getSpawn());
+        return this.teleportationManager.allowedTeleport(player, spawn).thenCompose(value -> {
+            if (!value) {
+                MessageUtil.sendMessage(player, Messages.messageNotPermittedEntry);
+                return CompletableFuture.completedFuture(false);
+            }
+            final CompletableFuture<Location> safeSpawn = this.safeSpawn != null
+                    ? CompletableFuture.completedFuture(this.safeSpawn)
+                    : this.resolveSafeSpawn();
+            return safeSpawn.thenCompose(safeLocation -> {
+                if (!spawn.equals(safeLocation)) {
+                    MessageUtil.sendMessage(player, Messages.messageTeleportNotSafe);
+                }
+                return this.teleportationManager.teleportPlayer(player, safeLocation);
+            });
         });
     }
 
+    private @NonNull CompletableFuture<@NonNull Location> resolveSafeSpawn() {
+        if (this.safeSpawnFuture != null) {
+            return this.safeSpawnFuture;
+        }
+        final int revision = this.safeSpawnRevision;
+        final CompletableFuture<Location> future = this.teleportationManager.findSafe(Objects.requireNonNull(this.getSpawn()));
+        this.safeSpawnFuture = future;
+        future.whenComplete((location, throwable) -> {
+            if (this.safeSpawnFuture == future) {
+                this.safeSpawnFuture = null;
+            }
+            // Results computed before an invalidation may already be outdated
+            if (throwable == null && revision == this.safeSpawnRevision && this.bukkitWorld != null) {
+                this.safeSpawn = location;
+            }
+        });
+        return future;
+    }
+
+    @Override
+    public @Nullable Location getSafeSpawn() {
+        return this.safeSpawn;
+    }
+
+    @Override
+    public void invalidateSafeSpawn() {
+        this.safeSpawn = null;
+        this.safeSpawnFuture = null;
+        this.safeSpawnRevision++;
+        if (this.bukkitWorld == null || this.safeSpawnRefreshScheduled) {
+            return;
+        }
+        this.safeSpawnRefreshScheduled = true;
+        this.taskChainFactory.newChain().delay(SAFE_SPAWN_REFRESH_DELAY).sync(() -> {
+            this.safeSpawnRefreshScheduled = false;
+            if (this.bukkitWorld != null && this.safeSpawn == null) {
+                this.resolveSafeSpawn();
+            }
+        }).execute();
+    }
+
+    @Override
+    public boolean isNearSpawn(final @NonNull Block block) {
+        if (this.bukkitWorld == null || !this.bukkitWorld.equals(block.getWorld())) {
+            return false;
+        }
+        final Location safeSpawn = this.safeSpawn;
+        return isNear(this.bukkitWorld.getSpawnLocation(), block) || (safeSpawn != null && isNear(safeSpawn, block));
+    }
+
+    private static boolean isNear(final @NonNull Location location, final @NonNull Block block) {
+        return Math.abs(block.getX() - location.getBlockX()) <= SPAWN_VOLUME_RADIUS
+                && Math.abs(block.getY() - location.getBlockY()) <= SPAWN_VOLUME_RADIUS
+                && Math.abs(block.getZ() - location.getBlockZ()) <= SPAWN_VOLUME_RADIUS;
+    }
+
     @Override
     public @Nullable Location getSpawn() {
         if (this.bukkitWorld == null) {
@@ -431,6 +680,8 @@ public final class SimpleWorld implements HyperWorld {
         }
         this.bukkitWorld = world;
         this.refreshFlags();
+        this.restoreGameRules();
+        this.hibernateIfEmpty();
         this.unloadChunks();
     }
 
@@ -457,6 +708,7 @@ public final class SimpleWorld implements HyperWorld {
     @Override
     public <T> void removeFlag(final @NonNull WorldFlag<T, ?> flagInstance) {
         this.flagContainer.removeFlag(flagInstance);
+        this.refreshFlags();
     }
 
     @Override
@@ -469,12 +721,141 @@ public final class SimpleWorld implements HyperWorld {
         return this.teleportationManager;
     }
 
+    @Override
+    public @NonNull SpawnPolicy getSpawnPolicy() {
+        return this.spawnPolicy;
+    }
+
     @Override
     public void refreshFlags() {
         if (this.bukkitWorld != null) {
             this.bukkitWorld.setDifficulty(this.getFlag(DifficultyFlag.class));
-            this.bukkitWorld.setKeepSpawnInMemory(this.shouldKeepSpawnLoaded());
+            this.bukkitWorld.setKeepSpawnInMemory(!this.isHibernating() && this.shouldKeepSpawnLoaded());
             this.bukkitWorld.setAutoSave(this.getFlag(SaveWorldFlag.class));
+            this.refreshSpawnSettings();
+        }
+    }
+
+    /**
+     * Hibernate the world straight away if it has been loaded without players in it,
+     * as the world would otherwise only hibernate once the last player leaves it
+     */
+    private void hibernateIfEmpty() {
+        if (this.getFlag(HibernateFlag.class)) {
+            this.hibernate();
+        }
+    }
+
+    @Override
+    public boolean hibernate() {
+        if (this.bukkitWorld == null || this.isHibernating() || !this.bukkitWorld.getPlayers().isEmpty()) {
+            return false;
+        }
+        // Store the original values before anything is changed, so that they
+        // survive a crash while the world is hibernating
+        final Map<String, String> gameRules = new HashMap<>();
+        for (final GameRule<?> gameRule : HIBERNATION_GAME_RULES.keySet()) {
+            final Object value = this.bukkitWorld.getGameRuleValue(gameRule);
+            if (value != null) {
+                gameRules.put(gameRule.getName(), value.toString());
+            }
+        }
+        this.configuration.setHibernatedGameRules(gameRules);
+        this.saveConfiguration();
+        for (final Map.Entry<GameRule<?>, Object> entry : HIBERNATION_GAME_RULES.entrySet()) {
+            this.setGameRule(entry.getKey(), entry.getValue());
+        }
+        this.hibernatingSince = System.nanoTime();
+        this.hibernating = true;
+        this.bukkitWorld.setKeepSpawnInMemory(false);
+        return true;
+    }
+
+    @Override
+    public void wake() {
+        if (!this.isHibernating()) {
+            return;
+        }
+        this.hibernating = false;
+        this.hibernationTime += System.nanoTime() - this.hibernatingSince;
+        this.restoreGameRules();
+        if (this.bukkitWorld != null) {
+            this.bukkitWorld.setKeepSpawnInMemory(this.shouldKeepSpawnLoaded());
+        }
+    }
+
+    /**
+     * Restore game rules that were stored when the world went into hibernation. This
+     * also recovers worlds that were still hibernating when the server stopped
+     */
+    private void restoreGameRules() {
+        final Map<String, String> gameRules = this.configuration.getHibernatedGameRules();
+        if (gameRules == null || this.bukkitWorld == null) {
+            return;
+        }
+        for (final Map.Entry<String, String> entry : gameRules.entrySet()) {
+            final GameRule<?> gameRule = GameRule.getByName(entry.getKey());
+            if (gameRule == null) {
+                continue;
+            }
+            if (gameRule.getType() == Boolean.class) {
+                this.setGameRule(gameRule, Boolean.parseBoolean(entry.getValue()));
+            } else if (gameRule.getType() == Integer.class) {
+                try {
+                    this.setGameRule(gameRule, Integer.parseInt(entry.getValue()));
+                } catch (final NumberFormatException ignored) {
+                }
+            }
+        }
+        this.configuration.setHibernatedGameRules(null);
+        this.saveConfiguration();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> void setGameRule(final @NonNull GameRule<T> gameRule, final @NonNull Object value) {
+        this.bukkitWorld.setGameRule(gameRule, (T) value);
+    }
+
+    @Override
+    public boolean isHibernating() {
+        return this.hibernating;
+    }
+
+    @Override
+    public @NonNull Duration getHibernationTime() {
+        long time = this.hibernationTime;
+        if (this.hibernating) {
+            time += System.nanoTime() - this.hibernatingSince;
+        }
+        return Duration.ofNanos(time);
+    }
+
+    /**
+     * Apply the spawn flags to the native world spawn settings, so that the server
+     * doesn't attempt to spawn entities that would be cancelled by the spawn listeners
+     * anyway. Settings are only reset to the server defaults if they were changed
+     * by Hyperverse, so that settings configured elsewhere are left alone
+     */
+    private void refreshSpawnSettings() {
+        final SpawnPolicy spawnPolicy = this.spawnPolicy;
+        for (final SpawnCategory spawnCategory : SpawnCategory.values()) {
+            if (spawnCategory == SpawnCategory.MISC) {
+                // Miscellaneous entities have no spawn limit
+                continue;
+            }
+            if (!spawnPolicy.allowsCategory(spawnCategory)) {
+                this.bukkitWorld.setSpawnLimit(spawnCategory, 0);
+                this.bukkitWorld.setTicksPerSpawns(spawnCategory, 0);
+                this.suppressedCategories.add(spawnCategory);
+            } else if (this.suppressedCategories.remove(spawnCategory)) {
+                // Negative values make the world use the server defaults again
+                this.bukkitWorld.setSpawnLimit(spawnCategory, -1);
+                this.bukkitWorld.setTicksPerSpawns(spawnCategory, -1);
+            }
+        }
+        if (!spawnPolicy.allowsMonsters() || !spawnPolicy.allowsAnimals() || this.spawnFlagsChanged) {
+            this.bukkitWorld.setSpawnFlags(spawnPolicy.allowsMonsters(), spawnPolicy.allowsAnimals());
+            this.spawnFlagsChanged = !spawnPolicy.allowsMonsters() || !spawnPolicy.allowsAnimals();
         }
     }
 
@@ -18,8 +18,6 @@
 package org.incendo.hyperverse.world;
 
 import com.google.common.collect.HashMultimap;
-import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
@@ -27,8 +25,11 @@ import org.bukkit.Server;
 import org.bukkit.World;
 import org.bukkit.command.ConsoleCommandSender;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.server.PluginEnableEvent;
+import org.bukkit.event.world.WorldInitEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
 import org.bukkit.plugin.Plugin;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
@@ -44,11 +45,11 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Stream;
 
 /**
@@ -58,9 +59,9 @@ import java.util.stream.Stream;
 @Singleton
 public final class SimpleWorldManager implements WorldManager, Listener {
 
-    private final Map<String, HyperWorld> worldMap = Maps.newHashMap();
+    private final WorldRegistry worldRegistry = new WorldRegistry();
     private final Multimap<String, HyperWorld> waitingForPlugin = HashMultimap.create();
-    private final Collection<String> ignoredWorlds = Lists.newLinkedList();
+    private final Set<String> ignoredWorlds = ConcurrentHashMap.newKeySet();
 
     private final Plugin hyperverse;
     private final Server server;
@@ -127,7 +128,7 @@ public final class SimpleWorldManager implements WorldManager, Listener {
         // Also loop over all other worlds to see if anything was loaded sneakily
         final List<World> worlds = this.server.getWorlds();
         for (final World world : worlds) {
-            if (!this.worldMap.containsKey(world.getName())) {
+            if (this.getWorld(world.getName()) == null) {
                 final WorldImportResult importResult = this.importWorld(world, world.equals(worlds.get(0)), "");
                 if (importResult != WorldImportResult.SUCCESS) {
                     MessageUtil.sendMessage(this.server.getConsoleSender(), Messages.messageWorldImportFailure,
@@ -137,7 +138,7 @@ public final class SimpleWorldManager implements WorldManager, Listener {
             }
         }
         MessageUtil.sendMessage(this.server.getConsoleSender(), Messages.messageWorldLoaded, "%num%",
-                Integer.toString(this.worldMap.size())
+                Integer.toString(this.worldRegistry.getSnapshot().size())
         );
         // Now create the worlds
         this.createWorlds();
@@ -151,6 +152,7 @@ public final class SimpleWorldManager implements WorldManager, Listener {
             final HyperWorld hyperWorld = this.getWorld(world.getName());
             if (hyperWorld != null && hyperWorld.getBukkitWorld() == null) {
                 hyperWorld.setBukkitWorld(world);
+                this.worldRegistry.attach(world.getUID(), hyperWorld);
             }
         }
         // Now loop over the worlds again and create the ones that are
@@ -187,6 +189,21 @@ public final class SimpleWorldManager implements WorldManager, Listener {
         this.waitingForPlugin.removeAll(enableEvent.getPlugin().getName().toLowerCase());
     }
 
+    // The world is attached as soon as it has been initialised, so that it can be
+    // found while its spawn chunks are generated, which happens before it is loaded
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onWorldInit(final @NonNull WorldInitEvent event) {
+        final HyperWorld hyperWorld = this.getWorld(event.getWorld().getName());
+        if (hyperWorld != null) {
+            this.worldRegistry.attach(event.getWorld().getUID(), hyperWorld);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onWorldUnload(final @NonNull WorldUnloadEvent event) {
+        this.worldRegistry.detach(event.getWorld().getUID());
+    }
+
     private void attemptCreate(final @NonNull HyperWorld hyperWorld) {
         final ConsoleCommandSender consoleSender = this.server.getConsoleSender();
         try {
@@ -254,16 +271,20 @@ public final class SimpleWorldManager implements WorldManager, Listener {
     @Override
     public void registerWorld(final @NonNull HyperWorld hyperWorld) {
         Objects.requireNonNull(hyperWorld);
-        if (this.worldMap.containsKey(hyperWorld.getConfiguration().getName())) {
-            throw new IllegalArgumentException(
-                    String.format("World %s already exists", hyperWorld.getConfiguration().getName()));
+        final String name = hyperWorld.getConfiguration().getName();
+        // The world may have been loaded before it was registered
+        World world = hyperWorld.getBukkitWorld();
+        if (world == null) {
+            world = this.server.getWorld(name);
+        }
+        if (!this.worldRegistry.register(hyperWorld, world == null ? null : world.getUID())) {
+            throw new IllegalArgumentException(String.format("World %s already exists", name));
         }
-        this.worldMap.put(hyperWorld.getConfiguration().getName(), hyperWorld);
     }
 
     @Override
     public @NonNull Collection<@NonNull HyperWorld> getWorlds() {
-        return Collections.unmodifiableCollection(this.worldMap.values());
+        return this.worldRegistry.getSnapshot().getWorlds();
     }
 
     @Override
@@ -278,14 +299,29 @@ public final class SimpleWorldManager implements WorldManager, Listener {
 
     @Override
     public @Nullable HyperWorld getWorld(final @NonNull String name) {
-        return this.worldMap.get(name);
+        return this.worldRegistry.getSnapshot().getWorld(name);
+    }
+
+    @Override
+    public @Nullable HyperWorld getWorldIgnoreCase(final @NonNull String name) {
+        return this.worldRegistry.getSnapshot().getWorldIgnoreCase(name);
     }
 
     @Override
     public @Nullable HyperWorld getWorld(final @NonNull World world) {
+        final HyperWorld hyperWorld = this.worldRegistry.getSnapshot().getWorld(world.getUID());
+        if (hyperWorld != null) {
+            return hyperWorld;
+        }
+        // Worlds that were initialised before they were registered are only known by name
         return this.getWorld(world.getName());
     }
 
+    @Override
+    public @Nullable HyperWorld getWorld(final @NonNull UUID worldUID) {
+        return this.worldRegistry.getSnapshot().getWorld(worldUID);
+    }
+
     @Override
     public @NonNull Path getWorldDirectory() {
         return this.worldDirectory;
@@ -293,7 +329,7 @@ public final class SimpleWorldManager implements WorldManager, Listener {
 
     @Override
     public void unregisterWorld(final @NonNull HyperWorld hyperWorld) {
-        this.worldMap.remove(hyperWorld.getConfiguration().getName());
+        this.worldRegistry.unregister(hyperWorld.getConfiguration().getName());
     }
 
 }
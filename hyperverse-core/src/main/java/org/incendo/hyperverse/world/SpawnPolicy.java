@@ -0,0 +1,202 @@
+//
+//  Hyperverse - A minecraft world management plugin
+//
+//  This program is free software: you can redistribute it and/or modify
+//  it under the terms of the GNU General Public License as published by
+//  the Free Software Foundation, either version 3 of the License, or
+//  (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful,
+//  but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  GNU General Public License for more details.
+//
+//  You should have received a copy of the GNU General Public License
+//  along with this program. If not, see <http://www.gnu.org/licenses/>.
+//
+
+package org.incendo.hyperverse.world;
+
+import org.bukkit.entity.Ambient;
+import org.bukkit.entity.Animals;
+import org.bukkit.entity.Axolotl;
+import org.bukkit.entity.Boss;
+import org.bukkit.entity.EnderCrystal;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
+import org.bukkit.entity.Ghast;
+import org.bukkit.entity.IronGolem;
+import org.bukkit.entity.Monster;
+import org.bukkit.entity.NPC;
+import org.bukkit.entity.Phantom;
+import org.bukkit.entity.Shulker;
+import org.bukkit.entity.Slime;
+import org.bukkit.entity.SpawnCategory;
+import org.bukkit.entity.WaterMob;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import java.util.List;
+
+/**
+ * Precomputed spawn decisions for a world, indexed by {@link EntityType}.
+ * <p>
+ * There is only one policy per combination of the spawn flags, so
+ * policies are shared between worlds and never rebuilt.
+ */
+public final class SpawnPolicy {
+
+    private static final int CREATURE_SPAWN = 1;
+    private static final int MOB_SPAWN = 1 << 1;
+    private static final int AMBIENT_SPAWN = 1 << 2;
+    private static final int WATER_SPAWN = 1 << 3;
+
+    private static final List<Class<? extends Entity>> CREATURE_CLASSES = List.of(
+            IronGolem.class, Animals.class, WaterMob.class, Ambient.class, NPC.class
+    );
+    private static final List<Class<? extends Entity>> MOB_CLASSES = List.of(
+            Shulker.class, Monster.class, Boss.class, Slime.class, Ghast.class, Phantom.class, EnderCrystal.class
+    );
+    private static final List<Class<? extends Entity>> AMBIENT_CLASSES = List.of(Ambient.class);
+    private static final List<Class<? extends Entity>> WATER_CLASSES = List.of(WaterMob.class, Axolotl.class);
+    private static final SpawnPolicy[] POLICIES = new SpawnPolicy[16];
+
+    static {
+        for (int i = 0; i < POLICIES.length; i++) {
+            POLICIES[i] = new SpawnPolicy(i);
+        }
+    }
+
+    private final int allowed;
+    private final boolean[] cancelled;
+    private final boolean allowsAll;
+
+    private SpawnPolicy(final int allowed) {
+        this.allowed = allowed;
+        final EntityType[] entityTypes = EntityType.values();
+        this.cancelled = new boolean[entityTypes.length];
+        boolean allowsAll = true;
+        for (final EntityType entityType : entityTypes) {
+            final Class<? extends Entity> entityClass = entityType.getEntityClass();
+            if (entityClass == null) {
+                continue;
+            }
+            final boolean cancel = (!this.allows(CREATURE_SPAWN) && isAssignable(CREATURE_CLASSES, entityClass))
+                    || (!this.allows(MOB_SPAWN) && isAssignable(MOB_CLASSES, entityClass))
+                    || (!this.allows(AMBIENT_SPAWN) && isAssignable(AMBIENT_CLASSES, entityClass))
+                    || (!this.allows(WATER_SPAWN) && isAssignable(WATER_CLASSES, entityClass));
+            this.cancelled[entityType.ordinal()] = cancel;
+            allowsAll &= !cancel;
+        }
+        this.allowsAll = allowsAll;
+    }
+
+    /**
+     * Get the spawn policy for a combination of spawn flags
+     *
+     * @param creatureSpawn Value of the creature spawn flag
+     * @param mobSpawn      Value of the mob spawn flag
+     * @param ambientSpawn  Value of the ambient spawn flag
+     * @param waterSpawn    Value of the water spawn flag
+     * @return Spawn policy
+     */
+    public static @NonNull SpawnPolicy of(
+            final boolean creatureSpawn,
+            final boolean mobSpawn,
+            final boolean ambientSpawn,
+            final boolean waterSpawn
+    ) {
+        int allowed = 0;
+        if (creatureSpawn) {
+            allowed |= CREATURE_SPAWN;
+        }
+        if (mobSpawn) {
+            allowed |= MOB_SPAWN;
+        }
+        if (ambientSpawn) {
+            allowed |= AMBIENT_SPAWN;
+        }
+        if (waterSpawn) {
+            allowed |= WATER_SPAWN;
+        }
+        return POLICIES[allowed];
+    }
+
+    private static boolean isAssignable(
+            final @NonNull List<Class<? extends Entity>> classes,
+            final @NonNull Class<? extends Entity> entityClass
+    ) {
+        for (final Class<? extends Entity> clazz : classes) {
+            if (clazz.isAssignableFrom(entityClass)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean allows(final int flag) {
+        return (this.allowed & flag) != 0;
+    }
+
+    /**
+     * Check whether or not entities of the given type should be prevented from spawning
+     *
+     * @param entityType Entity type
+     * @return {@code true} if the spawn should be cancelled, else {@code false}
+     */
+    public boolean shouldCancel(final @NonNull EntityType entityType) {
+        return this.cancelled[entityType.ordinal()];
+    }
+
+    /**
+     * Check whether or not this policy allows every entity type to spawn. If it
+     * does, there is no need to inspect individual entities
+     *
+     * @return {@code true} if no spawn would be cancelled
+     */
+    public boolean allowsAll() {
+        return this.allowsAll;
+    }
+
+    /**
+     * Check whether or not natural spawning is allowed for a spawn category
+     *
+     * @param spawnCategory Spawn category
+     * @return {@code true} if entities in the category may spawn naturally
+     */
+    public boolean allowsCategory(final @NonNull SpawnCategory spawnCategory) {
+        switch (spawnCategory) {
+            case MONSTER:
+                return this.allows(MOB_SPAWN);
+            case ANIMAL:
+                return this.allows(CREATURE_SPAWN);
+            case AMBIENT:
+                return this.allows(CREATURE_SPAWN) && this.allows(AMBIENT_SPAWN);
+            case WATER_ANIMAL:
+            case WATER_AMBIENT:
+            case WATER_UNDERGROUND_CREATURE:
+            case AXOLOTL:
+                return this.allows(CREATURE_SPAWN) && this.allows(WATER_SPAWN);
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Check whether or not monsters may spawn naturally
+     *
+     * @return {@code true} if monsters may spawn
+     */
+    public boolean allowsMonsters() {
+        return this.allows(MOB_SPAWN);
+    }
+
+    /**
+     * Check whether or not animals may spawn naturally
+     *
+     * @return {@code true} if animals may spawn
+     */
+    public boolean allowsAnimals() {
+        return this.allows(CREATURE_SPAWN);
+    }
+
+}
@@ -47,6 +47,7 @@ public final class WorldConfiguration implements Cloneable {
     // Mutable properties
     private boolean loaded = true;
     private Map<String, String> flags;
+    private Map<String, String> hibernatedGameRules;
 
     WorldConfiguration(
             final @NonNull String name,
@@ -105,6 +106,9 @@ public final class WorldConfiguration implements Cloneable {
         other.generatorArg = this.generatorArg;
         other.worldFeatures = this.worldFeatures;
         other.flags = new HashMap<>(this.flags);
+        if (this.hibernatedGameRules != null) {
+            other.hibernatedGameRules = new HashMap<>(this.hibernatedGameRules);
+        }
         return other;
     }
 
@@ -247,6 +251,26 @@ public final class WorldConfiguration implements Cloneable {
         this.loaded = loaded;
     }
 
+    /**
+     * Get the game rule values that were replaced when the world went into hibernation.
+     * They are stored here so that they can be restored even if the server stops
+     * before the world wakes up
+     *
+     * @return Game rule values by name, or {@code null} if the world isn't hibernating
+     */
+    public @Nullable Map<@NonNull String, @NonNull String> getHibernatedGameRules() {
+        return this.hibernatedGameRules;
+    }
+
+    /**
+     * Set the game rule values that were replaced when the world went into hibernation
+     *
+     * @param hibernatedGameRules Game rule values by name, or {@code null} once the world has woken up
+     */
+    public void setHibernatedGameRules(final @Nullable Map<@NonNull String, @NonNull String> hibernatedGameRules) {
+        this.hibernatedGameRules = hibernatedGameRules;
+    }
+
     /**
      * Write this configuration to a file
      *
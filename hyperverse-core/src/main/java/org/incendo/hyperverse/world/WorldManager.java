@@ -24,6 +24,7 @@ import org.checkerframework.checker.nullness.qual.Nullable;
 import java.nio.file.Path;
 import java.util.Collection;
 import java.util.Objects;
+import java.util.UUID;
 
 /**
  * Manages {@link HyperWorld worlds}
@@ -69,7 +70,7 @@ public interface WorldManager {
     /**
      * Get all registered worlds
      *
-     * @return Immutable view of all recognized worlds
+     * @return Immutable snapshot of all recognized worlds
      */
     @NonNull Collection<HyperWorld> getWorlds();
 
@@ -81,14 +82,30 @@ public interface WorldManager {
      */
     @Nullable HyperWorld getWorld(@NonNull String name);
 
+    /**
+     * Get a world using its name, ignoring the case of the name
+     *
+     * @param name World name
+     * @return World, if it exists
+     */
+    @Nullable HyperWorld getWorldIgnoreCase(@NonNull String name);
+
     /**
      * Get a world from a Bukkit world
      *
      * @param world Bukkit world
-     * @return World, if it exists
+     * @return World, if it exists and is loaded
      */
     @Nullable HyperWorld getWorld(@NonNull World world);
 
+    /**
+     * Get a world from the UID of its Bukkit world
+     *
+     * @param worldUID Bukkit world UID
+     * @return World, if it exists and is loaded
+     */
+    @Nullable HyperWorld getWorld(@NonNull UUID worldUID);
+
     /**
      * Make a world ignored, this means that it won't
      * be registered by the world manager when
@@ -0,0 +1,156 @@
+//
+//  Hyperverse - A minecraft world management plugin
+//
+//  This program is free software: you can redistribute it and/or modify
+//  it under the terms of the GNU General Public License as published by
+//  the Free Software Foundation, either version 3 of the License, or
+//  (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful,
+//  but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  GNU General Public License for more details.
+//
+//  You should have received a copy of the GNU General Public License
+//  along with this program. If not, see <http://www.gnu.org/licenses/>.
+//
+
+package org.incendo.hyperverse.world;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import org.bukkit.World;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.WorldLoadEvent;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.incendo.hyperverse.configuration.HyperConfiguration;
+import org.incendo.hyperverse.flags.implementation.OnDemandFlag;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unloads {@link OnDemandFlag on-demand} worlds once they have been empty for the
+ * configured idle time.
+ * <p>
+ * A world is never unloaded sooner than the idle time after it was loaded. If a world
+ * is loaded again shortly after it was unloaded, its idle time is doubled (up to
+ * {@value #MAX_BACKOFF} times) so that busy worlds don't keep flapping between loaded
+ * and unloaded. The idle time goes back to normal once the world has stayed unloaded for a while.
+ * Worlds that are being pre-generated are kept loaded until their task finishes.
+ * This is only accessed from the main thread
+ */
+@Singleton
+public final class WorldReaper implements Listener {
+
+    /**
+     * Interval (in ticks) between idle checks
+     */
+    private static final long CHECK_INTERVAL = 200L;
+    private static final int MAX_BACKOFF = 8;
+
+    private final Map<UUID, IdleState> states = new HashMap<>();
+    private final WorldManager worldManager;
+    private final ChunkPregenerator chunkPregenerator;
+    private final long idleTime;
+    private long onDemandLoads;
+    private long reapedWorlds;
+
+    @Inject
+    public WorldReaper(
+            final @NonNull WorldManager worldManager,
+            final @NonNull ChunkPregenerator chunkPregenerator,
+            final @NonNull HyperConfiguration hyperConfiguration,
+            final @NonNull Plugin plugin,
+            final @NonNull BukkitScheduler scheduler
+    ) {
+        this.worldManager = Objects.requireNonNull(worldManager);
+        this.chunkPregenerator = Objects.requireNonNull(chunkPregenerator);
+        this.idleTime = TimeUnit.SECONDS.toMillis(Math.max(0L, hyperConfiguration.getOnDemandIdleTime()));
+        if (this.idleTime > 0L) {
+            scheduler.runTaskTimer(plugin, this::reap, CHECK_INTERVAL, CHECK_INTERVAL);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldLoad(final @NonNull WorldLoadEvent event) {
+        final HyperWorld hyperWorld = this.worldManager.getWorld(event.getWorld().getName());
+        if (hyperWorld == null || !hyperWorld.getFlag(OnDemandFlag.class)) {
+            return;
+        }
+        final long now = System.currentTimeMillis();
+        final IdleState state = this.states.computeIfAbsent(hyperWorld.getWorldUUID(), uuid -> new IdleState(now));
+        if (state.unloadedAt != 0L && now - state.unloadedAt < this.idleTime * state.backoff) {
+            state.backoff = Math.min(MAX_BACKOFF, state.backoff * 2);
+        } else {
+            state.backoff = 1;
+        }
+        // The world has to stay loaded for at least the idle time
+        state.emptySince = now;
+        this.onDemandLoads++;
+    }
+
+    /**
+     * Get the number of on-demand worlds that have been loaded
+     *
+     * @return On-demand load count
+     */
+    public long getOnDemandLoads() {
+        return this.onDemandLoads;
+    }
+
+    /**
+     * Get the number of idle worlds that have been unloaded
+     *
+     * @return Number of unloaded worlds
+     */
+    public long getReapedWorlds() {
+        return this.reapedWorlds;
+    }
+
+    private void reap() {
+        final long now = System.currentTimeMillis();
+        for (final HyperWorld hyperWorld : this.worldManager.getWorlds()) {
+            final World world = hyperWorld.getBukkitWorld();
+            if (world == null || !hyperWorld.getFlag(OnDemandFlag.class)) {
+                continue;
+            }
+            final IdleState state = this.states.computeIfAbsent(hyperWorld.getWorldUUID(), uuid -> new IdleState(now));
+            // Unloading the world would pause its pre-generation
+            if (!world.getPlayers().isEmpty() || this.chunkPregenerator.isRunning(hyperWorld)) {
+                state.emptySince = now;
+                continue;
+            }
+            if (now - state.emptySince < this.idleTime * state.backoff) {
+                continue;
+            }
+            if (hyperWorld.unloadWorld(true) == HyperWorld.WorldUnloadResult.SUCCESS) {
+                state.unloadedAt = now;
+                this.reapedWorlds++;
+            } else {
+                // Wait for another full idle period before trying again
+                state.emptySince = now;
+            }
+        }
+    }
+
+    private static final class IdleState {
+
+        private long emptySince;
+        private long unloadedAt;
+        private int backoff = 1;
+
+        private IdleState(final long emptySince) {
+            this.emptySince = emptySince;
+        }
+
+    }
+
+}
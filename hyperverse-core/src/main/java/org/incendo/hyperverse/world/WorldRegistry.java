@@ -0,0 +1,219 @@
+//
+//  Hyperverse - A minecraft world management plugin
+//
+//  This program is free software: you can redistribute it and/or modify
+//  it under the terms of the GNU General Public License as published by
+//  the Free Software Foundation, either version 3 of the License, or
+//  (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful,
+//  but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  GNU General Public License for more details.
+//
+//  You should have received a copy of the GNU General Public License
+//  along with this program. If not, see <http://www.gnu.org/licenses/>.
+//
+
+package org.incendo.hyperverse.world;
+
+import com.google.common.collect.ImmutableMap;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Copy-on-write registry of {@link HyperWorld worlds}.
+ * <p>
+ * Every change publishes a new immutable {@link Snapshot}. Readers never take a lock,
+ * and every lookup on a snapshot is consistent with the other lookups on that
+ * snapshot, no matter which thread they are made from. Writers are serialized, which
+ * is fine as worlds are registered and loaded rarely compared to how often they're read
+ */
+final class WorldRegistry {
+
+    private final Object writeLock = new Object();
+    private volatile Snapshot snapshot = new Snapshot(ImmutableMap.of(), ImmutableMap.of(), ImmutableMap.of());
+
+    /**
+     * Get the current snapshot of the registry
+     *
+     * @return Immutable snapshot
+     */
+    @NonNull Snapshot getSnapshot() {
+        return this.snapshot;
+    }
+
+    /**
+     * Register a world, unless a world with the same name is already registered
+     *
+     * @param hyperWorld World to register
+     * @param worldUID   UID of the Bukkit world, if the world is loaded
+     * @return {@code true} if the world was registered
+     */
+    boolean register(final @NonNull HyperWorld hyperWorld, final @Nullable UUID worldUID) {
+        final String name = hyperWorld.getConfiguration().getName();
+        synchronized (this.writeLock) {
+            final Snapshot snapshot = this.snapshot;
+            if (snapshot.worlds.containsKey(name)) {
+                return false;
+            }
+            this.snapshot = new Snapshot(
+                    copy(snapshot.worlds, map -> map.put(name, hyperWorld)),
+                    copy(snapshot.lowerCaseWorlds, map -> map.put(name.toLowerCase(Locale.ENGLISH), hyperWorld)),
+                    worldUID == null
+                            ? snapshot.bukkitWorlds
+                            : copy(snapshot.bukkitWorlds, map -> map.put(worldUID, hyperWorld))
+            );
+            return true;
+        }
+    }
+
+    /**
+     * Unregister the world with the given name
+     *
+     * @param name World name
+     * @return The removed world, or {@code null} if no world was registered with the name
+     */
+    @Nullable HyperWorld unregister(final @NonNull String name) {
+        synchronized (this.writeLock) {
+            final Snapshot snapshot = this.snapshot;
+            final HyperWorld removed = snapshot.worlds.get(name);
+            if (removed == null) {
+                return null;
+            }
+            this.snapshot = new Snapshot(
+                    copy(snapshot.worlds, map -> map.remove(name)),
+                    copy(snapshot.lowerCaseWorlds, map -> map.remove(name.toLowerCase(Locale.ENGLISH))),
+                    copy(snapshot.bukkitWorlds, map -> map.values().removeIf(hyperWorld -> hyperWorld == removed))
+            );
+            return removed;
+        }
+    }
+
+    /**
+     * Associate a loaded Bukkit world with a registered world. This does nothing
+     * if the world is no longer registered
+     *
+     * @param worldUID   Bukkit world UID
+     * @param hyperWorld Registered world
+     */
+    void attach(final @NonNull UUID worldUID, final @NonNull HyperWorld hyperWorld) {
+        synchronized (this.writeLock) {
+            final Snapshot snapshot = this.snapshot;
+            if (snapshot.worlds.get(hyperWorld.getConfiguration().getName()) != hyperWorld
+                    || snapshot.bukkitWorlds.get(worldUID) == hyperWorld) {
+                return;
+            }
+            this.snapshot = new Snapshot(
+                    snapshot.worlds,
+                    snapshot.lowerCaseWorlds,
+                    copy(snapshot.bukkitWorlds, map -> map.put(worldUID, hyperWorld))
+            );
+        }
+    }
+
+    /**
+     * Remove the association between a Bukkit world and a registered world
+     *
+     * @param worldUID Bukkit world UID
+     */
+    void detach(final @NonNull UUID worldUID) {
+        synchronized (this.writeLock) {
+            final Snapshot snapshot = this.snapshot;
+            if (!snapshot.bukkitWorlds.containsKey(worldUID)) {
+                return;
+            }
+            this.snapshot = new Snapshot(
+                    snapshot.worlds,
+                    snapshot.lowerCaseWorlds,
+                    copy(snapshot.bukkitWorlds, map -> map.remove(worldUID))
+            );
+        }
+    }
+
+    private static <K> @NonNull ImmutableMap<K, HyperWorld> copy(
+            final @NonNull Map<K, HyperWorld> map,
+            final @NonNull Consumer<Map<K, HyperWorld>> modification
+    ) {
+        final Map<K, HyperWorld> copy = new LinkedHashMap<>(map);
+        modification.accept(copy);
+        return ImmutableMap.copyOf(copy);
+    }
+
+    /**
+     * Immutable view of the registry at a point in time
+     */
+    static final class Snapshot {
+
+        private final ImmutableMap<String, HyperWorld> worlds;
+        private final ImmutableMap<String, HyperWorld> lowerCaseWorlds;
+        private final ImmutableMap<UUID, HyperWorld> bukkitWorlds;
+
+        private Snapshot(
+                final @NonNull ImmutableMap<String, HyperWorld> worlds,
+                final @NonNull ImmutableMap<String, HyperWorld> lowerCaseWorlds,
+                final @NonNull ImmutableMap<UUID, HyperWorld> bukkitWorlds
+        ) {
+            this.worlds = worlds;
+            this.lowerCaseWorlds = lowerCaseWorlds;
+            this.bukkitWorlds = bukkitWorlds;
+        }
+
+        /**
+         * Get all registered worlds
+         *
+         * @return Immutable collection of worlds
+         */
+        @NonNull Collection<@NonNull HyperWorld> getWorlds() {
+            return this.worlds.values();
+        }
+
+        /**
+         * Get a world using its exact name
+         *
+         * @param name World name
+         * @return World, if it exists
+         */
+        @Nullable HyperWorld getWorld(final @NonNull String name) {
+            return this.worlds.get(name);
+        }
+
+        /**
+         * Get a world using its name, ignoring case
+         *
+         * @param name World name
+         * @return World, if it exists
+         */
+        @Nullable HyperWorld getWorldIgnoreCase(final @NonNull String name) {
+            return this.lowerCaseWorlds.get(name.toLowerCase(Locale.ENGLISH));
+        }
+
+        /**
+         * Get a world using the UID of its Bukkit world
+         *
+         * @param worldUID Bukkit world UID
+         * @return World, if it exists and is loaded
+         */
+        @Nullable HyperWorld getWorld(final @NonNull UUID worldUID) {
+            return this.bukkitWorlds.get(worldUID);
+        }
+
+        /**
+         * Get the number of registered worlds
+         *
+         * @return Number of worlds
+         */
+        int size() {
+            return this.worlds.size();
+        }
+
+    }
+
+}
@@ -0,0 +1,266 @@
+//
+//  Hyperverse - A minecraft world management plugin
+//
+//  This program is free software: you can redistribute it and/or modify
+//  it under the terms of the GNU General Public License as published by
+//  the Free Software Foundation, either version 3 of the License, or
+//  (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful,
+//  but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  GNU General Public License for more details.
+//
+//  You should have received a copy of the GNU General Public License
+//  along with this program. If not, see <http://www.gnu.org/licenses/>.
+//
+
+package org.incendo.hyperverse.world;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import org.bukkit.Server;
+import org.bukkit.plugin.Plugin;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.incendo.hyperverse.configuration.HyperConfiguration;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Deletes world directories without blocking the server.
+ * <p>
+ * A directory is first renamed into a trash directory inside the world container, which
+ * is a single atomic file system operation. Its files are then removed on a background
+ * thread, at a limited number of files per second. Anything that is still in the trash
+ * when the server stops is removed on the next startup. Directories that can't be renamed,
+ * such as mount points, are deleted where they are instead
+ */
+@Singleton
+public final class WorldTrash {
+
+    /**
+     * Name of the trash directory, relative to the world container
+     */
+    private static final String TRASH_DIRECTORY = ".hyperverse-trash";
+    /**
+     * Interval (in nanoseconds) between progress messages
+     */
+    private static final long PROGRESS_INTERVAL = TimeUnit.SECONDS.toNanos(5L);
+
+    private final AtomicInteger pendingDeletions = new AtomicInteger();
+    private final AtomicLong deletedFiles = new AtomicLong();
+    private final Path trashDirectory;
+    private final Logger logger;
+    private final int rate;
+    private final ExecutorService executor;
+
+    @Inject
+    public WorldTrash(
+            final @NonNull Plugin plugin,
+            final @NonNull Server server,
+            final @NonNull HyperConfiguration hyperConfiguration
+    ) {
+        this.trashDirectory = server.getWorldContainer().toPath().resolve(TRASH_DIRECTORY);
+        this.logger = plugin.getLogger();
+        this.rate = Math.max(0, hyperConfiguration.getWorldDeletionRate());
+        this.executor = Executors.newSingleThreadExecutor(
+                new ThreadFactoryBuilder().setNameFormat("Hyperverse World Deletion").setDaemon(true).build()
+        );
+    }
+
+    /**
+     * Move a directory into the trash and delete it in the background. If the directory
+     * can't be renamed, it is deleted in place instead. A directory that can't be deleted
+     * at all is kept, and the failure is logged
+     *
+     * @param directory Directory to delete
+     * @return Future that completes once the directory is gone from its original location,
+     *         which is right away if it could be moved to the trash. It completes exceptionally
+     *         if the directory has been kept. This does not complete on the main thread
+     */
+    public @NonNull CompletableFuture<@Nullable Void> trash(final @NonNull Path directory) {
+        final Path target = this.trashDirectory.resolve(String.format("%s-%s", directory.getFileName(), UUID.randomUUID()));
+        try {
+            Files.createDirectories(this.trashDirectory);
+            Files.move(directory, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final AtomicMoveNotSupportedException e) {
+            this.logger.warning(String.format("World directory %s can't be moved to the trash, and will be deleted in place",
+                    directory.getFileName()
+            ));
+            // The directory stays in use until every file has been deleted
+            return this.delete(directory).thenApply(deleted -> null);
+        } catch (final IOException e) {
+            this.logger.log(Level.WARNING, String.format("Failed to move world directory %s to the trash. "
+                    + "The world has been removed, but its directory has been kept", directory.getFileName()), e);
+            return CompletableFuture.failedFuture(e);
+        }
+        this.delete(target);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Delete everything that was left in the trash when the server stopped
+     */
+    public void emptyTrash() {
+        if (!Files.isDirectory(this.trashDirectory)) {
+            return;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.trashDirectory)) {
+            for (final Path path : stream) {
+                this.delete(path);
+            }
+        } catch (final IOException e) {
+            this.logger.log(Level.WARNING, "Failed to list the deleted world directories", e);
+        }
+    }
+
+    /**
+     * Stop deleting files. Anything that hasn't been deleted yet stays
+     * in the trash and is deleted on the next startup
+     */
+    public void close() {
+        this.executor.shutdownNow();
+    }
+
+    private @NonNull CompletableFuture<@NonNull Long> delete(final @NonNull Path directory) {
+        this.pendingDeletions.incrementAndGet();
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                final Deletion deletion = new Deletion(directory);
+                Files.walkFileTree(directory, deletion);
+                this.logger.info(String.format("Deleted world directory %s (%d files)", directory.getFileName(),
+                        deletion.deleted
+                ));
+                return deletion.deleted;
+            } catch (final InterruptedIOException e) {
+                // The server is stopping. Whatever is left in the trash is deleted on the next startup
+                this.logger.info(String.format("Paused deleting world directory %s", directory.getFileName()));
+                throw new CompletionException(e);
+            } catch (final IOException e) {
+                this.logger.log(Level.SEVERE, String.format("Failed to delete world directory %s", directory), e);
+                throw new CompletionException(e);
+            } finally {
+                this.pendingDeletions.decrementAndGet();
+            }
+        }, this.executor);
+    }
+
+    /**
+     * Get the number of directories that are waiting to be deleted
+     *
+     * @return Pending deletion count
+     */
+    public int getPendingDeletions() {
+        return this.pendingDeletions.get();
+    }
+
+    /**
+     * Get the total number of files that have been deleted
+     *
+     * @return Deleted file count
+     */
+    public long getDeletedFiles() {
+        return this.deletedFiles.get();
+    }
+
+    /**
+     * Deletes the files in a directory tree, children first
+     */
+    private final class Deletion extends SimpleFileVisitor<Path> {
+
+        private final Path directory;
+        private final long total;
+        private final long start = System.nanoTime();
+        private long lastProgress = this.start;
+        private long deleted;
+
+        private Deletion(final @NonNull Path directory) throws IOException {
+            this.directory = directory;
+            // Counting only reads metadata, and it makes the progress messages a lot more useful
+            try (Stream<Path> walk = Files.walk(directory)) {
+                this.total = walk.count();
+            }
+        }
+
+        @Override
+        public @NonNull FileVisitResult visitFile(
+                final @NonNull Path file,
+                final @NonNull BasicFileAttributes attributes
+        ) throws IOException {
+            this.delete(file);
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public @NonNull FileVisitResult visitFileFailed(
+                final @NonNull Path file,
+                final @NonNull IOException exception
+        ) throws IOException {
+            if (exception instanceof NoSuchFileException) {
+                return FileVisitResult.CONTINUE;
+            }
+            throw exception;
+        }
+
+        @Override
+        public @NonNull FileVisitResult postVisitDirectory(
+                final @NonNull Path dir,
+                final @Nullable IOException exception
+        ) throws IOException {
+            if (exception != null) {
+                throw exception;
+            }
+            this.delete(dir);
+            return FileVisitResult.CONTINUE;
+        }
+
+        private void delete(final @NonNull Path path) throws IOException {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("World deletion was interrupted");
+            }
+            Files.deleteIfExists(path);
+            this.deleted++;
+            WorldTrash.this.deletedFiles.incrementAndGet();
+            final long now = System.nanoTime();
+            if (now - this.lastProgress >= PROGRESS_INTERVAL) {
+                this.lastProgress = now;
+                WorldTrash.this.logger.info(String.format("Deleting world directory %s: %d/%d files",
+                        this.directory.getFileName(), this.deleted, this.total
+                ));
+            }
+            if (WorldTrash.this.rate > 0) {
+                // Sleep until the deletion is back on schedule
+                final long ahead = this.deleted * TimeUnit.SECONDS.toNanos(1L) / WorldTrash.this.rate - (now - this.start);
+                if (ahead > 0L) {
+                    LockSupport.parkNanos(ahead);
+                }
+            }
+        }
+
+    }
+
+}
@@ -20,13 +20,18 @@ package org.incendo.hyperverse.platform.v1_21_6;
 import co.aikar.taskchain.TaskChainFactory;
 import com.google.inject.Inject;
 import io.papermc.lib.PaperLib;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.lang.reflect.Field;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.function.Supplier;
 
 import net.minecraft.BlockUtil;
 import net.minecraft.core.BlockPos;
@@ -130,6 +135,18 @@ public class NMSImpl implements NMS {
 
     @Override
     public void writePlayerData(@NotNull final Player player, @NotNull final Path file) {
+        final Supplier<byte[]> playerData = this.capturePlayerData(player);
+        taskFactory.newChain().async(() -> {
+            try {
+                Files.write(file, playerData.get());
+            } catch (final Exception e) {
+                e.printStackTrace();
+            }
+        }).execute();
+    }
+
+    @Override
+    public @NotNull Supplier<byte[]> capturePlayerData(@NotNull final Player player) {
         final CompoundTag playerTag = new CompoundTag();
         final net.minecraft.world.entity.player.Player entityPlayer = ((CraftPlayer) player).getHandle();
         entityPlayer.save(TagValueOutput.createWrappingGlobal(null, playerTag));
@@ -142,21 +159,51 @@ public class NMSImpl implements NMS {
         hyperverse.putLong("writeTime", System.currentTimeMillis());
         hyperverse.putString("version", Bukkit.getPluginManager().getPlugin("Hyperverse").getDescription().getVersion());
 
-        taskFactory.newChain().async(() -> {
-            try (final OutputStream outputStream = Files.newOutputStream(file)) {
+        return () -> {
+            final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            try {
                 NbtIo.writeCompressed(playerTag, outputStream);
-            } catch (final Exception e) {
-                e.printStackTrace();
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
             }
-        }).execute();
+            return outputStream.toByteArray();
+        };
     }
 
     @Override
     public void readPlayerData(@NotNull final Player player, @NotNull final Path file, @NotNull final Runnable whenDone) {
+        this.readPlayerData(player, () -> this.decodePlayerData(Files.newInputStream(file)), whenDone);
+    }
+
+    @Override
+    public void readPlayerData(@NotNull final Player player, @NotNull final byte[] data, @NotNull final Runnable whenDone) {
+        this.readPlayerData(player, () -> this.decodePlayerData(data), whenDone);
+    }
+
+    @Override
+    public @NotNull CompoundTag decodePlayerData(@NotNull final byte[] data) throws IOException {
+        return this.decodePlayerData(new ByteArrayInputStream(data));
+    }
+
+    @Override
+    public void applyPlayerData(@NotNull final Player player, @NotNull final Object decodedData,
+                                @NotNull final Runnable whenDone) {
+        // Applying the data modifies the tag, and the decoded data may be applied more than once
+        this.readPlayerData(player, ((CompoundTag) decodedData)::copy, whenDone);
+    }
+
+    private @NotNull CompoundTag decodePlayerData(@NotNull final InputStream source) throws IOException {
+        try (final InputStream inputStream = source) {
+            return NbtIo.readCompressed(inputStream, NbtAccounter.unlimitedHeap());
+        }
+    }
+
+    private void readPlayerData(@NotNull final Player player, @NotNull final Callable<CompoundTag> source,
+                                @NotNull final Runnable whenDone) {
         final Location originLocation = player.getLocation().clone();
         taskFactory.newChain().asyncFirst(() -> {
-            try (final InputStream inputStream = Files.newInputStream(file)) {
-                return Optional.of(NbtIo.readCompressed(inputStream, NbtAccounter.unlimitedHeap()));
+            try {
+                return Optional.of(source.call());
             } catch (final Exception e) {
                 e.printStackTrace();
             }
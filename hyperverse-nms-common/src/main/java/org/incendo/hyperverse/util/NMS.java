@@ -23,7 +23,9 @@ import org.bukkit.entity.Player;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
+import java.io.IOException;
 import java.nio.file.Path;
+import java.util.function.Supplier;
 
 /**
  * Version specific NMS utility methods
@@ -80,4 +82,53 @@ public interface NMS {
             @NonNull Runnable whenDone
     );
 
+    /**
+     * Capture the {@link Player player} data. The data is captured immediately on the calling
+     * thread, but it is only compressed when the returned supplier is called, which may happen
+     * on any thread
+     *
+     * @param player Player that owns the data.
+     * @return Supplier of the compressed data.
+     */
+    @NonNull Supplier<byte @NonNull []> capturePlayerData(@NonNull Player player);
+
+    /**
+     * Read compressed {@link Player player} data, as produced by {@link #capturePlayerData(Player)},
+     * into the given {@link Player} object
+     *
+     * @param player   Player to read data into.
+     * @param data     Compressed data.
+     * @param whenDone Runnable that runs when the reading is complete.
+     */
+    void readPlayerData(
+            @NonNull Player player,
+            byte @NonNull [] data,
+            @NonNull Runnable whenDone
+    );
+
+    /**
+     * Decode compressed {@link Player player} data, as produced by {@link #capturePlayerData(Player)},
+     * so that it can be applied using {@link #applyPlayerData(Player, Object, Runnable)}. This may be
+     * called from any thread
+     *
+     * @param data Compressed data.
+     * @return Decoded data.
+     * @throws IOException If the data could not be decoded.
+     */
+    @NonNull Object decodePlayerData(byte @NonNull [] data) throws IOException;
+
+    /**
+     * Read decoded {@link Player player} data, as produced by {@link #decodePlayerData(byte[])}, into
+     * the given {@link Player} object. The decoded data is left untouched, so it may be applied again
+     *
+     * @param player      Player to read data into.
+     * @param decodedData Decoded data.
+     * @param whenDone    Runnable that runs when the reading is complete.
+     */
+    void applyPlayerData(
+            @NonNull Player player,
+            @NonNull Object decodedData,
+            @NonNull Runnable whenDone
+    );
+
 }
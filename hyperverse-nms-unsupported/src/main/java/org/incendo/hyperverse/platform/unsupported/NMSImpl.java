@@ -27,6 +27,7 @@ import org.incendo.hyperverse.util.NMS;
 
 import java.nio.file.Path;
 import java.util.Objects;
+import java.util.function.Supplier;
 
 @SuppressWarnings("unused")
 public class NMSImpl implements NMS {
@@ -58,6 +59,30 @@ public class NMSImpl implements NMS {
         throw new UnsupportedOperationException("Not supported.");
     }
 
+    @Override
+    public @NonNull Supplier<byte @NonNull []> capturePlayerData(final @NonNull Player player) {
+        throw new UnsupportedOperationException("Not supported.");
+    }
+
+    @Override
+    public void readPlayerData(final @NonNull Player player, final byte @NonNull [] data, final @NonNull Runnable whenDone) {
+        throw new UnsupportedOperationException("Not supported.");
+    }
+
+    @Override
+    public @NonNull Object decodePlayerData(final byte @NonNull [] data) {
+        throw new UnsupportedOperationException("Not supported.");
+    }
+
+    @Override
+    public void applyPlayerData(
+            final @NonNull Player player,
+            final @NonNull Object decodedData,
+            final @NonNull Runnable whenDone
+    ) {
+        throw new UnsupportedOperationException("Not supported.");
+    }
+
     @Override
     public @Nullable Location findBedRespawn(final @NonNull Location spawnLocation) {
         throw new UnsupportedOperationException("Not supported.");